@@ -0,0 +1,91 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fko.pong.Deflection;
+import fko.pong.DeflectionModel;
+import fko.pong.TableDeflection;
+
+/**
+ * Benchmarks a single deflection of the exact model against its tables in different
+ * resolutions - without the rest of the paddle hit. 
+ * @author Frank Kopp
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeflectionBenchmark {
+
+	// hits per invocation - spread over the paddle and the incoming angles
+	private static final int HITS = 1024;
+
+	// exact or the resolution of the tables
+	@Param({ "exact", "16x64", "32x128", "64x512" })
+	public String deflection;
+
+	private Deflection _deflection;
+	private final double[] _speedY = new double[HITS];
+	private final double[] _hitPos = new double[HITS];
+	private final double[] _result = new double[2];
+
+	@Setup
+	public void setup() {
+		_deflection = "exact".equals(deflection) 
+				? DeflectionModel.DEFAULT : TableDeflection.parse(DeflectionModel.DEFAULT, deflection);
+		for (int i = 0; i < HITS; i++) {
+			_hitPos[i] = ((i * 0x9E3779B9L) & 0xFFFF) / 32768.0 - 1.0;
+			_speedY[i] = (i & 0xFF) - 128.0;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(HITS)
+	public void deflect(Blackhole blackhole) {
+		for (int i = 0; i < HITS; i++) {
+			_deflection.deflect(-100.0, _speedY[i], _hitPos[i], _result);
+			blackhole.consume(_result[0]);
+			blackhole.consume(_result[1]);
+		}
+	}
+
+}
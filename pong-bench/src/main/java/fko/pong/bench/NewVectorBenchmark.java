@@ -0,0 +1,83 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fko.pong.DeflectionModel;
+import fko.pong.PongEngine;
+import fko.pong.TableDeflection;
+
+/**
+ * Benchmarks the angling paddle bounce (new vector of the ball) for different hit 
+ * positions on the paddle with the exact deflection model and its tables.
+ * @author Frank Kopp
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NewVectorBenchmark {
+
+	// -1.0 top of the paddle, 0.0 center, 1.0 bottom
+	@Param({ "-0.9", "-0.5", "0.0", "0.5", "0.9" })
+	public double hitPosition;
+
+	@Param({ "exact", "table" })
+	public String deflection;
+
+	private PongEngine _engine;
+	private double _ballX;
+	private double _ballY;
+
+	@Setup
+	public void setup() {
+		_engine = new PongEngine(PhysicsBenchmark.WIDTH, PhysicsBenchmark.HEIGHT);
+		_engine.setAnglePaddle(true);
+		if ("table".equals(deflection)) _engine.setDeflection(new TableDeflection(DeflectionModel.DEFAULT));
+		_ballX = _engine.getLeftPaddleX() + PongEngine.PADDLE_WIDTH + PongEngine.BALL_SIZE + 0.5;
+		_ballY = _engine.getLeftPaddleY() + (hitPosition + 1) / 2 * _engine.getPaddleSize();
+	}
+
+	@Benchmark
+	public int paddleHit() {
+		_engine.setBall(_ballX, _ballY, -PhysicsBenchmark.SPEED, PhysicsBenchmark.SPEED);
+		return _engine.moveBall();
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fko.pong.PongEngine;
+
+/**
+ * Benchmarks of a single ball step of the <code>PongEngine</code> for the different
+ * collision cases: free flight, wall, paddle and goal.<br>
+ * Every benchmark puts the ball right in front of the obstacle and moves it once.
+ * @author Frank Kopp
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PhysicsBenchmark {
+
+	static final double WIDTH = 600;
+	static final double HEIGHT = 375;
+
+	// one tick moves the ball exactly one pixel on each axis
+	static final double SPEED = PongEngine.INITIAL_BALL_SPEED;
+
+	private PongEngine _engine;
+
+	@Setup
+	public void setup() {
+		_engine = new PongEngine(WIDTH, HEIGHT);
+	}
+
+	/**
+	 * Ball in the middle of the board - no collision.
+	 */
+	@Benchmark
+	public int ballStep() {
+		_engine.setBall(WIDTH / 2, HEIGHT / 2, SPEED, SPEED);
+		return _engine.moveBall();
+	}
+
+	/**
+	 * Ball hits the top wall.
+	 */
+	@Benchmark
+	public int wallHit() {
+		_engine.setBall(WIDTH / 2, PongEngine.BALL_SIZE + 0.5, SPEED, -SPEED);
+		return _engine.moveBall();
+	}
+
+	/**
+	 * Ball hits the center of the left paddle.
+	 */
+	@Benchmark
+	public int paddleHit() {
+		final double y = _engine.getLeftPaddleY() + _engine.getPaddleSize() / 2;
+		final double x = _engine.getLeftPaddleX() + PongEngine.PADDLE_WIDTH + PongEngine.BALL_SIZE + 0.5;
+		_engine.setBall(x, y, -SPEED, SPEED);
+		return _engine.moveBall();
+	}
+
+	/**
+	 * Ball leaves the board on the left - includes the new serve.
+	 */
+	@Benchmark
+	public int goal() {
+		_engine.setBall(-PongEngine.BALL_SIZE + 0.5, HEIGHT / 2, -SPEED, SPEED);
+		return _engine.moveBall();
+	}
+
+}
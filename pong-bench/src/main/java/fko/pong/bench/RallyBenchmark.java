@@ -0,0 +1,89 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fko.pong.PongEngine;
+
+/**
+ * Throughput of complete rallies. Both paddles follow the ball so the game runs with
+ * the usual mix of free flight, wall hits, paddle hits and goals.<br>
+ * The score is per tick.
+ * @author Frank Kopp
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RallyBenchmark {
+
+	private static final int TICKS = 10_000;
+
+	private PongEngine _engine;
+
+	@Setup
+	public void setup() {
+		_engine = new PongEngine(PhysicsBenchmark.WIDTH, PhysicsBenchmark.HEIGHT);
+		_engine.startGame();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public int rally() {
+		final PongEngine engine = _engine;
+		int events = 0;
+		for (int i = 0; i < TICKS; i++) {
+			events |= engine.step(followBall(engine));
+		}
+		return events;
+	}
+
+	/**
+	 * @return inputs which move both paddles towards the ball
+	 */
+	static int followBall(PongEngine engine) {
+		final double ballY = engine.getBallCenterY();
+		final double center = engine.getPaddleSize() / 2;
+		int inputs = PongEngine.INPUT_NONE;
+		inputs |= ballY < engine.getLeftPaddleY() + center ? PongEngine.INPUT_LEFT_UP : PongEngine.INPUT_LEFT_DOWN;
+		inputs |= ballY < engine.getRightPaddleY() + center ? PongEngine.INPUT_RIGHT_UP : PongEngine.INPUT_RIGHT_DOWN;
+		return inputs;
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import javafx.geometry.Bounds;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Text;
+
+/**
+ * Renders the game in immediate mode on a single <code>Canvas</code>.<br>
+ * The canvas is cleared and the current state is drawn once per pulse. There are no
+ * bindings and no nodes per game object.<br>
+ * The scores are drawn from a cache of pre-rasterized digit images which is created once
+ * when the renderer is attached - no text layout while the game is running.
+ * @author Frank Kopp
+ */
+public class CanvasRenderer extends PongRenderer {
+
+	private Canvas _canvas;
+	private GraphicsContext _gc;
+
+	// pre-rasterized digits 0-9 of the score font
+	private final Image[] _digits = new Image[10];
+	// distance from top of a digit image to the base line
+	private double _digitAscent;
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#attach(javafx.scene.layout.Pane, fko.pong.PongEngine)
+	 */
+	@Override
+	public void attach(Pane pane, PongEngine engine) {
+		if (_canvas == null) {
+			_canvas = new Canvas(engine.getWidth(), engine.getHeight());
+			_gc = _canvas.getGraphicsContext2D();
+			createDigits();
+		}
+		pane.getChildren().add(_canvas);
+		render(engine, 1.0);
+	}
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#detach(javafx.scene.layout.Pane)
+	 */
+	@Override
+	public void detach(Pane pane) {
+		pane.getChildren().remove(_canvas);
+	}
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#getName()
+	 */
+	@Override
+	public String getName() {
+		return "CANVAS";
+	}
+
+	/**
+	 * Rasterizes the digits 0-9 of the score font into images.
+	 */
+	private void createDigits() {
+		final SnapshotParameters parameters = new SnapshotParameters();
+		parameters.setFill(Color.TRANSPARENT);
+		final Text text = new Text();
+		text.setFont(SCORE_FONT);
+		text.setFill(Color.WHITE);
+		for (int i = 0; i < _digits.length; i++) {
+			text.setText(String.valueOf(i));
+			_digits[i] = text.snapshot(parameters, null);
+		}
+		// text origin is the base line - the top of the bounds is negative
+		final Bounds bounds = text.getBoundsInParent();
+		_digitAscent = -bounds.getMinY();
+	}
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#render(fko.pong.PongEngine, double)
+	 */
+	@Override
+	public void render(PongEngine engine, double alpha) {
+		final GraphicsContext gc = _gc;
+		gc.clearRect(0, 0, _canvas.getWidth(), _canvas.getHeight());
+		gc.setFill(Color.WHITE);
+
+		// paddles
+		gc.fillRect(engine.getLeftPaddleX(), leftPaddleY(engine, alpha), 
+				PongEngine.PADDLE_WIDTH, engine.getPaddleSize());
+		gc.fillRect(engine.getRightPaddleX(), rightPaddleY(engine, alpha), 
+				PongEngine.PADDLE_WIDTH, engine.getPaddleSize());
+
+		// ball
+		if (engine.isBallVisible()) {
+			final double size = 2 * PongEngine.BALL_SIZE;
+			gc.fillOval(ballCenterX(engine, alpha) - PongEngine.BALL_SIZE, 
+					ballCenterY(engine, alpha) - PongEngine.BALL_SIZE, size, size);
+		}
+
+		// scores
+		final double middle = engine.getWidth() / 2;
+		drawNumber(engine.getLeftPoints(), middle - SCORE_OFFSET_FROM_MIDDLE);
+		drawNumber(engine.getRightPoints(), middle + SCORE_OFFSET_FROM_MIDDLE);
+	}
+
+	/**
+	 * Draws a non negative number from the digit cache starting at x.
+	 * @param number
+	 * @param x
+	 */
+	private void drawNumber(int number, double x) {
+		// width of the complete number
+		double width = 0;
+		int n = number;
+		do {
+			width += _digits[n % 10].getWidth();
+			n /= 10;
+		} while (n > 0);
+
+		// draw from the last digit to the first
+		final double y = SCORE_LOCATION_Y - _digitAscent;
+		double right = x + width;
+		n = number;
+		do {
+			final Image digit = _digits[n % 10];
+			right -= digit.getWidth();
+			_gc.drawImage(digit, right, y);
+			n /= 10;
+		} while (n > 0);
+	}
+
+}
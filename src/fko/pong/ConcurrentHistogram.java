@@ -0,0 +1,98 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A <code>Histogram</code> with atomic counters which can be recorded by one thread and read 
+ * and reset by another - e.g. recorded by a handler of the event bus and shown by the HUD on the 
+ * JavaFX Application Thread.<br>
+ * Every counter is exact, but a value recorded while the histogram is read or reset can be 
+ * part of the count without being part of its bucket yet. <code>record()</code> never allocates.<br>
+ * Buckets and percentiles are calculated by the same helpers as in <code>Histogram</code>.
+ * @author Frank Kopp
+ */
+public class ConcurrentHistogram {
+
+	private final long _bucketWidth;
+	private final AtomicLongArray _counts;
+
+	private final AtomicLong _count = new AtomicLong();
+	private final AtomicLong _total = new AtomicLong();
+	private final AtomicLong _max = new AtomicLong();
+
+	/**
+	 * @param bucketWidth width of one bucket in the unit of the recorded values
+	 * @param buckets number of buckets
+	 */
+	public ConcurrentHistogram(long bucketWidth, int buckets) {
+		_bucketWidth = bucketWidth;
+		_counts = new AtomicLongArray(buckets);
+	}
+
+	/**
+	 * Records a value.
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) value = 0;
+		_counts.incrementAndGet(Histogram.bucket(value, _bucketWidth, _counts.length()));
+		_count.incrementAndGet();
+		_total.addAndGet(value);
+		long max = _max.get();
+		while (value > max && !_max.compareAndSet(max, value)) max = _max.get();
+	}
+
+	/**
+	 * @param percentile 0.0 - 1.0
+	 * @return upper bound of the bucket containing the given percentile or 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+		return Histogram.percentile(percentile, _count.get(), _max.get(), _bucketWidth, _counts.length(), _counts::get);
+	}
+
+	public long getCount() { return _count.get(); }
+	public long getMax() { return _max.get(); }
+
+	/**
+	 * @return mean of all recorded values or 0 if empty
+	 */
+	public double getMean() {
+		final long count = _count.get();
+		return count == 0 ? 0 : (double) _total.get() / count;
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < _counts.length(); i++) _counts.set(i, 0);
+		_count.set(0);
+		_total.set(0);
+		_max.set(0);
+	}
+
+}
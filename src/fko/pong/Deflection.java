@@ -0,0 +1,51 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * Strategy for the angling paddle - calculates the new vector of the ball after it hit the 
+ * front of a paddle.<br>
+ * <code>DeflectionModel</code> calculates it exactly and is the default. 
+ * <code>TableDeflection</code> looks it up in precomputed tables.<br>
+ * Implementations must not allocate and must be deterministic as the engine's replays rely on it. 
+ * They are called from the engine's thread only but may be shared between engines.
+ * @author Frank Kopp
+ */
+public interface Deflection {
+
+	/**
+	 * Calculates the new vector of the ball.
+	 * @param speedX incoming horizontal speed
+	 * @param speedY incoming vertical speed
+	 * @param hitPos position of the hit on the paddle - see <code>PongEngine.hitPosition()</code>
+	 * @param result receives the outgoing speeds - [0] horizontal (turned around), [1] vertical
+	 */
+	void deflect(double speedX, double speedY, double hitPos, double[] result);
+
+	/**
+	 * @return the model of the deflection
+	 */
+	DeflectionModel getModel();
+
+}
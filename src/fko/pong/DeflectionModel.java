@@ -0,0 +1,162 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * The model of how the angling paddle deflects the ball.<br>
+ * The new angle is the incoming angle scaled by the hit position on the paddle:<br>
+ * <code>newAngle = angle * (1 + hitWeight * hitPos)</code> limited to <code>maxAngle</code>.<br>
+ * Depending on the hit weight the angle either converges to zero or diverges to steep angles 
+ * over a rally - <code>DeflectionSweep</code> explores this for grids of parameters.<br>
+ * The speed conservation blends between keeping the total speed of the ball (1.0) and keeping
+ * its horizontal speed (0.0).<br>
+ * This is the exact <code>Deflection</code> - <code>TableDeflection</code> approximates it.<br>
+ * The model is immutable. The default is the original behavior of the game.
+ * @author Frank Kopp
+ */
+public class DeflectionModel implements Deflection {
+
+	// system property to select the model: <hitWeight>,<maxAngle in degrees>,<speedConservation>
+	public static final String DEFLECTION_PROPERTY = "pong.deflection";
+
+	// max angle for no limit at all - the original behavior
+	public static final double NO_ANGLE_LIMIT = 180.0;
+
+	public static final DeflectionModel DEFAULT = new DeflectionModel(1.0, NO_ANGLE_LIMIT, 1.0);
+
+	private final double _hitWeight;
+	private final double _maxAngle; // degrees
+	private final double _maxAngleRad;
+	private final double _speedConservation;
+
+	/**
+	 * @param hitWeight influence of the hit position on the angle
+	 * @param maxAngle maximum angle of the ball after a hit in degrees
+	 * @param speedConservation 1.0 keeps the total speed, 0.0 keeps the horizontal speed
+	 */
+	public DeflectionModel(double hitWeight, double maxAngle, double speedConservation) {
+		if (!isValid(hitWeight, maxAngle, speedConservation)) {
+			throw new IllegalArgumentException("Invalid deflection model: "+hitWeight+","+maxAngle+","+speedConservation);
+		}
+		_hitWeight = hitWeight;
+		_maxAngle = maxAngle;
+		_maxAngleRad = maxAngle >= NO_ANGLE_LIMIT ? Double.POSITIVE_INFINITY : Math.toRadians(maxAngle);
+		_speedConservation = speedConservation;
+	}
+
+	/**
+	 * Keeping the horizontal speed is only possible for angles below 90 degrees - the
+	 * speed would grow without limit.
+	 * @param hitWeight
+	 * @param maxAngle
+	 * @param speedConservation
+	 * @return true if the parameters are a valid model
+	 */
+	public static boolean isValid(double hitWeight, double maxAngle, double speedConservation) {
+		return maxAngle > 0 && speedConservation >= 0 && speedConservation <= 1
+				&& (speedConservation == 1.0 || maxAngle < 90.0);
+	}
+
+	/**
+	 * @param model as <code>&lt;hitWeight&gt;,&lt;maxAngle in degrees&gt;,&lt;speedConservation&gt;</code>
+	 * @return the model
+	 * @throws IllegalArgumentException if the model can't be parsed
+	 */
+	public static DeflectionModel parse(String model) {
+		final String[] values = model.split(",");
+		if (values.length != 3) throw new IllegalArgumentException("Invalid deflection model: "+model);
+		return new DeflectionModel(Double.parseDouble(values[0].trim()), 
+				Double.parseDouble(values[1].trim()), Double.parseDouble(values[2].trim()));
+	}
+
+	/**
+	 * @return the model of the system property <code>pong.deflection</code> or the default model
+	 */
+	public static DeflectionModel fromSystemProperty() {
+		final String model = System.getProperty(DEFLECTION_PROPERTY);
+		if (model == null || model.isEmpty()) return DEFAULT;
+		try {
+			return parse(model);
+		} catch (IllegalArgumentException e) {
+			Pong.minorError(e.getMessage()+" - using the default model");
+			return DEFAULT;
+		}
+	}
+
+	/**
+	 * @see fko.pong.Deflection#deflect(double, double, double, double[])
+	 */
+	@Override
+	public void deflect(double speedX, double speedY, double hitPos, double[] result) {
+		final double speed = Math.sqrt(speedX * speedX + speedY * speedY); // Pythagoras c=speed
+		final double angle = StrictMath.atan(speedY / Math.abs(speedX)); // current angle in RAD
+		final double newAngle = newAngle(angle, hitPos); // influence of the hit position
+		final double cos = StrictMath.cos(newAngle);
+		final double newSpeed = newSpeed(speed, speedX, cos);
+
+		result[0] = -(Math.signum(speedX) * newSpeed * cos); // turn direction
+		result[1] = newSpeed * StrictMath.sin(newAngle);
+	}
+
+	/**
+	 * @see fko.pong.Deflection#getModel()
+	 */
+	@Override
+	public DeflectionModel getModel() {
+		return this;
+	}
+
+	/**
+	 * @param angle incoming angle in radians
+	 * @param hitPos position of the hit on the paddle - see <code>PongEngine.hitPosition()</code>
+	 * @return outgoing angle in radians
+	 */
+	public double newAngle(double angle, double hitPos) {
+		final double newAngle = angle * (1 + _hitWeight * hitPos);
+		if (newAngle > _maxAngleRad) return _maxAngleRad;
+		if (newAngle < -_maxAngleRad) return -_maxAngleRad;
+		return newAngle;
+	}
+
+	/**
+	 * @param speed total incoming speed
+	 * @param speedX incoming horizontal speed
+	 * @param cosNewAngle cosine of the outgoing angle
+	 * @return total outgoing speed
+	 */
+	public double newSpeed(double speed, double speedX, double cosNewAngle) {
+		if (_speedConservation == 1.0 || cosNewAngle <= 0) return speed;
+		return _speedConservation * speed + (1 - _speedConservation) * Math.abs(speedX) / cosNewAngle;
+	}
+
+	public double getHitWeight() { return _hitWeight; }
+	public double getMaxAngle() { return _maxAngle; }
+	public double getSpeedConservation() { return _speedConservation; }
+
+	@Override
+	public String toString() {
+		return _hitWeight + "," + _maxAngle + "," + _speedConservation;
+	}
+
+}
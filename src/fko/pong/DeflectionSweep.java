@@ -0,0 +1,289 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Explores the behavior of the angling paddle for grids of <code>DeflectionModel</code> parameters.<br>
+ * For every combination of hit weight, max angle and speed conservation a number of rallies is
+ * played headless by two <code>FollowBallAI</code>s and the development of the ball angle over
+ * the rallies is measured. Whether the angle converges to zero or diverges to steep angles 
+ * shows in the metrics.<br>
+ * The grid points are distributed over all cores by a <code>ForkJoinPool</code> and every
+ * finished grid point is streamed as one CSV line (in the order they finish). Combinations 
+ * which are not a valid model are skipped. Metrics without data are left empty.<br>
+ * The chosen model can be used in the game with <code>-Dpong.deflection=&lt;w,a,c&gt;</code>.<br>
+ * Usage: <code>java fko.pong.DeflectionSweep [options]</code> - see <code>usage()</code>
+ * @author Frank Kopp
+ */
+public class DeflectionSweep {
+
+	// CSV columns
+	public static final String CSV_HEADER = "hitWeight,maxAngle,speedConservation,rallies,stalled,"
+			+ "meanHits,meanRallySeconds,meanAngleFirst,meanAngleLate,angleDrift,flat,steep,meanSpeedLate";
+
+	// hits after which the angle is counted as late in a rally
+	private static final int LATE_HIT = 10;
+	// angles below are flat, above are steep (degrees)
+	private static final double FLAT_ANGLE = 5.0;
+	private static final double STEEP_ANGLE = 60.0;
+
+	// the grid
+	private double[] _hitWeights = range(0.0, 1.5, 0.1);
+	private double[] _maxAngles = { 45.0, 60.0, 75.0, DeflectionModel.NO_ANGLE_LIMIT };
+	private double[] _conservations = { 0.0, 0.5, 1.0 };
+
+	private int _rallies = 1000;
+	private long _maxRallyTicks = 60L * PongEngine.TICKS_PER_SECOND;
+	private long _seed = 0;
+
+	private PrintStream _out = System.out;
+
+	/**
+	 * @param from
+	 * @param to inclusive
+	 * @param step
+	 * @return all values from..to in steps
+	 */
+	static double[] range(double from, double to, double step) {
+		if (step <= 0 || to < from) return new double[] { from };
+		final int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+		final double[] values = new double[n];
+		for (int i = 0; i < n; i++) values[i] = from + i * step;
+		return values;
+	}
+
+	/**
+	 * @param range as <code>from:to:step</code> or a single value
+	 * @return the values of the range
+	 */
+	private static double[] parseRange(String range) {
+		final String[] values = range.split(":");
+		if (values.length == 1) return new double[] { Double.parseDouble(values[0]) };
+		if (values.length != 3) throw new IllegalArgumentException("Invalid range: "+range);
+		return range(Double.parseDouble(values[0]), Double.parseDouble(values[1]), Double.parseDouble(values[2]));
+	}
+
+	/**
+	 * @return number of grid points
+	 */
+	public int getGridSize() {
+		return _hitWeights.length * _maxAngles.length * _conservations.length;
+	}
+
+	/**
+	 * @param index of the grid point
+	 * @return the model of a grid point or null if the parameters are not a valid model
+	 */
+	private DeflectionModel model(int index) {
+		final int c = index % _conservations.length;
+		index /= _conservations.length;
+		final int a = index % _maxAngles.length;
+		index /= _maxAngles.length;
+		if (!DeflectionModel.isValid(_hitWeights[index], _maxAngles[a], _conservations[c])) return null;
+		return new DeflectionModel(_hitWeights[index], _maxAngles[a], _conservations[c]);
+	}
+
+	/**
+	 * Simulates all grid points with the given number of threads and streams the results.
+	 * @param threads
+	 */
+	public void run(int threads) {
+		_out.println(CSV_HEADER);
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new SweepTask(0, getGridSize()));
+		} finally {
+			pool.shutdown();
+		}
+		_out.flush();
+	}
+
+	/**
+	 * Simulates the grid points from..to-1 - forks until only one is left.
+	 */
+	private class SweepTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int _from;
+		private final int _to;
+
+		SweepTask(int from, int to) {
+			_from = from;
+			_to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (_to - _from == 1) {
+				final DeflectionModel model = model(_from);
+				if (model == null) return;
+				final String line = simulate(model, _seed + _from);
+				synchronized (_out) {
+					_out.println(line);
+				}
+				return;
+			}
+			final int middle = (_from + _to) >>> 1;
+			invokeAll(new SweepTask(_from, middle), new SweepTask(middle, _to));
+		}
+	}
+
+	/**
+	 * Plays the rallies of one grid point.
+	 * @param model
+	 * @param seed
+	 * @return the CSV line of the grid point
+	 */
+	String simulate(DeflectionModel model, long seed) {
+		final PongEngine engine = new PongEngine(Tournament.WIDTH, Tournament.HEIGHT);
+		engine.setDeflection(model);
+		final PongAI left = new FollowBallAI(true);
+		final PongAI right = new FollowBallAI(false);
+
+		long stalled = 0;
+		long hitsTotal = 0;
+		long ticksTotal = 0;
+		double angleFirstSum = 0, angleLateSum = 0, speedLateSum = 0, driftSum = 0;
+		long firstCount = 0, lateCount = 0, driftCount = 0, flat = 0, steep = 0;
+
+		engine.startGame(seed);
+		for (int rally = 0; rally < _rallies; rally++) {
+			int hits = 0;
+			long ticks = 0;
+			double lastAngle = 0;
+			while (true) {
+				final int events = engine.step(left.move(engine) | right.move(engine));
+				ticks++;
+				if ((events & PongEngine.EVENT_PADDLE) != 0) {
+					final double vx = engine.getSpeedX();
+					final double vy = engine.getSpeedY();
+					final double angle = Math.toDegrees(Math.atan(Math.abs(vy) / Math.abs(vx)));
+					if (hits < LATE_HIT) {
+						angleFirstSum += angle;
+						firstCount++;
+					} else {
+						angleLateSum += angle;
+						speedLateSum += Math.sqrt(vx * vx + vy * vy);
+						lateCount++;
+					}
+					if (hits > 0) {
+						driftSum += angle - lastAngle;
+						driftCount++;
+					}
+					if (angle < FLAT_ANGLE) flat++;
+					else if (angle > STEEP_ANGLE) steep++;
+					lastAngle = angle;
+					hits++;
+				}
+				if ((events & PongEngine.EVENT_GOAL) != 0) break;
+				if (ticks >= _maxRallyTicks) {
+					// ball is stuck between the walls or paddles - serve again
+					stalled++;
+					engine.serve(rally % 2 == 0);
+					break;
+				}
+			}
+			hitsTotal += hits;
+			ticksTotal += ticks;
+		}
+
+		final long hitCount = firstCount + lateCount;
+		return String.format(Locale.ROOT, "%.3f,%.1f,%.3f,%d,%d,%.3f,%.3f,%s,%s,%s,%s,%s,%s",
+				model.getHitWeight(), model.getMaxAngle(), model.getSpeedConservation(), _rallies, stalled,
+				(double) hitsTotal / _rallies, (double) ticksTotal / _rallies / PongEngine.TICKS_PER_SECOND,
+				mean("%.3f", angleFirstSum, firstCount), mean("%.3f", angleLateSum, lateCount),
+				mean("%.4f", driftSum, driftCount), mean("%.4f", flat, hitCount), mean("%.4f", steep, hitCount),
+				mean("%.1f", speedLateSum, lateCount));
+	}
+
+	/**
+	 * @return the formatted mean or an empty string if there are no values
+	 */
+	private static String mean(String format, double sum, long count) {
+		return count == 0 ? "" : String.format(Locale.ROOT, format, sum / count);
+	}
+
+	/**
+	 * Prints the command line options.
+	 */
+	private static void usage() {
+		System.err.println("Usage: java fko.pong.DeflectionSweep [options]");
+		System.err.println("  -weights <from:to:step>       hit weights (default 0:1.5:0.1)");
+		System.err.println("  -maxAngles <from:to:step>     max angles in degrees (default 45,60,75,180 = no limit)");
+		System.err.println("  -conservation <from:to:step>  speed conservation (default 0:1:0.5)");
+		System.err.println("  -rallies <n>                  rallies per grid point (default 1000)");
+		System.err.println("  -maxRallySeconds <n>          rallies longer than this are counted as stalled (default 60)");
+		System.err.println("  -threads <n>                  number of threads (default all cores)");
+		System.err.println("  -seed <n>                     seed of the sweep (default 0)");
+		System.err.println("  -out <file>                   CSV file (default stdout)");
+		System.exit(1);
+	}
+
+	/**
+	 * @param args see <code>usage()</code>
+	 */
+	public static void main(String[] args) {
+		final DeflectionSweep sweep = new DeflectionSweep();
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-weights": 			sweep._hitWeights = parseRange(args[++i]); break;
+				case "-maxAngles": 			sweep._maxAngles = parseRange(args[++i]); break;
+				case "-conservation": 		sweep._conservations = parseRange(args[++i]); break;
+				case "-rallies": 			sweep._rallies = Integer.parseInt(args[++i]); break;
+				case "-maxRallySeconds": 	sweep._maxRallyTicks = Long.parseLong(args[++i]) * PongEngine.TICKS_PER_SECOND; break;
+				case "-threads": 			threads = Integer.parseInt(args[++i]); break;
+				case "-seed": 				sweep._seed = Long.parseLong(args[++i]); break;
+				case "-out": 				sweep._out = new PrintStream(args[++i]); break;
+				default: 					usage();
+				}
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			usage();
+		} catch (FileNotFoundException e) {
+			Pong.fatalError("CSV file cannot be created: "+e.getMessage());
+		}
+		if (sweep._rallies < 1 || threads < 1) usage();
+
+		int models = 0;
+		for (int i = 0; i < sweep.getGridSize(); i++) {
+			if (sweep.model(i) != null) models++;
+		}
+
+		final long start = System.nanoTime();
+		sweep.run(threads);
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.println(String.format("%d grid points, %d rallies in %.1fs with %d threads (%.0f rallies/s)",
+				models, (long) models * sweep._rallies, seconds, threads, models * (double) sweep._rallies / seconds));
+		if (sweep._out != System.out) sweep._out.close();
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * A simple AI which follows the ball when it is coming towards its paddle and otherwise 
+ * returns to the middle of the board.<br>
+ * It does not move while the target is within the middle of the paddle. As the paddle 
+ * speed is limited it misses steep or fast balls.
+ * @author Frank Kopp
+ */
+public class FollowBallAI implements PongAI {
+
+	private final boolean _left;
+	private final int _inputUp;
+	private final int _inputDown;
+
+	/**
+	 * @param left true for the left paddle
+	 */
+	public FollowBallAI(boolean left) {
+		_left = left;
+		_inputUp = left ? PongEngine.INPUT_LEFT_UP : PongEngine.INPUT_RIGHT_UP;
+		_inputDown = left ? PongEngine.INPUT_LEFT_DOWN : PongEngine.INPUT_RIGHT_DOWN;
+	}
+
+	/**
+	 * @see fko.pong.PongAI#move(fko.pong.PongEngine)
+	 */
+	@Override
+	public int move(PongEngine engine) {
+		final boolean incoming = engine.isBallMoving() && (_left ? engine.getSpeedX() < 0 : engine.getSpeedX() > 0);
+		final double target = incoming ? engine.getBallCenterY() : engine.getHeight() / 2;
+		final double paddleSize = engine.getPaddleSize();
+		final double center = (_left ? engine.getLeftPaddleY() : engine.getRightPaddleY()) + paddleSize / 2;
+		final double deadZone = paddleSize / 4;
+		if (target < center - deadZone) return _inputUp;
+		if (target > center + deadZone) return _inputDown;
+		return PongEngine.INPUT_NONE;
+	}
+
+}
@@ -0,0 +1,123 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * A slot of the <code>GameEventBus</code> ring.<br>
+ * Slots are allocated once with the bus and overwritten by the engine for every event - a
+ * handler must copy what it needs and must not keep the event.
+ * @author Frank Kopp
+ */
+public final class GameEvent {
+
+	// types
+	public static final int WALL_HIT = 1;
+	public static final int PADDLE_HIT = 2;
+	public static final int GOAL = 3;
+	public static final int SERVE = 4;
+	public static final int PAUSE = 5;
+	public static final int RESUME = 6;
+	public static final int START = 7;
+	public static final int STOP = 8;
+
+	int _type;
+	long _tick;
+	boolean _left;
+	double _x;
+	double _y;
+	double _hitPosition;
+	double _speed;
+	int _leftPoints;
+	int _rightPoints;
+	// System.nanoTime() when the event was published
+	long _publishTime;
+
+	GameEvent() {}
+
+	/**
+	 * Fills the slot.
+	 */
+	void set(int type, long tick, boolean left, double x, double y, double hitPosition, double speed, 
+			int leftPoints, int rightPoints) {
+		_type = type;
+		_tick = tick;
+		_left = left;
+		_x = x;
+		_y = y;
+		_hitPosition = hitPosition;
+		_speed = speed;
+		_leftPoints = leftPoints;
+		_rightPoints = rightPoints;
+	}
+
+	/**
+	 * @return WALL_HIT, PADDLE_HIT, GOAL, SERVE, PAUSE, RESUME, START or STOP
+	 */
+	public int getType() { return _type; }
+
+	/**
+	 * @return engine tick of the event
+	 */
+	public long getTick() { return _tick; }
+
+	/**
+	 * @return PADDLE_HIT: the left paddle was hit, GOAL: the left player scored, SERVE: from the left
+	 */
+	public boolean isLeft() { return _left; }
+
+	/**
+	 * @return ball center at the event
+	 */
+	public double getX() { return _x; }
+	public double getY() { return _y; }
+
+	/**
+	 * @return PADDLE_HIT: where the ball hit the paddle relative to its direction (-1.0 to 1.0)
+	 * or NaN for a hit on the edge of the paddle
+	 */
+	public double getHitPosition() { return _hitPosition; }
+
+	/**
+	 * @return speed factor of the ball - 1.0 at the serve
+	 */
+	public double getSpeed() { return _speed; }
+
+	/**
+	 * @return score after the event
+	 */
+	public int getLeftPoints() { return _leftPoints; }
+	public int getRightPoints() { return _rightPoints; }
+
+	/**
+	 * @return <code>System.nanoTime()</code> when the engine published the event
+	 */
+	public long getPublishTime() { return _publishTime; }
+
+	@Override
+	public String toString() {
+		return String.format("GameEvent[type=%d tick=%d left=%b x=%.1f y=%.1f hit=%.3f speed=%.3f score=%d:%d]",
+				_type, _tick, _left, _x, _y, _hitPosition, _speed, _leftPoints, _rightPoints);
+	}
+
+}
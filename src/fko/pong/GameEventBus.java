@@ -0,0 +1,209 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Carries the events of the game from the engine to any number of handlers - sound, statistics,
+ * match history - without making the simulation wait for them.<br>
+ * Works like a Disruptor with a single producer: a ring of preallocated <code>GameEvent</code>
+ * slots, a cursor with the last published sequence and one sequence per handler. The engine fills
+ * the next slot and publishes it with an ordered write of the cursor - no locks, no allocation
+ * and no work per handler. Each handler runs on its own thread and processes everything up to
+ * the cursor in one batch before it moves its own sequence, which frees the slots.<br>
+ * The producer only looks at the handlers' sequences when the ring seems full and caches the
+ * slowest one, so the cost of publishing doesn't depend on the number of handlers. If a handler
+ * is a whole ring behind the event is dropped and counted - the game never waits for a handler.<br>
+ * Idle handlers park for a millisecond between looks at the cursor.
+ * @author Frank Kopp
+ */
+public class GameEventBus {
+
+	public static final int DEFAULT_SIZE = 1024;
+
+	// time an idle handler sleeps before it checks the cursor again
+	private static final long IDLE_NANOS = 1_000_000L;
+
+	private final GameEvent[] _ring;
+	private final int _mask;
+
+	// last published sequence
+	private final AtomicLong _cursor = new AtomicLong(-1);
+
+	// producer side
+	private long _published = -1;
+	private long _slowestCache = -1;
+	private volatile long _dropped = 0;
+
+	// added by any thread before the start - read by the producer
+	private volatile Handler[] _handlers = new Handler[0];
+	private volatile boolean _running = false;
+
+	/**
+	 * A handler with its thread and sequence.
+	 */
+	private final class Handler implements Runnable {
+		final GameEventHandler handler;
+		// last processed sequence
+		final AtomicLong sequence = new AtomicLong(-1);
+		final Thread thread;
+
+		Handler(String name, GameEventHandler handler) {
+			this.handler = handler;
+			this.thread = new Thread(this, name);
+			this.thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			long next = sequence.get() + 1;
+			while (_running) {
+				final long available = _cursor.get();
+				if (available < next) {
+					LockSupport.parkNanos(IDLE_NANOS);
+					continue;
+				}
+				for (long seq = next; seq <= available; seq++) {
+					try {
+						handler.onEvent(_ring[(int) (seq & _mask)], seq == available);
+					} catch (RuntimeException e) {
+						Pong.criticalError("Event handler "+thread.getName()+" failed", e);
+					}
+				}
+				sequence.lazySet(available);
+				next = available + 1;
+			}
+		}
+	}
+
+	/**
+	 * Creates a bus with the default size.
+	 */
+	public GameEventBus() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param size number of slots - rounded up to a power of two
+	 */
+	public GameEventBus(int size) {
+		final int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1);
+		_ring = new GameEvent[capacity];
+		for (int i = 0; i < capacity; i++) _ring[i] = new GameEvent();
+		_mask = capacity - 1;
+	}
+
+	/**
+	 * Adds a handler which gets every event published after this call. Must be called before
+	 * <code>start()</code>.
+	 * @param name of the handler's thread
+	 * @param handler
+	 */
+	public synchronized void addHandler(String name, GameEventHandler handler) {
+		if (_running) throw new IllegalStateException("Handlers must be added before the bus is started");
+		final Handler h = new Handler(name, handler);
+		h.sequence.set(_cursor.get());
+		_handlers = Arrays.copyOf(_handlers, _handlers.length + 1);
+		_handlers[_handlers.length - 1] = h;
+	}
+
+	/**
+	 * Starts the threads of all handlers.
+	 */
+	public synchronized void start() {
+		if (_running) return;
+		_running = true;
+		for (Handler h : _handlers) h.thread.start();
+	}
+
+	/**
+	 * Stops the threads of all handlers after their current batch.
+	 */
+	public synchronized void close() {
+		_running = false;
+		for (Handler h : _handlers) {
+			try {
+				h.thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Publishes an event. Must always be called from the same thread - the engine's.
+	 * @param type one of the <code>GameEvent</code> types
+	 * @param tick
+	 * @param left side of the event
+	 * @param x ball center
+	 * @param y ball center
+	 * @param hitPosition for paddle hits
+	 * @param speed factor of the ball
+	 * @param leftPoints
+	 * @param rightPoints
+	 * @return false if the event was dropped because a handler is a whole ring behind
+	 */
+	public boolean publish(int type, long tick, boolean left, double x, double y, double hitPosition, 
+			double speed, int leftPoints, int rightPoints) {
+		final long seq = _published + 1;
+		final long wrap = seq - _ring.length;
+		if (wrap > _slowestCache) {
+			_slowestCache = slowest();
+			if (wrap > _slowestCache) {
+				_dropped++;
+				return false;
+			}
+		}
+		final GameEvent event = _ring[(int) (seq & _mask)];
+		event.set(type, tick, left, x, y, hitPosition, speed, leftPoints, rightPoints);
+		event._publishTime = System.nanoTime();
+		_published = seq;
+		_cursor.lazySet(seq);
+		return true;
+	}
+
+	/**
+	 * @return sequence of the slowest handler or the cursor if there are none
+	 */
+	private long slowest() {
+		long min = _cursor.get();
+		for (Handler h : _handlers) min = Math.min(min, h.sequence.get());
+		return min;
+	}
+
+	/**
+	 * @return number of published events
+	 */
+	public long getPublished() { return _cursor.get() + 1; }
+
+	/**
+	 * @return number of events dropped because a handler was a whole ring behind
+	 */
+	public long getDropped() { return _dropped; }
+
+}
@@ -24,18 +24,16 @@ SOFTWARE.
 package fko.pong;
 
 /**
+ * Processes the events of a <code>GameEventBus</code> on its own thread.
  * @author Frank Kopp
  */
-public class Player {
-
-	public final String _playerName;
-	public int _points = 0;
+public interface GameEventHandler {
 
 	/**
-	 * @param name
+	 * Called for every event in the order they were published.
+	 * @param event only valid during this call
+	 * @param endOfBatch true for the last event which was available - e.g. to flush
 	 */
-	public Player(String name) {
-		this._playerName = name;
-	}
+	void onEvent(GameEvent event, boolean endOfBatch);
 
 }
@@ -0,0 +1,115 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * A game loop driven by the JavaFX pulse with a fixed simulation time step.<br>
+ * On every pulse the elapsed time is added to an accumulator and <code>tick()</code> is
+ * called once for every full time step in it. <code>render()</code> is then called once with the
+ * remaining fraction of a time step so the view can interpolate between the last two ticks.<br>
+ * This keeps the simulation independent of the frame rate and the number of pulses independent
+ * of the game speed.
+ * @author Frank Kopp
+ */
+public abstract class GameLoop extends AnimationTimer {
+
+	// longest frame time we try to catch up with - avoids a spiral of death after a stall
+	private static final long MAX_FRAME_TIME = 250_000_000L; // nanoseconds
+
+	// length of one simulation tick in nanoseconds
+	private final long _timeStep;
+
+	// time of last pulse - negative when the clock has to be resynchronized
+	private long _lastPulse = -1;
+	private long _accumulator = 0;
+	// nanoTime when the current tick ends
+	private long _tickTime = 0;
+
+	/**
+	 * @param timeStep length of one simulation tick in seconds
+	 */
+	public GameLoop(double timeStep) {
+		_timeStep = Math.round(timeStep * 1e9);
+	}
+
+	/* (non-Javadoc)
+	 * @see javafx.animation.AnimationTimer#handle(long)
+	 */
+	@Override
+	public void handle(long now) {
+		if (_lastPulse < 0) _lastPulse = now;
+		long frameTime = now - _lastPulse;
+		_lastPulse = now;
+		if (frameTime > MAX_FRAME_TIME) frameTime = MAX_FRAME_TIME;
+
+		_accumulator += frameTime;
+		while (_accumulator >= _timeStep) {
+			_accumulator -= _timeStep;
+			_tickTime = now - _accumulator;
+			tick();
+		}
+		render((double) _accumulator / _timeStep);
+	}
+
+	/**
+	 * Drops all accumulated time. The next pulse starts a fresh clock and no ticks are
+	 * caught up. Can be called from within <code>tick()</code>.
+	 */
+	public void resetClock() {
+		_lastPulse = -1;
+		_accumulator = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see javafx.animation.AnimationTimer#start()
+	 */
+	@Override
+	public void start() {
+		resetClock();
+		super.start();
+	}
+
+	/**
+	 * The ticks of a pulse are run at once. Each tick stands for the time step which ends this
+	 * much before the pulse as the time left in the accumulator.
+	 * @return nanoTime (the clock of the pulses) when the current tick ends
+	 */
+	public long getTickTime() {
+		return _tickTime;
+	}
+
+	/**
+	 * Advances the simulation by exactly one time step.
+	 */
+	protected abstract void tick();
+
+	/**
+	 * Renders the current state.
+	 * @param alpha fraction of a time step elapsed since the last tick [0.0, 1.0)
+	 */
+	protected abstract void render(double alpha);
+
+}
@@ -0,0 +1,48 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * The states of a game of pong.<br>
+ * The transitions are done by <code>PongEngine</code> and are driven by its ticks - 
+ * no transition ever blocks.
+ * <pre>
+ * STOPPED --start--> SERVING --delay--> IN_PLAY --goal--> GOAL --delay--> SERVING
+ * SERVING/IN_PLAY/GOAL --pause--> PAUSED --resume--> previous state
+ * any --stop--> STOPPED
+ * </pre>
+ * @author Frank Kopp
+ */
+public enum GameState {
+	/** no game running - only the paddles can be moved */
+	STOPPED,
+	/** ball is shown at its start position and waits for the serve delay */
+	SERVING,
+	/** ball is moving */
+	IN_PLAY,
+	/** a goal was scored - the ball is hidden for the goal delay */
+	GOAL,
+	/** game is paused - the ball is frozen */
+	PAUSED;
+}
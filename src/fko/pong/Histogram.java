@@ -0,0 +1,146 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * A histogram of long values (e.g. nanoseconds) with a fixed number of buckets of equal width.<br>
+ * All memory is allocated in the constructor - <code>record()</code> never allocates and is
+ * cheap enough to be called in the game loop. Values above the last bucket are counted in the 
+ * last bucket, the exact maximum is kept separately.<br>
+ * Not thread safe - record and read from the same thread. <code>ConcurrentHistogram</code> shares
+ * the bucket math and can be recorded and read by different threads.
+ * @author Frank Kopp
+ */
+public class Histogram {
+
+	private final long _bucketWidth;
+	private final long[] _counts;
+
+	private long _count = 0;
+	private long _total = 0;
+	private long _max = 0;
+
+	/**
+	 * @param bucketWidth width of one bucket in the unit of the recorded values
+	 * @param buckets number of buckets
+	 */
+	public Histogram(long bucketWidth, int buckets) {
+		_bucketWidth = bucketWidth;
+		_counts = new long[buckets];
+	}
+
+	/**
+	 * Records a value.
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) value = 0;
+		_counts[bucket(value, _bucketWidth, _counts.length)]++;
+		_count++;
+		_total += value;
+		if (value > _max) _max = value;
+	}
+
+	/**
+	 * @param percentile 0.0 - 1.0
+	 * @return upper bound of the bucket containing the given percentile or 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+		return percentile(percentile, _count, _max, _bucketWidth, _counts.length, i -> _counts[i]);
+	}
+
+	public long getCount() { return _count; }
+	public long getMax() { return _max; }
+
+	/**
+	 * @return mean of all recorded values or 0 if empty
+	 */
+	public double getMean() {
+		return _count == 0 ? 0 : (double) _total / _count;
+	}
+
+	/**
+	 * Adds all values recorded by another histogram with the same buckets.
+	 * @param other
+	 */
+	public void add(Histogram other) {
+		if (other._bucketWidth != _bucketWidth || other._counts.length != _counts.length) {
+			throw new IllegalArgumentException("Histograms have different buckets");
+		}
+		for (int i = 0; i < _counts.length; i++) {
+			_counts[i] += other._counts[i];
+		}
+		_count += other._count;
+		_total += other._total;
+		if (other._max > _max) _max = other._max;
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public void reset() {
+		Arrays.fill(_counts, 0);
+		_count = 0;
+		_total = 0;
+		_max = 0;
+	}
+
+	/**
+	 * @param value not negative
+	 * @param bucketWidth
+	 * @param buckets
+	 * @return index of the bucket of the value - the last bucket takes all larger values
+	 */
+	static int bucket(long value, long bucketWidth, int buckets) {
+		final long bucket = value / bucketWidth;
+		return bucket < buckets ? (int) bucket : buckets - 1;
+	}
+
+	/**
+	 * @param percentile 0.0 - 1.0
+	 * @param count number of recorded values
+	 * @param max largest recorded value
+	 * @param bucketWidth
+	 * @param buckets
+	 * @param counts count of the bucket with an index
+	 * @return upper bound of the bucket containing the given percentile or 0 if empty
+	 */
+	static long percentile(double percentile, long count, long max, long bucketWidth, int buckets, 
+			IntToLongFunction counts) {
+		if (count == 0) return 0;
+		final long target = Math.max(1, (long) Math.ceil(percentile * count));
+		long seen = 0;
+		for (int i = 0; i < buckets; i++) {
+			seen += counts.applyAsLong(i);
+			if (seen >= target) {
+				return Math.min(max, (i + 1) * bucketWidth);
+			}
+		}
+		return max;
+	}
+
+}
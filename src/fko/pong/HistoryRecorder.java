@@ -0,0 +1,125 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * Writes the matches of the game to a <code>MatchHistory</code> from the events of the 
+ * <code>GameEventBus</code> and rates them.<br>
+ * Only a match started after <code>setPlayers()</code> is recorded - replays and watched games
+ * are not. A match is written when it is stopped, every rally when its goal is scored.
+ * Runs on the thread of its handler which is the only writer of the history.
+ * @author Frank Kopp
+ */
+public class HistoryRecorder implements GameEventHandler {
+
+	private final MatchHistory _history;
+	private final Ratings _ratings;
+
+	// players of the next started match - set by the game, taken by the handler
+	private volatile String _nextLeft = null;
+	private volatile String _nextRight = null;
+
+	// the recorded match - only accessed by the handler thread
+	private String _left = null;
+	private String _right = null;
+	private long _startTick;
+	private long _serveTick;
+	private int _hits;
+	private double _maxSpeed;
+
+	/**
+	 * @param history
+	 * @param ratings
+	 */
+	public HistoryRecorder(MatchHistory history, Ratings ratings) {
+		_history = history;
+		_ratings = ratings;
+	}
+
+	/**
+	 * @param difficulty of the computer player
+	 * @param left true for the left paddle
+	 * @return name of a computer player - one per side so a match of two computers has two players
+	 */
+	public static String computerName(String difficulty, boolean left) {
+		return "Computer " + difficulty + (left ? " (left)" : " (right)");
+	}
+
+	/**
+	 * Records the next started match with these players. A match of a player against itself
+	 * is not recorded.
+	 * @param left name of the left player
+	 * @param right name of the right player
+	 */
+	public void setPlayers(String left, String right) {
+		if (left.equals(right)) {
+			Pong.minorError("Player "+left+" on both sides - the match is not recorded");
+			_nextLeft = null;
+			return;
+		}
+		_nextRight = right;
+		_nextLeft = left;
+	}
+
+	@Override
+	public void onEvent(GameEvent event, boolean endOfBatch) {
+		switch (event.getType()) {
+		case GameEvent.START:
+			_history.discardRallies();
+			_left = _nextLeft;
+			_right = _nextRight;
+			_nextLeft = null;
+			_startTick = event.getTick();
+			break;
+		case GameEvent.SERVE:
+			_serveTick = event.getTick();
+			_hits = 0;
+			_maxSpeed = event.getSpeed();
+			break;
+		case GameEvent.PADDLE_HIT:
+			_hits++;
+			_maxSpeed = Math.max(_maxSpeed, event.getSpeed());
+			break;
+		case GameEvent.GOAL:
+			if (_left == null) break;
+			_history.addRally((int) (event.getTick() - _serveTick), _hits, event.isLeft(), (float) _maxSpeed);
+			break;
+		case GameEvent.STOP:
+			if (_left == null) break;
+			// a match without a goal is not worth keeping
+			if (event.getLeftPoints() + event.getRightPoints() > 0) {
+				_history.addMatch(_left, _right, System.currentTimeMillis(), (int) (event.getTick() - _startTick), 
+						event.getLeftPoints(), event.getRightPoints());
+				_history.force();
+				_ratings.record(_left, _right, event.getLeftPoints(), event.getRightPoints());
+			} else {
+				_history.discardRallies();
+			}
+			_left = null;
+			break;
+		default:
+		}
+	}
+
+}
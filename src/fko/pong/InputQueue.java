@@ -0,0 +1,138 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free queue of timestamped input events for exactly one producer and one consumer.<br>
+ * Events are stored in preallocated parallel arrays - offering and taking never allocate. The 
+ * producer publishes an event by advancing the tail with an ordered write after it filled the 
+ * slot, the consumer frees slots the same way with the head. Each side caches the other side's
+ * index and only reads it again when the queue looks full or empty.<br>
+ * When the queue is full new events are dropped and counted.
+ * @author Frank Kopp
+ */
+public final class InputQueue {
+
+	private final long[] _times;
+	private final int[] _codes;
+	private final double[] _values;
+	private final int _capacity;
+	private final int _mask;
+
+	// next slot to write - written by the producer only
+	private final AtomicLong _tail = new AtomicLong();
+	// next slot to read - written by the consumer only
+	private final AtomicLong _head = new AtomicLong();
+
+	// producer side
+	private long _headCache = 0;
+	private volatile long _dropped = 0;
+	// consumer side
+	private long _tailCache = 0;
+
+	/**
+	 * @param capacity rounded up to a power of two
+	 */
+	public InputQueue(int capacity) {
+		_capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		_mask = _capacity - 1;
+		_times = new long[_capacity];
+		_codes = new int[_capacity];
+		_values = new double[_capacity];
+	}
+
+	/**
+	 * Adds an event. Producer only.
+	 * @param time nanoTime of the event
+	 * @param code what happened
+	 * @param value e.g. a position
+	 * @return false if the queue was full and the event was dropped
+	 */
+	public boolean offer(long time, int code, double value) {
+		final long tail = _tail.get();
+		if (tail - _headCache >= _capacity) {
+			_headCache = _head.get();
+			if (tail - _headCache >= _capacity) {
+				_dropped++;
+				return false;
+			}
+		}
+		final int slot = (int) (tail & _mask);
+		_times[slot] = time;
+		_codes[slot] = code;
+		_values[slot] = value;
+		_tail.lazySet(tail + 1);
+		return true;
+	}
+
+	/**
+	 * Consumer only.
+	 * @return true if there is no event to take
+	 */
+	public boolean isEmpty() {
+		final long head = _head.get();
+		if (head < _tailCache) return false;
+		_tailCache = _tail.get();
+		return head >= _tailCache;
+	}
+
+	/**
+	 * Consumer only.
+	 * @return time of the oldest event or Long.MAX_VALUE if the queue is empty
+	 */
+	public long peekTime() {
+		return isEmpty() ? Long.MAX_VALUE : _times[(int) (_head.get() & _mask)];
+	}
+
+	/**
+	 * Consumer only - the queue must not be empty.
+	 * @return code of the oldest event
+	 */
+	public int peekCode() {
+		return _codes[(int) (_head.get() & _mask)];
+	}
+
+	/**
+	 * Consumer only - the queue must not be empty.
+	 * @return value of the oldest event
+	 */
+	public double peekValue() {
+		return _values[(int) (_head.get() & _mask)];
+	}
+
+	/**
+	 * Removes the oldest event. Consumer only - the queue must not be empty.
+	 */
+	public void remove() {
+		_head.lazySet(_head.get() + 1);
+	}
+
+	/**
+	 * @return number of events dropped because the queue was full
+	 */
+	public long getDropped() { return _dropped; }
+
+}
@@ -0,0 +1,165 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * Turns the key and mouse events of the UI into the inputs of exact simulation ticks.<br>
+ * The event handlers only stamp each event with <code>System.nanoTime()</code> and put it into an
+ * <code>InputQueue</code>. At every tick the game loop calls <code>sample()</code> with the time 
+ * the tick ends. It takes all events up to that time and adds up for how long each paddle key was
+ * held within the tick. A paddle moves for the net time its down and up keys were held - a tap 
+ * shorter than a tick moves it for the fraction of the tick it was held and is never lost. 
+ * Mouse drags set the paddle at the tick boundary.<br>
+ * Since the events carry their time the latency from an event to the tick which moves the
+ * paddle can be recorded.
+ * @author Frank Kopp
+ */
+public class InputSampler {
+
+	// paddle keys
+	public static final int LEFT_UP = 0;
+	public static final int LEFT_DOWN = 1;
+	public static final int RIGHT_UP = 2;
+	public static final int RIGHT_DOWN = 3;
+	private static final int KEYS = 4;
+
+	// event codes
+	private static final int PRESSED = 1 << 4;
+	private static final int DRAG_LEFT = 1 << 5;
+	private static final int DRAG_RIGHT = DRAG_LEFT + 1;
+
+	private static final int QUEUE_SIZE = 256;
+
+	private final InputQueue _queue = new InputQueue(QUEUE_SIZE);
+	private final long _tickNanos;
+
+	// consumer side - which keys are held since when and for how long in the current tick
+	private final boolean[] _held = new boolean[KEYS];
+	private final long[] _since = new long[KEYS];
+	private final long[] _heldNanos = new long[KEYS];
+	private long _tickEnd = -1;
+
+	private Histogram _latencies = null;
+
+	/**
+	 * @param timeStep length of a tick in seconds
+	 */
+	public InputSampler(double timeStep) {
+		_tickNanos = Math.round(timeStep * 1e9);
+	}
+
+	/**
+	 * A paddle key was pressed. Repeated presses of a held key are ignored.
+	 * @param key LEFT_UP, LEFT_DOWN, RIGHT_UP or RIGHT_DOWN
+	 */
+	public void press(int key) {
+		_queue.offer(System.nanoTime(), key | PRESSED, 0);
+	}
+
+	/**
+	 * A paddle key was released.
+	 * @param key LEFT_UP, LEFT_DOWN, RIGHT_UP or RIGHT_DOWN
+	 */
+	public void release(int key) {
+		_queue.offer(System.nanoTime(), key, 0);
+	}
+
+	/**
+	 * A paddle was dragged with the mouse.
+	 * @param left true for the left paddle
+	 * @param y new top edge of the paddle
+	 */
+	public void drag(boolean left, double y) {
+		_queue.offer(System.nanoTime(), left ? DRAG_LEFT : DRAG_RIGHT, y);
+	}
+
+	/**
+	 * Applies all events up to the end of a tick. Called by the game loop before every tick.
+	 * @param engine to set dragged paddles in
+	 * @param tickEnd nanoTime when the tick ends
+	 * @return the inputs of the tick - INPUT_* flags and held steps of both paddles
+	 */
+	public int sample(PongEngine engine, long tickEnd) {
+		// after a stall of the game loop only the last tick counts
+		final long tickStart = _tickEnd < 0 || tickEnd - _tickEnd > _tickNanos ? tickEnd - _tickNanos : _tickEnd;
+		_tickEnd = tickEnd;
+
+		for (int key = 0; key < KEYS; key++) {
+			_heldNanos[key] = 0;
+			if (_since[key] < tickStart) _since[key] = tickStart;
+		}
+		while (_queue.peekTime() <= tickEnd) {
+			final long time = Math.max(_queue.peekTime(), tickStart);
+			final int code = _queue.peekCode();
+			switch (code) {
+			case DRAG_LEFT: 	engine.setLeftPaddleY(_queue.peekValue()); break;
+			case DRAG_RIGHT: 	engine.setRightPaddleY(_queue.peekValue()); break;
+			default:
+				final int key = code & ~PRESSED;
+				if ((code & PRESSED) != 0) {
+					if (!_held[key]) {
+						_held[key] = true;
+						_since[key] = time;
+						if (_latencies != null) _latencies.record(System.nanoTime() - _queue.peekTime());
+					}
+				} else if (_held[key]) {
+					_held[key] = false;
+					_heldNanos[key] += time - _since[key];
+				}
+			}
+			_queue.remove();
+		}
+		for (int key = 0; key < KEYS; key++) {
+			if (!_held[key]) continue;
+			_heldNanos[key] += tickEnd - _since[key];
+			_since[key] = tickEnd;
+		}
+		return paddle(_heldNanos[LEFT_UP], _heldNanos[LEFT_DOWN], 
+					PongEngine.INPUT_LEFT_UP, PongEngine.INPUT_LEFT_DOWN, PongEngine.INPUT_LEFT_HELD_SHIFT)
+				| paddle(_heldNanos[RIGHT_UP], _heldNanos[RIGHT_DOWN], 
+					PongEngine.INPUT_RIGHT_UP, PongEngine.INPUT_RIGHT_DOWN, PongEngine.INPUT_RIGHT_HELD_SHIFT);
+	}
+
+	/**
+	 * @return the input of one paddle for the net time it was held down or up
+	 */
+	private int paddle(long up, long down, int upFlag, int downFlag, int shift) {
+		final long net = down - up;
+		if (net == 0) return PongEngine.INPUT_NONE;
+		final int flag = net > 0 ? downFlag : upFlag;
+		final long steps = Math.max(1, Math.round((double) Math.abs(net) * PongEngine.HELD_STEPS / _tickNanos));
+		return steps >= PongEngine.HELD_STEPS ? flag : flag | (int) steps << shift;
+	}
+
+	/**
+	 * @param histogram to record the nanoseconds from a key press to the tick moving the paddle or null
+	 */
+	public void setLatencyHistogram(Histogram histogram) { _latencies = histogram; }
+
+	/**
+	 * @return number of events lost because the queue was full
+	 */
+	public long getDroppedEvents() { return _queue.getDropped(); }
+
+}
@@ -0,0 +1,263 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Players ordered by rating in an order statistic tree - a treap where every node knows the size
+ * of its subtree. Adding, removing and re-rating a player, the rank of a player and the player 
+ * at a rank all take O(log n), the top k players O(k log n), for any number of players.<br>
+ * The nodes are parallel arrays indexed by player id - every player is one node and nothing is
+ * allocated except when the arrays grow. Higher ratings come first, equal ratings by lower id.
+ * <br>
+ * Not thread safe.
+ * @author Frank Kopp
+ */
+public class Leaderboard {
+
+	private static final int NONE = -1;
+
+	// rating the player is ordered by - kept here as it must not change while the player is in the tree
+	private double[] _rating;
+	private int[] _left;
+	private int[] _right;
+	private int[] _size;
+	private int[] _priority;
+
+	private int _root = NONE;
+	private final Random _random = new Random(0);
+
+	/**
+	 * Creates an empty leaderboard.
+	 */
+	public Leaderboard() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity expected number of players
+	 */
+	public Leaderboard(int capacity) {
+		_rating = new double[capacity];
+		_left = new int[capacity];
+		_right = new int[capacity];
+		_size = new int[capacity];
+		_priority = new int[capacity];
+	}
+
+	/**
+	 * Adds a player or moves it to its new rating.
+	 * @param id of the player - ids should be dense as the arrays grow to the largest id
+	 * @param rating
+	 */
+	public void update(int id, double rating) {
+		if (contains(id)) _root = remove(_root, id);
+		if (id >= _rating.length) grow(id + 1);
+		_rating[id] = rating;
+		_left[id] = NONE;
+		_right[id] = NONE;
+		_size[id] = 1;
+		_priority[id] = _random.nextInt();
+		_root = insert(_root, id);
+	}
+
+	/**
+	 * Removes a player.
+	 * @param id
+	 */
+	public void remove(int id) {
+		if (contains(id)) _root = remove(_root, id);
+	}
+
+	/**
+	 * @param id
+	 * @return true if the player is on the leaderboard
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && id < _size.length && _size[id] > 0;
+	}
+
+	/**
+	 * @return number of players
+	 */
+	public int size() {
+		return size(_root);
+	}
+
+	/**
+	 * @param id
+	 * @return rank of the player starting with 1 for the best or 0 if not on the leaderboard
+	 */
+	public int getRank(int id) {
+		if (!contains(id)) return 0;
+		int rank = 0;
+		int node = _root;
+		while (node != id) {
+			if (before(id, node)) {
+				node = _left[node];
+			} else {
+				rank += size(_left[node]) + 1;
+				node = _right[node];
+			}
+		}
+		return rank + size(_left[id]) + 1;
+	}
+
+	/**
+	 * @param rank starting with 1 for the best
+	 * @return id of the player at the rank or -1 if there is none
+	 */
+	public int getPlayer(int rank) {
+		if (rank < 1 || rank > size()) return NONE;
+		int node = _root;
+		while (true) {
+			final int left = size(_left[node]);
+			if (rank <= left) {
+				node = _left[node];
+			} else if (rank == left + 1) {
+				return node;
+			} else {
+				rank -= left + 1;
+				node = _right[node];
+			}
+		}
+	}
+
+	/**
+	 * @param k
+	 * @return ids of the best k players - fewer if there are not that many
+	 */
+	public int[] getTop(int k) {
+		final int[] top = new int[Math.max(0, Math.min(k, size()))];
+		for (int i = 0; i < top.length; i++) top[i] = getPlayer(i + 1);
+		return top;
+	}
+
+	/**
+	 * @param id
+	 * @return rating the player is ordered by
+	 */
+	public double getRating(int id) {
+		return _rating[id];
+	}
+
+	/**
+	 * @return true if player a is ranked before player b
+	 */
+	private boolean before(int a, int b) {
+		return _rating[a] > _rating[b] || (_rating[a] == _rating[b] && a < b);
+	}
+
+	private int size(int node) {
+		return node == NONE ? 0 : _size[node];
+	}
+
+	private void resize(int node) {
+		_size[node] = size(_left[node]) + size(_right[node]) + 1;
+	}
+
+	/**
+	 * Inserts a node into a subtree.
+	 * @return new root of the subtree
+	 */
+	private int insert(int tree, int node) {
+		if (tree == NONE) return node;
+		if (_priority[node] > _priority[tree]) {
+			split(tree, node);
+			resize(node);
+			return node;
+		}
+		if (before(node, tree)) _left[tree] = insert(_left[tree], node);
+		else _right[tree] = insert(_right[tree], node);
+		resize(tree);
+		return tree;
+	}
+
+	/**
+	 * Splits a subtree into the nodes before and after a node which become its children.
+	 */
+	private void split(int tree, int node) {
+		if (tree == NONE) {
+			_left[node] = NONE;
+			_right[node] = NONE;
+			return;
+		}
+		if (before(tree, node)) {
+			split(_right[tree], node);
+			_right[tree] = _left[node];
+			resize(tree);
+			_left[node] = tree;
+		} else {
+			split(_left[tree], node);
+			_left[tree] = _right[node];
+			resize(tree);
+			_right[node] = tree;
+		}
+	}
+
+	/**
+	 * Removes a node from a subtree.
+	 * @return new root of the subtree
+	 */
+	private int remove(int tree, int node) {
+		if (tree == node) {
+			final int merged = merge(_left[node], _right[node]);
+			_size[node] = 0;
+			return merged;
+		}
+		if (before(node, tree)) _left[tree] = remove(_left[tree], node);
+		else _right[tree] = remove(_right[tree], node);
+		resize(tree);
+		return tree;
+	}
+
+	/**
+	 * Merges two subtrees where all nodes of the first are before all of the second.
+	 * @return root of the merged tree
+	 */
+	private int merge(int a, int b) {
+		if (a == NONE) return b;
+		if (b == NONE) return a;
+		if (_priority[a] > _priority[b]) {
+			_right[a] = merge(_right[a], b);
+			resize(a);
+			return a;
+		}
+		_left[b] = merge(a, _left[b]);
+		resize(b);
+		return b;
+	}
+
+	private void grow(int minCapacity) {
+		final int capacity = Math.max(minCapacity, _rating.length * 2);
+		_rating = Arrays.copyOf(_rating, capacity);
+		_left = Arrays.copyOf(_left, capacity);
+		_right = Arrays.copyOf(_right, capacity);
+		_size = Arrays.copyOf(_size, capacity);
+		_priority = Arrays.copyOf(_priority, capacity);
+	}
+
+}
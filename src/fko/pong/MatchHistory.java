@@ -0,0 +1,683 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An append-only store of all played matches and their rallies in a folder of three files with
+ * fixed-width binary records, written and read through memory mapped segments.<br>
+ * The records are their own index:
+ * <ul>
+ * <li>matches are appended in the order they end, so the matches of a time range are found by a
+ * binary search over the end times</li>
+ * <li>every match links to the previous match of both of its players and every player to its 
+ * last match, so the matches of a player are walked without looking at any other match</li>
+ * <li>every player keeps running totals, so the all-time statistics of a player are one record</li>
+ * </ul>
+ * Records are written completely before the count in the header of their file is increased, 
+ * so a crash only loses the match being appended. Only one process may open the store for 
+ * writing and it is not thread safe - except that matches can be read from several threads 
+ * while nothing is appended.
+ * <pre>
+ * All files: MAGIC (int) | VERSION (int) | count (long) | padding to 64 bytes
+ * players.pmh - 80 bytes per player:
+ *   name (byte length + 31 bytes UTF-8) | last match (long, -1 none) | matches | wins (ints)
+ *   | rallies | hits | points (longs) | streak | best streak (ints)
+ * matches.pmh - 56 bytes per match:
+ *   end time (long, ms) | ticks | left player | right player (ints) | left points | right points 
+ *   (shorts) | rallies | hits | longest rally (ints) | previous match of left | of right (ints, -1 none)
+ *   | first rally (long) | max speed (float)
+ * rallies.pmh - 16 bytes per rally:
+ *   match | ticks (ints) | hits (short) | left scored (byte) | padding | max speed (float)
+ * </pre>
+ * All values are little endian.
+ * @author Frank Kopp
+ */
+public class MatchHistory implements AutoCloseable {
+
+	// system property with the folder of the match history
+	public static final String HISTORY_PROPERTY = "pong.history";
+
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+
+	// longest name in UTF-8 bytes
+	public static final int MAX_NAME_BYTES = 31;
+
+	private static final int PLAYER_SIZE = 80;
+	private static final int P_NAME = 0;
+	private static final int P_LAST_MATCH = 32;
+	private static final int P_MATCHES = 40;
+	private static final int P_WINS = 44;
+	private static final int P_RALLIES = 48;
+	private static final int P_HITS = 56;
+	private static final int P_POINTS = 64;
+	private static final int P_STREAK = 72;
+	private static final int P_BEST_STREAK = 76;
+
+	private static final int MATCH_SIZE = 56;
+	private static final int M_END = 0;
+	private static final int M_TICKS = 8;
+	private static final int M_LEFT = 12;
+	private static final int M_RIGHT = 16;
+	private static final int M_LEFT_POINTS = 20;
+	private static final int M_RIGHT_POINTS = 22;
+	private static final int M_RALLIES = 24;
+	private static final int M_HITS = 28;
+	private static final int M_LONGEST = 32;
+	private static final int M_PREVIOUS_LEFT = 36;
+	private static final int M_PREVIOUS_RIGHT = 40;
+	private static final int M_FIRST_RALLY = 44;
+	private static final int M_MAX_SPEED = 52;
+
+	private static final int RALLY_SIZE = 16;
+	private static final int R_MATCH = 0;
+	private static final int R_TICKS = 4;
+	private static final int R_HITS = 8;
+	private static final int R_LEFT_SCORED = 10;
+	private static final int R_MAX_SPEED = 12;
+
+	// "PMHP", "PMHM", "PMHR" little endian
+	private static final int PLAYERS_MAGIC = 0x50484D50;
+	private static final int MATCHES_MAGIC = 0x4D484D50;
+	private static final int RALLIES_MAGIC = 0x52484D50;
+
+	// records per mapped segment
+	private static final int SEGMENT_SHIFT = 16;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+	/**
+	 * A file of fixed-width records behind a header with the record count. The records are 
+	 * mapped in segments of a fixed number of records which are mapped when first used - 
+	 * mapping beyond the end of the file grows it.
+	 */
+	private static final class Table {
+		private final FileChannel _channel;
+		private final int _recordSize;
+		private final MappedByteBuffer _header;
+		private final List<MappedByteBuffer> _segments = new ArrayList<>();
+
+		Table(Path file, int magic, int recordSize) throws IOException {
+			_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, 
+					StandardOpenOption.WRITE);
+			_recordSize = recordSize;
+			final boolean created = _channel.size() == 0;
+			_header = _channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+			_header.order(ByteOrder.LITTLE_ENDIAN);
+			if (created) {
+				_header.putInt(0, magic);
+				_header.putInt(4, VERSION);
+				_header.putLong(8, 0);
+			} else if (_header.getInt(0) != magic || _header.getInt(4) != VERSION) {
+				_channel.close();
+				throw new IOException("Not a match history file of version "+VERSION+": "+file);
+			}
+			// map all existing records so readers never map
+			if (count() > 0) segment(count() - 1);
+		}
+
+		long count() { return _header.getLong(8); }
+
+		void setCount(long count) { _header.putLong(8, count); }
+
+		/**
+		 * @param record
+		 * @return the mapped segment of the record - its offset is <code>offset(record)</code>
+		 */
+		ByteBuffer segment(long record) {
+			final int s = (int) (record >>> SEGMENT_SHIFT);
+			while (_segments.size() <= s) {
+				final long position = HEADER_SIZE + ((long) _segments.size() << SEGMENT_SHIFT) * _recordSize;
+				try {
+					final MappedByteBuffer segment = _channel.map(MapMode.READ_WRITE, position, 
+							(long) _recordSize << SEGMENT_SHIFT);
+					segment.order(ByteOrder.LITTLE_ENDIAN);
+					_segments.add(segment);
+				} catch (IOException e) {
+					throw new IllegalStateException("Match history segment cannot be mapped: "+e.getMessage(), e);
+				}
+			}
+			return _segments.get(s);
+		}
+
+		int offset(long record) { return (int) (record & SEGMENT_MASK) * _recordSize; }
+
+		void force() {
+			_header.force();
+			for (MappedByteBuffer segment : _segments) segment.force();
+		}
+
+		void close() throws IOException {
+			force();
+			_channel.close();
+		}
+	}
+
+	/**
+	 * Statistics of a player or of all matches of a time range.
+	 */
+	public static final class Stats {
+		int matches;
+		int wins;
+		long rallies;
+		long hits;
+		long points;
+		int bestStreak;
+
+		public int getMatches() { return matches; }
+		public int getWins() { return wins; }
+		public long getRallies() { return rallies; }
+		public long getHits() { return hits; }
+		public long getPoints() { return points; }
+		public int getBestStreak() { return bestStreak; }
+
+		/**
+		 * @return won matches per match
+		 */
+		public double getWinRate() { return matches == 0 ? 0.0 : (double) wins / matches; }
+
+		/**
+		 * @return paddle hits per rally
+		 */
+		public double getAverageRally() { return rallies == 0 ? 0.0 : (double) hits / rallies; }
+
+		@Override
+		public String toString() {
+			return String.format("%d matches, %d wins (%.1f%%), best streak %d, %d points, %d rallies, %.2f hits per rally", 
+					matches, wins, getWinRate() * 100, bestStreak, points, rallies, getAverageRally());
+		}
+	}
+
+	private final Table _players;
+	private final Table _matches;
+	private final Table _rallies;
+
+	// player ids by name - all players are read when the store is opened
+	private final Map<String, Integer> _playerIds = new HashMap<>();
+
+	// rallies of the match being played - written but not yet counted
+	private long _pendingRallies = 0;
+	private long _pendingHits = 0;
+	private int _pendingLongest = 0;
+	private float _pendingMaxSpeed = 0f;
+
+	/**
+	 * Opens the store in the folder or creates it.
+	 * @param folder
+	 * @throws IOException
+	 */
+	public MatchHistory(Path folder) throws IOException {
+		Files.createDirectories(folder);
+		_players = new Table(folder.resolve("players.pmh"), PLAYERS_MAGIC, PLAYER_SIZE);
+		_matches = new Table(folder.resolve("matches.pmh"), MATCHES_MAGIC, MATCH_SIZE);
+		_rallies = new Table(folder.resolve("rallies.pmh"), RALLIES_MAGIC, RALLY_SIZE);
+		final long players = _players.count();
+		for (int id = 0; id < players; id++) {
+			_playerIds.put(readName(id), id);
+		}
+	}
+
+	/**
+	 * @return the store in the folder of the system property <code>pong.history</code> or null
+	 * if not set or it cannot be opened
+	 */
+	public static MatchHistory fromSystemProperty() {
+		final String folder = System.getProperty(HISTORY_PROPERTY);
+		if (folder == null || folder.isEmpty()) return null;
+		try {
+			return new MatchHistory(Paths.get(folder));
+		} catch (IOException e) {
+			Pong.criticalError("Match history "+folder+" cannot be opened: "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Appends a rally of the current match. It is only counted with the match.
+	 * @param ticks from the serve to the goal
+	 * @param hits paddle hits
+	 * @param leftScored
+	 * @param maxSpeed highest speed factor of the ball
+	 */
+	public void addRally(int ticks, int hits, boolean leftScored, float maxSpeed) {
+		final long rally = _rallies.count() + _pendingRallies;
+		final ByteBuffer b = _rallies.segment(rally);
+		final int o = _rallies.offset(rally);
+		b.putInt(o + R_MATCH, (int) _matches.count());
+		b.putInt(o + R_TICKS, ticks);
+		b.putShort(o + R_HITS, (short) Math.min(hits, Short.MAX_VALUE));
+		b.put(o + R_LEFT_SCORED, (byte) (leftScored ? 1 : 0));
+		b.putFloat(o + R_MAX_SPEED, maxSpeed);
+		_pendingRallies++;
+		_pendingHits += hits;
+		if (hits > _pendingLongest) _pendingLongest = hits;
+		if (maxSpeed > _pendingMaxSpeed) _pendingMaxSpeed = maxSpeed;
+	}
+
+	/**
+	 * Appends a match with all rallies added since the last match.
+	 * @param left name of the left player
+	 * @param right name of the right player
+	 * @param endTime milliseconds since the epoch - earlier than the last match counts as the same time 
+	 * @param ticks length of the match
+	 * @param leftPoints
+	 * @param rightPoints
+	 * @return index of the match
+	 * @throws IllegalArgumentException if both players have the same name
+	 */
+	public long addMatch(String left, String right, long endTime, int ticks, int leftPoints, int rightPoints) {
+		if (left.equals(right)) throw new IllegalArgumentException("Player "+left+" cannot play against itself");
+		final int leftId = playerId(left, true);
+		final int rightId = playerId(right, true);
+		final long match = _matches.count();
+		final long firstRally = _rallies.count();
+		if (match > 0) endTime = Math.max(endTime, getEndTime(match - 1));
+
+		final ByteBuffer b = _matches.segment(match);
+		final int o = _matches.offset(match);
+		b.putLong(o + M_END, endTime);
+		b.putInt(o + M_TICKS, ticks);
+		b.putInt(o + M_LEFT, leftId);
+		b.putInt(o + M_RIGHT, rightId);
+		b.putShort(o + M_LEFT_POINTS, (short) leftPoints);
+		b.putShort(o + M_RIGHT_POINTS, (short) rightPoints);
+		b.putInt(o + M_RALLIES, (int) _pendingRallies);
+		b.putInt(o + M_HITS, (int) _pendingHits);
+		b.putInt(o + M_LONGEST, _pendingLongest);
+		b.putInt(o + M_PREVIOUS_LEFT, (int) lastMatch(leftId));
+		b.putInt(o + M_PREVIOUS_RIGHT, (int) lastMatch(rightId));
+		b.putLong(o + M_FIRST_RALLY, firstRally);
+		b.putFloat(o + M_MAX_SPEED, _pendingMaxSpeed);
+
+		// commit rallies and match, then the totals of the players
+		_rallies.setCount(firstRally + _pendingRallies);
+		_matches.setCount(match + 1);
+		updatePlayer(leftId, match, leftPoints, rightPoints);
+		updatePlayer(rightId, match, rightPoints, leftPoints);
+
+		discardRallies();
+		return match;
+	}
+
+	/**
+	 * Forgets the rallies added since the last match - e.g. for a match which was not finished.
+	 */
+	public void discardRallies() {
+		_pendingRallies = 0;
+		_pendingHits = 0;
+		_pendingLongest = 0;
+		_pendingMaxSpeed = 0f;
+	}
+
+	/**
+	 * Adds a match to the totals of a player.
+	 */
+	private void updatePlayer(int id, long match, int points, int otherPoints) {
+		final ByteBuffer b = _players.segment(id);
+		final int o = _players.offset(id);
+		b.putLong(o + P_LAST_MATCH, match);
+		b.putInt(o + P_MATCHES, b.getInt(o + P_MATCHES) + 1);
+		b.putLong(o + P_RALLIES, b.getLong(o + P_RALLIES) + _pendingRallies);
+		b.putLong(o + P_HITS, b.getLong(o + P_HITS) + _pendingHits);
+		b.putLong(o + P_POINTS, b.getLong(o + P_POINTS) + points);
+		if (points > otherPoints) {
+			b.putInt(o + P_WINS, b.getInt(o + P_WINS) + 1);
+			final int streak = b.getInt(o + P_STREAK) + 1;
+			b.putInt(o + P_STREAK, streak);
+			if (streak > b.getInt(o + P_BEST_STREAK)) b.putInt(o + P_BEST_STREAK, streak);
+		} else {
+			b.putInt(o + P_STREAK, 0);
+		}
+	}
+
+	/**
+	 * @param name
+	 * @param create true to add an unknown player
+	 * @return id of the player or -1 if unknown
+	 */
+	private int playerId(String name, boolean create) {
+		name = truncate(name);
+		final Integer id = _playerIds.get(name);
+		if (id != null) return id;
+		if (!create) return -1;
+		final int newId = (int) _players.count();
+		final ByteBuffer b = _players.segment(newId);
+		final int o = _players.offset(newId);
+		final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		b.put(o + P_NAME, (byte) bytes.length);
+		for (int i = 0; i < bytes.length; i++) b.put(o + P_NAME + 1 + i, bytes[i]);
+		b.putLong(o + P_LAST_MATCH, -1);
+		_players.setCount(newId + 1);
+		_playerIds.put(name, newId);
+		return newId;
+	}
+
+	/**
+	 * @param name
+	 * @return the name shortened to at most MAX_NAME_BYTES in UTF-8
+	 */
+	private static String truncate(String name) {
+		while (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+			name = name.substring(0, name.length() - 1);
+		}
+		return name;
+	}
+
+	private String readName(int id) {
+		final ByteBuffer b = _players.segment(id);
+		final int o = _players.offset(id);
+		final byte[] bytes = new byte[b.get(o + P_NAME)];
+		for (int i = 0; i < bytes.length; i++) bytes[i] = b.get(o + P_NAME + 1 + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private long lastMatch(int id) {
+		return _players.segment(id).getLong(_players.offset(id) + P_LAST_MATCH);
+	}
+
+	/**
+	 * @return number of matches
+	 */
+	public long getMatchCount() { return _matches.count(); }
+
+	/**
+	 * @return number of rallies of all matches
+	 */
+	public long getRallyCount() { return _rallies.count(); }
+
+	/**
+	 * @return number of players
+	 */
+	public int getPlayerCount() { return (int) _players.count(); }
+
+	/**
+	 * @param match index
+	 * @return end time of the match in milliseconds since the epoch
+	 */
+	public long getEndTime(long match) {
+		return _matches.segment(match).getLong(_matches.offset(match) + M_END);
+	}
+
+	/**
+	 * @param match index
+	 * @return id of the left player
+	 */
+	public int getLeftPlayer(long match) {
+		return _matches.segment(match).getInt(_matches.offset(match) + M_LEFT);
+	}
+
+	/**
+	 * @param match index
+	 * @return id of the right player
+	 */
+	public int getRightPlayer(long match) {
+		return _matches.segment(match).getInt(_matches.offset(match) + M_RIGHT);
+	}
+
+	/**
+	 * @param match index
+	 * @return final points of the left player
+	 */
+	public int getLeftPoints(long match) {
+		return _matches.segment(match).getShort(_matches.offset(match) + M_LEFT_POINTS);
+	}
+
+	/**
+	 * @param match index
+	 * @return final points of the right player
+	 */
+	public int getRightPoints(long match) {
+		return _matches.segment(match).getShort(_matches.offset(match) + M_RIGHT_POINTS);
+	}
+
+	/**
+	 * @param id of a player
+	 * @return name of the player
+	 */
+	public String getPlayerName(int id) {
+		return readName(id);
+	}
+
+	/**
+	 * @param time milliseconds since the epoch
+	 * @return index of the first match which ended at or after the time
+	 */
+	public long firstMatchAfter(long time) {
+		long low = 0;
+		long high = _matches.count();
+		while (low < high) {
+			final long mid = (low + high) >>> 1;
+			if (getEndTime(mid) < time) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * All-time statistics of a player - read from the totals of the player.
+	 * @param name
+	 * @return statistics or null for an unknown player
+	 */
+	public Stats getStats(String name) {
+		final int id = playerId(name, false);
+		if (id < 0) return null;
+		final ByteBuffer b = _players.segment(id);
+		final int o = _players.offset(id);
+		final Stats stats = new Stats();
+		stats.matches = b.getInt(o + P_MATCHES);
+		stats.wins = b.getInt(o + P_WINS);
+		stats.rallies = b.getLong(o + P_RALLIES);
+		stats.hits = b.getLong(o + P_HITS);
+		stats.points = b.getLong(o + P_POINTS);
+		stats.bestStreak = b.getInt(o + P_BEST_STREAK);
+		return stats;
+	}
+
+	/**
+	 * Statistics of a player for the matches which ended in a time range - walks back the matches
+	 * of the player from the last one until the range is left.
+	 * @param name
+	 * @param from milliseconds since the epoch - inclusive
+	 * @param to milliseconds since the epoch - exclusive
+	 * @return statistics or null for an unknown player
+	 */
+	public Stats getStats(String name, long from, long to) {
+		final int id = playerId(name, false);
+		if (id < 0) return null;
+		final Stats stats = new Stats();
+		int streak = 0;
+		long match = lastMatch(id);
+		while (match >= 0) {
+			final ByteBuffer b = _matches.segment(match);
+			final int o = _matches.offset(match);
+			final long end = b.getLong(o + M_END);
+			if (end < from) break;
+			final boolean left = b.getInt(o + M_LEFT) == id;
+			if (end < to) {
+				final int points = b.getShort(o + (left ? M_LEFT_POINTS : M_RIGHT_POINTS));
+				final int otherPoints = b.getShort(o + (left ? M_RIGHT_POINTS : M_LEFT_POINTS));
+				stats.matches++;
+				stats.points += points;
+				stats.rallies += b.getInt(o + M_RALLIES);
+				stats.hits += b.getInt(o + M_HITS);
+				if (points > otherPoints) {
+					stats.wins++;
+					if (++streak > stats.bestStreak) stats.bestStreak = streak;
+				} else {
+					streak = 0;
+				}
+			}
+			match = b.getInt(o + (left ? M_PREVIOUS_LEFT : M_PREVIOUS_RIGHT));
+		}
+		return stats;
+	}
+
+	/**
+	 * Statistics of all matches which ended in a time range. Wins and streaks are not counted.
+	 * @param from milliseconds since the epoch - inclusive
+	 * @param to milliseconds since the epoch - exclusive
+	 * @return statistics
+	 */
+	public Stats getStats(long from, long to) {
+		final Stats stats = new Stats();
+		final long count = _matches.count();
+		for (long match = firstMatchAfter(from); match < count; match++) {
+			final ByteBuffer b = _matches.segment(match);
+			final int o = _matches.offset(match);
+			if (b.getLong(o + M_END) >= to) break;
+			stats.matches++;
+			stats.points += b.getShort(o + M_LEFT_POINTS) + b.getShort(o + M_RIGHT_POINTS);
+			stats.rallies += b.getInt(o + M_RALLIES);
+			stats.hits += b.getInt(o + M_HITS);
+		}
+		return stats;
+	}
+
+	/**
+	 * Writes all changes to the disk.
+	 */
+	public void force() {
+		_rallies.force();
+		_matches.force();
+		_players.force();
+	}
+
+	@Override
+	public void close() {
+		try {
+			_rallies.close();
+			_matches.close();
+			_players.close();
+		} catch (IOException e) {
+			Pong.criticalError("Match history cannot be closed: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Queries a match history or fills it with random matches to test the queries.
+	 * @param args see usage
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) usage();
+		final Path folder = Paths.get(args[0]);
+		String player = null;
+		long from = Long.MIN_VALUE;
+		long to = Long.MAX_VALUE;
+		int generate = 0;
+		try {
+			for (int i = 1; i < args.length; i++) {
+				switch (args[i]) {
+				case "-player": 	player = args[++i]; break;
+				case "-from": 	from = toMillis(args[++i]); break;
+				case "-to": 		to = toMillis(args[++i]); break;
+				case "-generate": generate = Integer.parseInt(args[++i]); break;
+				default: usage();
+				}
+			}
+		} catch (RuntimeException e) {
+			usage();
+		}
+
+		try (MatchHistory history = new MatchHistory(folder)) {
+			if (generate > 0) {
+				final long start = System.nanoTime();
+				generate(history, generate);
+				System.out.printf("%d matches generated in %.1fs%n", generate, (System.nanoTime() - start) / 1e9);
+			}
+			System.out.printf("%d matches, %d rallies, %d players%n", 
+					history.getMatchCount(), history.getRallyCount(), history.getPlayerCount());
+			final boolean allTime = from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+			final long start = System.nanoTime();
+			final Stats stats = player == null ? history.getStats(from, to) 
+					: allTime ? history.getStats(player) : history.getStats(player, from, to);
+			final long time = System.nanoTime() - start;
+			System.out.println(stats == null ? "Unknown player: "+player : (player == null ? "All" : player)+": "+stats);
+			System.out.printf("Query took %.3fms%n", time / 1e6);
+		} catch (IOException e) {
+			Pong.criticalError("Match history "+folder+" cannot be opened: "+e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param date yyyy-mm-dd
+	 * @return start of the day in local time in milliseconds since the epoch
+	 */
+	private static long toMillis(String date) {
+		return LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * Appends random matches between ten players to 11 points - one per minute up to now.
+	 * @param history
+	 * @param matches
+	 */
+	private static void generate(MatchHistory history, int matches) {
+		final Random random = new Random(matches);
+		final long now = System.currentTimeMillis();
+		for (int m = 0; m < matches; m++) {
+			final int left = random.nextInt(10);
+			final int right = (left + 1 + random.nextInt(9)) % 10;
+			int leftPoints = 0;
+			int rightPoints = 0;
+			int ticks = 0;
+			while (leftPoints < 11 && rightPoints < 11) {
+				final int hits = random.nextInt(20 + 5 * left);
+				final boolean leftScored = random.nextInt(20) < 10 + left - right;
+				final int rallyTicks = 120 + hits * 240;
+				history.addRally(rallyTicks, hits, leftScored, (float) Math.pow(PongEngine.ACCELARATION, hits));
+				ticks += rallyTicks;
+				if (leftScored) leftPoints++;
+				else rightPoints++;
+			}
+			history.addMatch("Player " + left, "Player " + right, now - (matches - m) * 60_000L, ticks, 
+					leftPoints, rightPoints);
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: java fko.pong.MatchHistory <folder> [-player <name>] "
+				+ "[-from yyyy-mm-dd] [-to yyyy-mm-dd] [-generate <matches>]");
+		System.exit(1);
+	}
+
+}
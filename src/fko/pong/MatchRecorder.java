@@ -0,0 +1,261 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Records a match as a compact log of its start state, the random seed and the inputs of
+ * every tick. The log is written through a memory mapped file which grows in chunks.<br>
+ * Together with the deterministic <code>PongEngine</code> this is enough to replay the match
+ * bit-exact with <code>MatchReplay</code>.<br>
+ * The engine calls the recorder from all its mutating methods - see 
+ * <code>PongEngine.setRecorder()</code>. The recorder is not thread safe.
+ * <pre>
+ * Header (128 bytes):
+ *   MAGIC (long) | VERSION (int) | width | height | timeStep (doubles) | seed (long) 
+ *   | anglePaddle (byte) | leftPaddleY | rightPaddleY | initialBallSpeed | acceleration 
+ *   | hitWeight | maxAngle | speedConservation (doubles) | hitSteps | angleSteps (ints, 0 = exact) 
+ *   | padding
+ * Entries:
+ *   0x00-0x0F                   one tick with the input flags in the low 4 bits
+ *   TICK_HELD + inputs (int)    one tick with inputs held for only part of the tick
+ *   LEFT_PADDLE  + y (double)   paddle set directly (mouse)
+ *   RIGHT_PADDLE + y (double)
+ *   ANGLE_PADDLE_ON/OFF         option changed
+ *   PAUSE | RESUME | STOP       game state commands
+ *   END + checksum (long)       end of log with the state checksum of the engine
+ * </pre>
+ * All values are little endian.
+ * @author Frank Kopp
+ */
+public class MatchRecorder {
+
+	// system property with the folder to record all matches to
+	public static final String RECORD_PROPERTY = "pong.record";
+	public static final String FILE_EXTENSION = ".plog";
+
+	public static final long MAGIC = 0x31434552474E4F50L; // "PONGREC1" little endian
+	public static final int VERSION = 6;
+	public static final int HEADER_SIZE = 128;
+
+	// entries
+	public static final byte TICK_MASK = 0x0F;
+	public static final byte LEFT_PADDLE = 0x10;
+	public static final byte RIGHT_PADDLE = 0x11;
+	public static final byte ANGLE_PADDLE_ON = 0x12;
+	public static final byte ANGLE_PADDLE_OFF = 0x13;
+	public static final byte PAUSE = 0x14;
+	public static final byte RESUME = 0x15;
+	public static final byte STOP = 0x16;
+	public static final byte END = 0x17;
+	public static final byte TICK_HELD = 0x18;
+
+	// size of the mapped window - the file grows by this
+	private static final int CHUNK_SIZE = 1 << 20;
+	// largest entry
+	private static final int MAX_ENTRY_SIZE = 9;
+
+	private final Path _file;
+	private final FileChannel _channel;
+	private MappedByteBuffer _buffer;
+	// file position of the start of the mapped window
+	private long _windowStart = 0;
+
+	private PongEngine _engine = null;
+	private boolean _closed = false;
+
+	// closes the log if the game is closed while recording
+	private final Thread _shutdownHook = new Thread(this::close, "MatchRecorder-Shutdown");
+
+	/**
+	 * Creates the log file.
+	 * @param file
+	 * @throws IOException
+	 */
+	public MatchRecorder(Path file) throws IOException {
+		_file = file;
+		_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, 
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		map(0);
+		Runtime.getRuntime().addShutdownHook(_shutdownHook);
+	}
+
+	/**
+	 * Creates a recorder with a new file in the folder of the system property <code>pong.record</code>.
+	 * @return the recorder or null if recording is not turned on or the file can't be created
+	 */
+	public static MatchRecorder fromSystemProperty() {
+		final String folder = System.getProperty(RECORD_PROPERTY);
+		if (folder == null || folder.isEmpty()) return null;
+		final String name = "match-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + FILE_EXTENSION;
+		try {
+			final Path dir = Paths.get(folder);
+			Files.createDirectories(dir);
+			return new MatchRecorder(dir.resolve(name));
+		} catch (IOException e) {
+			Pong.criticalError("Match log "+name+" cannot be created: "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Maps the next window of the file.
+	 * @param position file position of the window
+	 * @throws IOException
+	 */
+	private void map(long position) throws IOException {
+		_windowStart = position;
+		_buffer = _channel.map(MapMode.READ_WRITE, position, CHUNK_SIZE);
+		_buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Makes sure there is room for the next entry.
+	 */
+	private boolean ensureRoom() {
+		if (_closed) return false;
+		if (_buffer.remaining() >= MAX_ENTRY_SIZE) return true;
+		try {
+			map(_windowStart + _buffer.position());
+			return true;
+		} catch (IOException e) {
+			Pong.criticalError("Match log "+_file+" cannot be extended: "+e.getMessage());
+			_closed = true;
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the header. Called by the engine when a game starts - after the seed is set.
+	 * @param engine
+	 */
+	void start(PongEngine engine) {
+		if (_engine != null || _closed) return;
+		_engine = engine;
+		_buffer.putLong(MAGIC);
+		_buffer.putInt(VERSION);
+		_buffer.putDouble(engine.getWidth());
+		_buffer.putDouble(engine.getHeight());
+		_buffer.putDouble(engine.getTimeStep());
+		_buffer.putLong(engine.getSeed());
+		_buffer.put((byte) (engine.isAnglePaddle() ? 1 : 0));
+		_buffer.putDouble(engine.getLeftPaddleY());
+		_buffer.putDouble(engine.getRightPaddleY());
+		_buffer.putDouble(engine.getInitialBallSpeed());
+		_buffer.putDouble(engine.getAcceleration());
+		final Deflection deflection = engine.getDeflection();
+		_buffer.putDouble(deflection.getModel().getHitWeight());
+		_buffer.putDouble(deflection.getModel().getMaxAngle());
+		_buffer.putDouble(deflection.getModel().getSpeedConservation());
+		if (deflection instanceof TableDeflection) {
+			_buffer.putInt(((TableDeflection) deflection).getHitSteps());
+			_buffer.putInt(((TableDeflection) deflection).getAngleSteps());
+		} else {
+			_buffer.putInt(0);
+			_buffer.putInt(0);
+		}
+		_buffer.position(HEADER_SIZE);
+	}
+
+	/**
+	 * @param inputs of one tick
+	 */
+	void tick(int inputs) {
+		if (_engine == null || !ensureRoom()) return;
+		if ((inputs & ~TICK_MASK) == 0) {
+			_buffer.put((byte) inputs);
+		} else {
+			_buffer.put(TICK_HELD).putInt(inputs);
+		}
+	}
+
+	void leftPaddle(double y) {
+		if (_engine == null || !ensureRoom()) return;
+		_buffer.put(LEFT_PADDLE).putDouble(y);
+	}
+
+	void rightPaddle(double y) {
+		if (_engine == null || !ensureRoom()) return;
+		_buffer.put(RIGHT_PADDLE).putDouble(y);
+	}
+
+	void anglePaddle(boolean on) {
+		if (_engine == null || !ensureRoom()) return;
+		_buffer.put(on ? ANGLE_PADDLE_ON : ANGLE_PADDLE_OFF);
+	}
+
+	void pause() {
+		if (_engine == null || !ensureRoom()) return;
+		_buffer.put(PAUSE);
+	}
+
+	void resume() {
+		if (_engine == null || !ensureRoom()) return;
+		_buffer.put(RESUME);
+	}
+
+	void stop() {
+		if (_engine == null || !ensureRoom()) return;
+		_buffer.put(STOP);
+	}
+
+	/**
+	 * Writes the end of the log with the state checksum of the engine and closes the file.
+	 */
+	public synchronized void close() {
+		if (_closed) return;
+		try {
+			if (_engine != null && ensureRoom()) {
+				_buffer.put(END).putLong(_engine.getStateChecksum());
+			}
+			_closed = true;
+			final long size = _windowStart + _buffer.position();
+			_buffer.force();
+			_channel.truncate(size);
+			_channel.close();
+			if (Thread.currentThread() != _shutdownHook) Runtime.getRuntime().removeShutdownHook(_shutdownHook);
+		} catch (IOException e) {
+			Pong.criticalError("Match log "+_file+" cannot be closed: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the log file
+	 */
+	public Path getFile() {
+		return _file;
+	}
+
+}
@@ -0,0 +1,240 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays a match log written by <code>MatchRecorder</code>.<br>
+ * The log is memory mapped read only. <code>createEngine()</code> creates an engine in the recorded
+ * start state and every call to <code>step()</code> applies the recorded commands and advances 
+ * the engine by one recorded tick. This can be driven by the game loop for a real time replay
+ * in <code>PongPane</code> or as fast as possible for a headless replay.<br>
+ * A log cut off by a crash ends the replay early: a truncated entry and the zero padding the 
+ * recorder leaves after the last entry are not replayed.<br>
+ * Headless replay of one or many logs from the command line:<br>
+ * <code>java fko.pong.MatchReplay &lt;match log&gt;...</code>
+ * @author Frank Kopp
+ */
+public class MatchReplay {
+
+	// system property with a log to replay in the game
+	public static final String REPLAY_PROPERTY = "pong.replay";
+
+	// returned by step() when the log is finished
+	public static final int END_OF_LOG = -1;
+
+	private final Path _file;
+	private final MappedByteBuffer _buffer;
+	// position after the last non zero byte - only padding follows
+	private final int _dataEnd;
+
+	// header
+	private final double _width;
+	private final double _height;
+	private final double _timeStep;
+	private final long _seed;
+	private final boolean _anglePaddle;
+	private final double _leftPaddleY;
+	private final double _rightPaddleY;
+	private final double _initialBallSpeed;
+	private final double _acceleration;
+	private final Deflection _deflection;
+
+	private boolean _finished = false;
+	private boolean _hasChecksum = false;
+	private long _checksum = 0;
+	private long _ticks = 0;
+
+	/**
+	 * Maps the log and reads its header.
+	 * @param file
+	 * @throws IOException if the file can't be read or is not a match log
+	 */
+	public MatchReplay(Path file) throws IOException {
+		_file = file;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			_buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+		_buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (_buffer.remaining() < MatchRecorder.HEADER_SIZE 
+				|| _buffer.getLong() != MatchRecorder.MAGIC
+				|| _buffer.getInt() != MatchRecorder.VERSION) {
+			throw new IOException("Not a pong match log: "+file);
+		}
+		_width = _buffer.getDouble();
+		_height = _buffer.getDouble();
+		_timeStep = _buffer.getDouble();
+		_seed = _buffer.getLong();
+		_anglePaddle = _buffer.get() != 0;
+		_leftPaddleY = _buffer.getDouble();
+		_rightPaddleY = _buffer.getDouble();
+		_initialBallSpeed = _buffer.getDouble();
+		_acceleration = _buffer.getDouble();
+		final DeflectionModel model = new DeflectionModel(_buffer.getDouble(), _buffer.getDouble(), _buffer.getDouble());
+		final int hitSteps = _buffer.getInt();
+		final int angleSteps = _buffer.getInt();
+		_deflection = hitSteps == 0 ? model : new TableDeflection(model, hitSteps, angleSteps);
+		_buffer.position(MatchRecorder.HEADER_SIZE);
+		int end = _buffer.limit();
+		while (end > MatchRecorder.HEADER_SIZE && _buffer.get(end - 1) == 0) end--;
+		_dataEnd = end;
+	}
+
+	/**
+	 * @return a new engine in the recorded start state with the game started
+	 */
+	public PongEngine createEngine() {
+		final PongEngine engine = new PongEngine(_width, _height, _timeStep);
+		engine.setAnglePaddle(_anglePaddle);
+		engine.setLeftPaddleY(_leftPaddleY);
+		engine.setRightPaddleY(_rightPaddleY);
+		engine.setInitialBallSpeed(_initialBallSpeed);
+		engine.setAcceleration(_acceleration);
+		engine.setDeflection(_deflection);
+		engine.startGame(_seed);
+		return engine;
+	}
+
+	/**
+	 * Applies all recorded commands up to the next tick and advances the engine by this tick.
+	 * @param engine created by <code>createEngine()</code>
+	 * @return the events of the tick or END_OF_LOG
+	 */
+	public int step(PongEngine engine) {
+		while (!_finished) {
+			// ticks without input after the last entry are the unused rest of the file
+			if (_buffer.position() >= _dataEnd) {
+				Pong.minorError("Match log "+_file+" ends without a checksum - the recording was cut off");
+				break;
+			}
+			final byte entry = _buffer.get();
+			if ((entry & ~MatchRecorder.TICK_MASK) == 0) {
+				_ticks++;
+				return engine.step(entry);
+			}
+			switch (entry) {
+			case MatchRecorder.TICK_HELD:
+				if (!available(Integer.BYTES)) break;
+				_ticks++;
+				return engine.step(_buffer.getInt());
+			case MatchRecorder.LEFT_PADDLE: 		if (available(Double.BYTES)) engine.setLeftPaddleY(_buffer.getDouble()); break;
+			case MatchRecorder.RIGHT_PADDLE: 		if (available(Double.BYTES)) engine.setRightPaddleY(_buffer.getDouble()); break;
+			case MatchRecorder.ANGLE_PADDLE_ON: 	engine.setAnglePaddle(true); break;
+			case MatchRecorder.ANGLE_PADDLE_OFF: 	engine.setAnglePaddle(false); break;
+			case MatchRecorder.PAUSE: 			engine.pauseGame(); break;
+			case MatchRecorder.RESUME: 			engine.resumeGame(); break;
+			case MatchRecorder.STOP: 			engine.stopGame(); break;
+			case MatchRecorder.END:
+				if (!available(Long.BYTES)) break;
+				_checksum = _buffer.getLong();
+				_hasChecksum = true;
+				_finished = true;
+				break;
+			default:
+				Pong.minorError("Unknown entry "+entry+" in match log "+_file);
+				_finished = true;
+			}
+		}
+		_finished = true;
+		return END_OF_LOG;
+	}
+
+	/**
+	 * Ends the replay if the log is cut off within an entry.
+	 * @param bytes of the entry still to be read
+	 * @return true if they are in the log
+	 */
+	private boolean available(int bytes) {
+		if (_buffer.remaining() >= bytes) return true;
+		Pong.minorError("Match log "+_file+" is cut off within an entry");
+		_finished = true;
+		return false;
+	}
+
+	/**
+	 * Replays the complete log as fast as possible.
+	 * @return the engine in its final state
+	 */
+	public PongEngine replay() {
+		final PongEngine engine = createEngine();
+		while (step(engine) != END_OF_LOG) { /* empty */ }
+		return engine;
+	}
+
+	/**
+	 * @param engine after the replay is finished
+	 * @return true if the log has a checksum and the engine's state matches it
+	 */
+	public boolean verify(PongEngine engine) {
+		return _hasChecksum && engine.getStateChecksum() == _checksum;
+	}
+
+	public boolean isFinished() { return _finished; }
+	public long getTicks() { return _ticks; }
+	public long getSeed() { return _seed; }
+	public Path getFile() { return _file; }
+
+	/**
+	 * Replays all given logs headless as fast as possible and verifies the final states.
+	 * @param args match logs
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: java fko.pong.MatchReplay <match log>...");
+			System.exit(1);
+		}
+		long totalTicks = 0;
+		int failed = 0;
+		final long start = System.nanoTime();
+		for (String arg : args) {
+			try {
+				final MatchReplay replay = new MatchReplay(Paths.get(arg));
+				final PongEngine engine = replay.replay();
+				final boolean ok = replay.verify(engine);
+				if (!ok) failed++;
+				totalTicks += replay.getTicks();
+				System.out.println(String.format("%s: seed %d ticks %d score %d:%d %s", arg, replay.getSeed(), 
+						replay.getTicks(), engine.getLeftPoints(), engine.getRightPoints(), 
+						ok ? "OK" : "MISMATCH"));
+			} catch (IOException e) {
+				failed++;
+				Pong.minorError(arg+": "+e.getMessage());
+			}
+		}
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d logs, %d ticks in %.3fs (%.0f ticks/s, %.0fx real time), %d failed", 
+				args.length, totalTicks, seconds, totalTicks / seconds, 
+				totalTicks * PongEngine.TIME_STEP / seconds, failed));
+		if (failed > 0) System.exit(1);
+	}
+
+}
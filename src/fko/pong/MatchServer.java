@@ -0,0 +1,525 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hosts many concurrent matches in one JVM - bots against bots or online players against bots.<br>
+ * The matches are sharded over a fixed number of tick threads. Every shard steps all its matches
+ * in one tight loop over arrays of engines and AIs at a fixed rate with absolute deadlines, so the
+ * rate doesn't drift. A shard measures how long each batch takes and counts overruns - batches 
+ * which finished after the deadline of the next tick. If a shard falls more than a quarter of a 
+ * second behind it drops ticks instead of spiraling.<br>
+ * Matches are added from any thread through a queue which the shard drains before a batch. A 
+ * match is played to the given points (or the maximum game time) and then restarted.<br>
+ * Online players connect through <code>MatchSessions</code>. The right paddle of their match 
+ * takes the player's input and the shard publishes the view of these matches for the sessions.<br>
+ * <code>main()</code> runs a load test and prints the metrics of every shard once per second.
+ * @author Frank Kopp
+ */
+public class MatchServer {
+
+	public static final int DEFAULT_RATE = PongEngine.TICKS_PER_SECOND;
+	// ticks per published frame of a match with an online player
+	public static final int FRAME_INTERVAL = 2;
+
+	private final Shard[] _shards;
+	private final int _rate;
+	private final int _points;
+	private final long _maxTicks;
+	private final double _width;
+	private final double _height;
+
+	/**
+	 * A match on the server. The engine and AIs belong to the shard thread - other threads only
+	 * set the input of an online player and read the published view.
+	 */
+	public static final class Match {
+		final PongEngine engine;
+		final PongAI left;
+		final PongAI right;
+		final long seed;
+		// input of an online player for the right paddle
+		private volatile int _input = PongEngine.INPUT_NONE;
+		private volatile boolean _closed = false;
+		// two frames written alternately by the shard - frameSeq is the last complete one
+		private final short[][] _frames = new short[2][SpectatorProtocol.FIELDS];
+		private volatile long _frameSeq = -1;
+
+		Match(PongEngine engine, PongAI left, PongAI right, long seed) {
+			this.engine = engine;
+			this.left = left;
+			this.right = right;
+			this.seed = seed;
+		}
+
+		/**
+		 * @param input flags of the right paddle from an online player
+		 */
+		public void setInput(int input) { _input = input & NetProtocol.CLIENT_INPUTS; }
+
+		/**
+		 * Removes the match from its shard with the next tick.
+		 */
+		public void close() { _closed = true; }
+
+		/**
+		 * @return true if the right paddle is played online
+		 */
+		public boolean isOnline() { return right == null; }
+
+		/**
+		 * Copies the last published frame.
+		 * @param frame SpectatorProtocol.FIELDS values
+		 * @return number of the frame or -1 if none was published yet
+		 */
+		public long readFrame(short[] frame) {
+			long seq;
+			do {
+				seq = _frameSeq;
+				if (seq < 0) return -1;
+				System.arraycopy(_frames[(int) (seq & 1)], 0, frame, 0, frame.length);
+			} while (_frameSeq != seq);
+			return seq;
+		}
+
+		void publish() {
+			final long next = _frameSeq + 1;
+			SpectatorProtocol.quantize(engine, _frames[(int) (next & 1)]);
+			_frameSeq = next;
+		}
+	}
+
+	/**
+	 * Creates the server - the shards start with <code>start()</code>.
+	 * @param shards number of tick threads
+	 * @param rate ticks per second of every match
+	 * @param points to win a match
+	 * @param width of the board
+	 * @param height of the board
+	 */
+	public MatchServer(int shards, int rate, int points, double width, double height) {
+		_rate = rate;
+		_points = points;
+		_maxTicks = Tournament.DEFAULT_MAX_MINUTES * 60L * rate;
+		_width = width;
+		_height = height;
+		_shards = new Shard[shards];
+		for (int i = 0; i < shards; i++) _shards[i] = new Shard(i);
+	}
+
+	/**
+	 * Starts the tick threads.
+	 */
+	public void start() {
+		for (Shard shard : _shards) shard._thread.start();
+	}
+
+	/**
+	 * Stops the tick threads and waits for them.
+	 */
+	public void stop() {
+		for (Shard shard : _shards) shard._running = false;
+		for (Shard shard : _shards) {
+			try {
+				shard._thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adds a match to the shard with the fewest matches. Thread safe.
+	 * @param left AI of the left paddle
+	 * @param right AI of the right paddle or null if played by an online player
+	 * @param seed of the first game
+	 * @return the match
+	 */
+	public Match addMatch(PongAI left, PongAI right, long seed) {
+		final PongEngine engine = new PongEngine(_width, _height, 1.0 / _rate);
+		final Match match = new Match(engine, left, right, seed);
+		Shard target = _shards[0];
+		for (Shard shard : _shards) {
+			if (shard._size < target._size) target = shard;
+		}
+		synchronized (target) {
+			target._size++;
+		}
+		target._added.add(match);
+		return match;
+	}
+
+	public double getWidth() { return _width; }
+	public double getHeight() { return _height; }
+
+	/**
+	 * @return ticks per second of every match
+	 */
+	public int getRate() { return _rate; }
+
+	/**
+	 * A tick thread with its matches.
+	 */
+	private final class Shard implements Runnable {
+		final int _index;
+		final Thread _thread;
+		final ConcurrentLinkedQueue<Match> _added = new ConcurrentLinkedQueue<>();
+		volatile int _size = 0;
+		volatile boolean _running = true;
+
+		// the matches - only touched by the shard thread
+		private PongEngine[] _engines = new PongEngine[64];
+		private PongAI[] _leftAIs = new PongAI[64];
+		private PongAI[] _rightAIs = new PongAI[64];
+		private Match[] _matches = new Match[64];
+		private long[] _gameStart = new long[64];
+		private int _count = 0;
+		private int _online = 0;
+
+		// metrics - written by the shard thread only
+		final Histogram _work = new Histogram(10_000, 10_000);
+		volatile long _ticks = 0;
+		volatile long _overruns = 0;
+		volatile long _droppedTicks = 0;
+		volatile long _workNanos = 0;
+		volatile long _maxWork = 0;
+		volatile long _finished = 0;
+		volatile int _matchCount = 0;
+
+		Shard(int index) {
+			_index = index;
+			_thread = new Thread(this, "MatchShard-"+index);
+			_thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			final long period = 1_000_000_000L / _rate;
+			final long maxBehind = 1_000_000_000L / 4;
+			long deadline = System.nanoTime() + period;
+			while (_running) {
+				final long start = System.nanoTime();
+				addAndRemove();
+				step();
+				final long end = System.nanoTime();
+
+				final long work = end - start;
+				_work.record(work);
+				_workNanos += work;
+				if (work > _maxWork) _maxWork = work;
+				if (end > deadline) _overruns++;
+				_ticks++;
+
+				deadline += period;
+				if (end - deadline > maxBehind) {
+					_droppedTicks += (end - deadline) / period;
+					deadline = end + period;
+				}
+				long wait;
+				while ((wait = deadline - period - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+			}
+		}
+
+		/**
+		 * One tick of all matches.
+		 */
+		private void step() {
+			final PongEngine[] engines = _engines;
+			final PongAI[] leftAIs = _leftAIs;
+			final PongAI[] rightAIs = _rightAIs;
+			final long publish = _ticks % FRAME_INTERVAL;
+			for (int i = 0; i < _count; i++) {
+				final PongEngine engine = engines[i];
+				final PongAI rightAI = rightAIs[i];
+				final int inputs = leftAIs[i].move(engine) 
+						| (rightAI != null ? rightAI.move(engine) : _matches[i]._input);
+				engine.step(inputs);
+				if (engine.getLeftPoints() >= _points || engine.getRightPoints() >= _points || engine.getTick() - _gameStart[i] >= _maxTicks) {
+					restart(i);
+				}
+				if (rightAI == null && publish == 0) _matches[i].publish();
+			}
+		}
+
+		/**
+		 * Restarts a finished match with the next seed.
+		 */
+		private void restart(int i) {
+			final PongEngine engine = _engines[i];
+			engine.stopGame();
+			engine.startGame(engine.getSeed() + 1);
+			_gameStart[i] = engine.getTick();
+			_finished++;
+		}
+
+
+
+		/**
+		 * Takes new matches from the queue and removes closed ones.
+		 */
+		private void addAndRemove() {
+			Match match;
+			while ((match = _added.poll()) != null) {
+				if (_count == _engines.length) {
+					final int capacity = 2 * _count;
+					_engines = Arrays.copyOf(_engines, capacity);
+					_leftAIs = Arrays.copyOf(_leftAIs, capacity);
+					_rightAIs = Arrays.copyOf(_rightAIs, capacity);
+					_matches = Arrays.copyOf(_matches, capacity);
+					_gameStart = Arrays.copyOf(_gameStart, capacity);
+				}
+				match.engine.startGame(match.seed);
+				_engines[_count] = match.engine;
+				_leftAIs[_count] = match.left;
+				_rightAIs[_count] = match.right;
+				_matches[_count] = match;
+				_gameStart[_count] = match.engine.getTick();
+				_count++;
+				if (match.isOnline()) _online++;
+			}
+			if (_online > 0) {
+				for (int i = _count - 1; i >= 0; i--) {
+					if (!_matches[i]._closed) continue;
+					// order doesn't matter - move the last match into the gap
+					_count--;
+					_engines[i] = _engines[_count];
+					_leftAIs[i] = _leftAIs[_count];
+					_rightAIs[i] = _rightAIs[_count];
+					_matches[i] = _matches[_count];
+					_gameStart[i] = _gameStart[_count];
+					_engines[_count] = null;
+					_leftAIs[_count] = _rightAIs[_count] = null;
+					_matches[_count] = null;
+					_online--;
+					synchronized (this) {
+						_size--;
+					}
+				}
+			}
+			_matchCount = _count;
+		}
+	}
+
+	/**
+	 * Prints one line per shard with the metrics since the last report.
+	 * @param last values of the last report - updated
+	 * @param seconds since the last report
+	 */
+	private void report(long[][] last, double seconds) {
+		for (Shard shard : _shards) {
+			final long[] l = last[shard._index];
+			final long ticks = shard._ticks, overruns = shard._overruns, dropped = shard._droppedTicks;
+			final long work = shard._workNanos, finished = shard._finished;
+			final long dt = Math.max(1, ticks - l[0]);
+			System.out.println(String.format("  shard %d: %6d matches  %5.1f ticks/s  overruns %4d  dropped %4d  work mean %6.3fms max %6.3fms  load %5.1f%%  finished %d",
+					shard._index, shard._matchCount, (ticks - l[0]) / seconds, overruns - l[1], dropped - l[2],
+					(work - l[3]) / 1e6 / dt, shard._maxWork / 1e6, (work - l[3]) / 1e7 / seconds, finished - l[4]));
+			l[0] = ticks; l[1] = overruns; l[2] = dropped; l[3] = work; l[4] = finished;
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: java fko.pong.MatchServer [options]");
+		System.err.println("  -matches <n>         bot matches (default 1000)");
+		System.err.println("  -shards <n>          tick threads (default number of cores)");
+		System.err.println("  -rate <n>            ticks per second (default "+DEFAULT_RATE+")");
+		System.err.println("  -seconds <n>         duration of the load test (default 10)");
+		System.err.println("  -left <ai>           AI of the left paddles (default normal)");
+		System.err.println("  -right <ai>          AI of the right paddles of bot matches (default normal)");
+		System.err.println("  -points <n>          points to win a match (default "+Tournament.DEFAULT_POINTS+")");
+		System.err.println("  -players <n>         simulated online players connecting over TCP (default 0)");
+		System.err.println("  -port <n>            port for online players (default "+MatchSessions.DEFAULT_PORT+", -1 for none)");
+		System.err.println("  -ramp                add the matches in steps over the duration");
+		System.exit(1);
+	}
+
+	/**
+	 * Runs a load test - see <code>usage()</code>.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int matches = 1000;
+		int shards = Runtime.getRuntime().availableProcessors();
+		int rate = DEFAULT_RATE;
+		int seconds = 10;
+		String left = PredictingAI.NORMAL;
+		String right = PredictingAI.NORMAL;
+		int points = Tournament.DEFAULT_POINTS;
+		int players = 0;
+		int port = MatchSessions.DEFAULT_PORT;
+		boolean ramp = false;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-matches": 	matches = Integer.parseInt(args[++i]); break;
+				case "-shards": 	shards = Integer.parseInt(args[++i]); break;
+				case "-rate": 		rate = Integer.parseInt(args[++i]); break;
+				case "-seconds": 	seconds = Integer.parseInt(args[++i]); break;
+				case "-left": 		left = args[++i]; break;
+				case "-right": 		right = args[++i]; break;
+				case "-points": 	points = Integer.parseInt(args[++i]); break;
+				case "-players": 	players = Integer.parseInt(args[++i]); break;
+				case "-port": 		port = Integer.parseInt(args[++i]); break;
+				case "-ramp": 		ramp = true; break;
+				default: 			usage();
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			usage();
+		}
+		if (matches < 0 || shards < 1 || rate < 1 || seconds < 1 || points < 1 || players < 0
+				|| Tournament.createAI(left, true, 0) == null || Tournament.createAI(right, false, 0) == null) {
+			usage();
+		}
+
+		final MatchServer server = new MatchServer(shards, rate, points, Tournament.WIDTH, Tournament.HEIGHT);
+		server.start();
+		MatchSessions sessions = null;
+		if (port >= 0) {
+			try {
+				sessions = new MatchSessions(server, port, left);
+			} catch (IOException e) {
+				Pong.fatalError("Cannot open port "+port+" for players: "+e.getMessage());
+			}
+		}
+		final PlayerBots bots = players > 0 && sessions != null ? new PlayerBots(players, port) : null;
+
+		System.out.println(String.format("Match server: %d bot matches %s vs %s  %d online players  %d shards  %d ticks/s%s",
+				matches, left, right, players, shards, rate, ramp ? "  ramped up" : ""));
+
+		final long[][] last = new long[shards][5];
+		final long start = System.nanoTime();
+		long reported = start;
+		int added = 0;
+		for (int second = 1; second <= seconds; second++) {
+			final int target = ramp ? (int) ((long) matches * second / seconds) : matches;
+			for (; added < target; added++) {
+				server.addMatch(Tournament.createAI(left, true, added), Tournament.createAI(right, false, added), added);
+			}
+			LockSupport.parkNanos(start + second * 1_000_000_000L - System.nanoTime());
+			final long now = System.nanoTime();
+			System.out.println(String.format("%ds  %d matches", second, added + (sessions == null ? 0 : sessions.getSessions())));
+			server.report(last, (now - reported) / 1e9);
+			reported = now;
+		}
+		if (bots != null) bots.close();
+		if (sessions != null) sessions.close();
+		server.stop();
+
+		System.out.println("Tick work per shard (whole run):");
+		for (Shard shard : server._shards) {
+			System.out.println(String.format("  shard %d: mean %.3fms  99%% %.3fms  99.9%% %.3fms  max %.3fms  overruns %d of %d ticks",
+					shard._index, shard._work.getMean() / 1e6, shard._work.getPercentile(0.99) / 1e6, 
+					shard._work.getPercentile(0.999) / 1e6, shard._work.getMax() / 1e6, shard._overruns, shard._ticks));
+		}
+		if (bots != null) {
+			System.out.println(String.format("Online players received %d frames (%.1f per player and second)",
+					bots.getFrames(), bots.getFrames() / (double) players / seconds));
+		}
+	}
+
+	/**
+	 * Simulated online players for the load test - one thread reads all their connections and
+	 * answers every frame with an input following the ball.
+	 */
+	private static final class PlayerBots implements Runnable {
+		private final SpectatorClient[] _clients;
+		private final Selector _selector;
+		private final Thread _thread;
+		private final ByteBuffer _out = ByteBuffer.allocate(1);
+		private volatile boolean _running = true;
+		private volatile long _frames = 0;
+
+		PlayerBots(int players, int port) {
+			_clients = new SpectatorClient[players];
+			try {
+				_selector = Selector.open();
+				for (int i = 0; i < players; i++) {
+					_clients[i] = new SpectatorClient(new InetSocketAddress("localhost", port));
+					_clients[i].getChannel().register(_selector, SelectionKey.OP_READ, _clients[i]);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot connect players: "+e.getMessage(), e);
+			}
+			_thread = new Thread(this, "PlayerBots");
+			_thread.setDaemon(true);
+			_thread.start();
+		}
+
+		@Override
+		public void run() {
+			long frames = 0;
+			try {
+				while (_running) {
+					_selector.select(100);
+					final Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						final SpectatorClient client = (SpectatorClient) key.attachment();
+						final int read = client.read();
+						if (read < 0) {
+							key.cancel();
+						} else if (read > 0) {
+							frames += read;
+							final int paddle = client.getField(SpectatorProtocol.RIGHT_Y) + client.getField(SpectatorProtocol.PADDLE_SIZE) / 2;
+							final int ball = client.getField(SpectatorProtocol.BALL_Y);
+							_out.clear();
+							_out.put((byte) (ball < paddle ? PongEngine.INPUT_RIGHT_UP : PongEngine.INPUT_RIGHT_DOWN));
+							_out.flip();
+							client.getChannel().write(_out);
+						}
+					}
+					_frames = frames;
+				}
+			} catch (IOException e) {
+				Pong.criticalError("Player failed: "+e.getMessage());
+			}
+		}
+
+		long getFrames() { return _frames; }
+
+		void close() {
+			_running = false;
+			try {
+				_thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			for (SpectatorClient client : _clients) client.close();
+		}
+	}
+
+}
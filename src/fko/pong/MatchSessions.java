@@ -0,0 +1,239 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * The connections of online players to a <code>MatchServer</code>.<br>
+ * Every player who connects gets a new match against a bot and plays its right paddle. The
+ * player sends its input as single bytes (the <code>PongEngine.INPUT_RIGHT_*</code> flags) 
+ * whenever it changes and receives the view of its match in the stream format of 
+ * <code>SpectatorProtocol</code>, so a <code>SpectatorClient</code> can show it.<br>
+ * All connections are served by one thread with one selector - the tick threads are never 
+ * blocked by I/O and a slow player only skips frames.
+ * @author Frank Kopp
+ */
+public class MatchSessions implements Runnable {
+
+	public static final int DEFAULT_PORT = 4713;
+
+	private static final int BUFFER_SIZE = 64;
+
+	private final MatchServer _server;
+	private final String _bot;
+	private final ServerSocketChannel _serverChannel;
+	private final Selector _selector;
+	private final Thread _thread;
+	private final long _framePeriod;
+	private volatile boolean _open = true;
+
+	private final ArrayList<Session> _sessions = new ArrayList<>();
+	private final ByteBuffer _in = ByteBuffer.allocate(BUFFER_SIZE);
+	private final short[] _frame = new short[SpectatorProtocol.FIELDS];
+	private long _seed = 0;
+	private volatile int _sessionCount = 0;
+
+	/**
+	 * A connected player.
+	 */
+	private static final class Session {
+		final SocketChannel channel;
+		final MatchServer.Match match;
+		// bytes not taken by the socket yet - flipped
+		final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		// last frame handed to the socket
+		final short[] base = new short[SpectatorProtocol.FIELDS];
+		long frame = -1;
+
+		Session(SocketChannel channel, MatchServer.Match match) {
+			this.channel = channel;
+			this.match = match;
+		}
+	}
+
+	/**
+	 * Opens the port and starts the session thread.
+	 * @param server
+	 * @param port
+	 * @param bot name of the AI playing against online players
+	 * @throws IOException
+	 */
+	public MatchSessions(MatchServer server, int port, String bot) throws IOException {
+		_server = server;
+		_bot = bot;
+		_framePeriod = 1_000_000_000L * MatchServer.FRAME_INTERVAL / server.getRate();
+		_selector = Selector.open();
+		_serverChannel = ServerSocketChannel.open();
+		_serverChannel.configureBlocking(false);
+		_serverChannel.bind(new InetSocketAddress(port), 1024);
+		_serverChannel.register(_selector, SelectionKey.OP_ACCEPT);
+		_thread = new Thread(this, "MatchSessions");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	/**
+	 * Closes all sessions and their matches.
+	 */
+	public void close() {
+		_open = false;
+		_selector.wakeup();
+		try {
+			_thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		long next = System.nanoTime() + _framePeriod;
+		try {
+			while (_open) {
+				final long wait = next - System.nanoTime();
+				if (wait > 0) _selector.select((wait + 999_999) / 1_000_000); else _selector.selectNow();
+				final Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) {
+						accept();
+					} else if (key.isReadable()) {
+						read(key);
+					}
+				}
+				final long now = System.nanoTime();
+				if (now >= next) {
+					send();
+					// no bursts after a stall
+					next = Math.max(next + _framePeriod, now);
+				}
+			}
+		} catch (IOException e) {
+			Pong.criticalError("Match sessions failed: "+e.getMessage());
+		} finally {
+			for (int i = _sessions.size() - 1; i >= 0; i--) disconnect(i);
+			try {
+				_serverChannel.close();
+				_selector.close();
+			} catch (IOException e) {
+				Pong.minorError("Closing match sessions: "+e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Accepts new players - each gets a new match.
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = _serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			final long seed = _seed++;
+			final Session session = new Session(channel, _server.addMatch(Tournament.createAI(_bot, true, seed), null, seed));
+			SpectatorProtocol.writeHeader(session.out, _server.getWidth(), _server.getHeight(), MatchServer.FRAME_INTERVAL);
+			session.out.flip();
+			channel.register(_selector, SelectionKey.OP_READ, session);
+			_sessions.add(session);
+		}
+		_sessionCount = _sessions.size();
+	}
+
+	/**
+	 * Reads the inputs of a player - only the last one counts.
+	 */
+	private void read(SelectionKey key) {
+		final Session session = (Session) key.attachment();
+		int read;
+		try {
+			_in.clear();
+			read = session.channel.read(_in);
+			if (read > 0) session.match.setInput(_in.get(_in.position() - 1));
+		} catch (IOException e) {
+			read = -1;
+		}
+		if (read < 0) disconnect(_sessions.indexOf(session));
+	}
+
+	/**
+	 * Sends every player the newest frame of its match as delta to the last frame it got.
+	 */
+	private void send() {
+		for (int i = _sessions.size() - 1; i >= 0; i--) {
+			final Session session = _sessions.get(i);
+			final ByteBuffer out = session.out;
+			try {
+				if (out.remaining() <= SpectatorProtocol.MAX_FRAME) {
+					final long frame = session.match.readFrame(_frame);
+					if (frame > session.frame) {
+						out.compact();
+						SpectatorProtocol.encode(session.frame < 0 ? null : session.base, _frame, out);
+						out.flip();
+						System.arraycopy(_frame, 0, session.base, 0, _frame.length);
+						session.frame = frame;
+					}
+				}
+				if (out.hasRemaining()) session.channel.write(out);
+			} catch (IOException e) {
+				disconnect(i);
+			}
+		}
+	}
+
+	/**
+	 * Closes a player's connection and its match.
+	 */
+	private void disconnect(int index) {
+		if (index < 0) return;
+		final Session session = _sessions.get(index);
+		final int last = _sessions.size() - 1;
+		_sessions.set(index, _sessions.get(last));
+		_sessions.remove(last);
+		_sessionCount = _sessions.size();
+		session.match.close();
+		try {
+			session.channel.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	/**
+	 * @return number of connected players
+	 */
+	public int getSessions() { return _sessionCount; }
+
+}
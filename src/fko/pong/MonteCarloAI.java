@@ -0,0 +1,310 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The hard AI. Whenever the ball turns towards its paddle it searches for the best part of the
+ * paddle to hit the ball with - which decides the angle of the return and whether the opponent
+ * can reach it.<br>
+ * For every candidate aim offset it copies the engine (<code>PongEngine.copyFrom()</code> - a flat
+ * copy of primitives) and rolls the game out with the real bounce logic: its own paddle driven by
+ * a perfect <code>PredictingAI</code> with this aim, the opponent by a <code>PredictingAI</code> of
+ * an assumed difficulty with a different random error in every rollout. A rollout ends with a
+ * goal (+1 or -1) or after a horizon (0). The candidate with the best mean wins. All candidates
+ * use the same opponent seeds so their results are comparable with few rollouts.<br>
+ * In the game the candidates are searched in parallel on a small shared pool of low priority
+ * daemon threads with one core less than available, within a fixed time budget. 
+ * <code>move()</code> never waits for the search - until the result is there the AI plays
+ * the plain prediction. Headless (no pool) the search runs synchronously with a fixed number
+ * of rollouts so tournaments stay reproducible.<br>
+ * Nothing is allocated after the first search.
+ * @author Frank Kopp
+ */
+public class MonteCarloAI implements PongAI {
+
+	public static final String HARD = "hard";
+
+	// candidate aim offsets spread over this fraction of the paddle size around its center
+	private static final int CANDIDATES = 9;
+	private static final double MAX_AIM = 0.8;
+
+	// a rollout without a goal ends after this
+	private static final int HORIZON_TICKS = 6 * PongEngine.TICKS_PER_SECOND;
+
+	// defaults
+	public static final String DEFAULT_OPPONENT = PredictingAI.NORMAL;
+	public static final int DEFAULT_ROLLOUTS = 16;
+	public static final int MAX_ASYNC_ROLLOUTS = 1024;
+	public static final long DEFAULT_BUDGET_NANOS = 12_000_000L;
+
+	// shared by all AIs searching in the background
+	private static ThreadPoolExecutor _pool = null;
+
+	private final boolean _left;
+	private final String _opponentModel;
+	private final int _maxRollouts;
+	private final long _budgetNanos;
+	private final boolean _async;
+
+	// plays the chosen aim
+	private final PredictingAI _driver;
+
+	// search state - engines are created with the first search
+	private PongEngine _snapshot = null;
+	private final Candidate[] _candidates = new Candidate[CANDIDATES];
+	private final AtomicInteger _pending = new AtomicInteger();
+	private boolean _searching = false;
+	private long _searchSeed;
+
+	private double _cachedSpeedX = Double.NaN;
+	private double _cachedSpeedY = Double.NaN;
+
+	// statistics
+	private long _searches = 0;
+	private long _skippedSearches = 0;
+	private long _rollouts = 0;
+
+	/**
+	 * @param left true for the left paddle
+	 * @param opponentModel assumed difficulty of the opponent - a <code>PredictingAI</code> preset
+	 * @param maxRollouts per candidate and search
+	 * @param budgetNanos time for a search in the background or 0 to search synchronously
+	 * @param seed
+	 */
+	public MonteCarloAI(boolean left, String opponentModel, int maxRollouts, long budgetNanos, long seed) {
+		if (PredictingAI.create(opponentModel, !left, 0) == null || maxRollouts < 1 || budgetNanos < 0) {
+			throw new IllegalArgumentException("Invalid search: "+opponentModel+","+maxRollouts+","+budgetNanos);
+		}
+		_left = left;
+		_opponentModel = opponentModel;
+		_maxRollouts = maxRollouts;
+		_budgetNanos = budgetNanos;
+		_async = budgetNanos > 0;
+		_driver = PredictingAI.create(PredictingAI.PERFECT, left, seed);
+		_searchSeed = seed;
+	}
+
+	/**
+	 * @param left true for the left paddle
+	 * @param seed
+	 * @return AI searching synchronously with the default number of rollouts - for headless matches
+	 */
+	public static MonteCarloAI createHeadless(boolean left, long seed) {
+		return new MonteCarloAI(left, DEFAULT_OPPONENT, DEFAULT_ROLLOUTS, 0, seed);
+	}
+
+	/**
+	 * @param left true for the left paddle
+	 * @param seed
+	 * @return AI searching in the background within the default time budget - for the game
+	 */
+	public static MonteCarloAI createInteractive(boolean left, long seed) {
+		// start the threads now and not with the first search in the middle of a rally
+		getPool().prestartAllCoreThreads();
+		return new MonteCarloAI(left, DEFAULT_OPPONENT, MAX_ASYNC_ROLLOUTS, DEFAULT_BUDGET_NANOS, seed);
+	}
+
+	/**
+	 * @see fko.pong.PongAI#move(fko.pong.PongEngine)
+	 */
+	@Override
+	public int move(PongEngine engine) {
+		final double speedX = engine.getSpeedX();
+		final double speedY = engine.getSpeedY();
+		if (!engine.isBallMoving()) {
+			_cachedSpeedX = Double.NaN;
+		} else if (speedX != _cachedSpeedX || speedY != _cachedSpeedY) {
+			_cachedSpeedX = speedX;
+			_cachedSpeedY = speedY;
+			if (_left ? speedX < 0 : speedX > 0) startSearch(engine);
+		}
+		if (_searching && _pending.get() == 0) finishSearch(engine.getPaddleSize());
+		return _driver.move(engine);
+	}
+
+	/**
+	 * Starts a search from the current state of the engine - in the background or synchronously.
+	 */
+	private void startSearch(PongEngine engine) {
+		// the plain prediction until there is a result
+		_driver.setAimOffset(0);
+		if (_searching) {
+			// the last search is still running on the engines
+			_skippedSearches++;
+			return;
+		}
+		if (_snapshot == null) {
+			_snapshot = new PongEngine(engine);
+			for (int i = 0; i < CANDIDATES; i++) {
+				_candidates[i] = new Candidate(MAX_AIM * (i / (CANDIDATES - 1.0) - 0.5), engine);
+			}
+		} else {
+			_snapshot.copyFrom(engine);
+		}
+		_searches++;
+		_searchSeed = _searchSeed * 6364136223846793005L + 1442695040888963407L;
+		_searching = true;
+		final long deadline = _async ? System.nanoTime() + _budgetNanos : 0;
+		for (Candidate candidate : _candidates) {
+			candidate.prepare(deadline, engine.getPaddleSize());
+		}
+		_pending.set(CANDIDATES);
+		if (_async) {
+			final ThreadPoolExecutor pool = getPool();
+			for (Candidate candidate : _candidates) {
+				pool.execute(candidate);
+			}
+		} else {
+			for (Candidate candidate : _candidates) {
+				candidate.run();
+			}
+			finishSearch(engine.getPaddleSize());
+		}
+	}
+
+	/**
+	 * Chooses the best candidate - from the center outwards so the safest wins ties.
+	 */
+	private void finishSearch(double paddleSize) {
+		_searching = false;
+		Candidate best = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int d = 0; d <= CANDIDATES / 2; d++) {
+			for (int sign = -1; sign <= 1; sign += 2) {
+				final int i = CANDIDATES / 2 + sign * d;
+				final Candidate candidate = _candidates[i];
+				_rollouts += candidate._rollouts;
+				if (candidate._rollouts > 0 && candidate.getScore() > bestScore) {
+					bestScore = candidate.getScore();
+					best = candidate;
+				}
+				if (d == 0) break;
+			}
+		}
+		if (best != null) _driver.setAimOffset(best._aim * paddleSize);
+	}
+
+	/**
+	 * Rolls out the game for one aim offset.
+	 */
+	private class Candidate implements Runnable {
+
+		// fraction of the paddle size
+		private final double _aim;
+		private final PongEngine _engine;
+		private final PredictingAI _self;
+		private final PredictingAI _opponent;
+
+		private long _deadline;
+		private double _paddleSize;
+		private int _rollouts;
+		private int _total;
+
+		Candidate(double aim, PongEngine engine) {
+			_aim = aim;
+			_engine = new PongEngine(engine);
+			_self = PredictingAI.create(PredictingAI.PERFECT, _left, 0);
+			_opponent = PredictingAI.create(_opponentModel, !_left, 0);
+		}
+
+		void prepare(long deadline, double paddleSize) {
+			_deadline = deadline;
+			_paddleSize = paddleSize;
+			_rollouts = 0;
+			_total = 0;
+		}
+
+		/**
+		 * Called instead of run() if the pool can't take the candidate.
+		 */
+		void skip() {
+			_pending.decrementAndGet();
+		}
+
+		double getScore() {
+			return (double) _total / _rollouts;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (_rollouts < _maxRollouts && (_deadline == 0 || System.nanoTime() < _deadline)) {
+					_total += rollout(_searchSeed + _rollouts);
+					_rollouts++;
+				}
+			} finally {
+				_pending.decrementAndGet();
+			}
+		}
+
+		/**
+		 * @return +1 if we scored, -1 if the opponent scored, 0 if nobody within the horizon
+		 */
+		private int rollout(long seed) {
+			final PongEngine engine = _engine;
+			engine.copyFrom(_snapshot);
+			_self.reset(seed);
+			_self.setAimOffset(_aim * _paddleSize);
+			_opponent.reset(seed);
+			for (int tick = 0; tick < HORIZON_TICKS; tick++) {
+				final int events = engine.step(_self.move(engine) | _opponent.move(engine));
+				if ((events & PongEngine.EVENT_GOAL) != 0) {
+					final boolean leftScored = (events & PongEngine.EVENT_GOAL_LEFT) != 0;
+					return leftScored == _left ? 1 : -1;
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the shared pool - created with the first background search
+	 */
+	private static synchronized ThreadPoolExecutor getPool() {
+		if (_pool == null) {
+			final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			_pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(CANDIDATES * 4), 
+					r -> {
+						final Thread thread = new Thread(r, "MonteCarloAI");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}, 
+					// queue full - the candidate is not searched but must count as done
+					(r, executor) -> ((Candidate) r).skip());
+		}
+		return _pool;
+	}
+
+	public long getSearches() { return _searches; }
+	public long getSkippedSearches() { return _skippedSearches; }
+	public long getRollouts() { return _rollouts; }
+
+}
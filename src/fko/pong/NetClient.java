@@ -0,0 +1,252 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * The client side of a network game. It plays the right paddle.<br>
+ * The client runs its own engine ahead of the host and predicts: its own paddle moves with the
+ * local input in the same tick - so the perceived input latency is one frame whatever the round
+ * trip time is - and the host's paddle keeps its last known input.<br>
+ * Every snapshot from the host contains the last client tick the host applied. The client
+ * rolls its engine back to the snapshot and replays its own inputs since that tick from a ring
+ * buffer. If the result differs from what it had predicted this was a misprediction (e.g. the host
+ * moved or the ball bounced off the host's paddle differently) and the corrected state is shown.<br>
+ * Everything runs on the game loop's thread with a non blocking channel - no threads and no 
+ * allocation per tick.
+ * @author Frank Kopp
+ */
+public class NetClient {
+
+	// system property to join a game: <host>[:<port>]
+	public static final String CONNECT_PROPERTY = "pong.connect";
+
+	// ring of own inputs - longer than any sensible round trip
+	private static final int HISTORY = 256;
+	private static final int MASK = HISTORY - 1;
+	// ticks between two hellos
+	private static final int HELLO_INTERVAL = PongEngine.TICKS_PER_SECOND / 4;
+
+	private final PongEngine _engine;
+	private final SocketAddress _host;
+	private final DatagramChannel _channel;
+	private final NetShim _shim;
+
+	private final ByteBuffer _in = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+	private final ByteBuffer _out = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+
+	private boolean _welcomed = false;
+
+	// own inputs by client tick
+	private final byte[] _inputs = new byte[HISTORY];
+	private long _tick = 0;
+
+	// last snapshot
+	private long _hostTick = -1;
+	private int _hostInputs = PongEngine.INPUT_NONE;
+	private long _ackLag = 0;
+
+	// statistics
+	private long _snapshots = 0;
+	private long _lostSnapshots = 0;
+	private long _mispredictions = 0;
+	private long _replayedTicks = 0;
+	private long _maxReplay = 0;
+
+	/**
+	 * Opens a channel to the host and starts saying hello.
+	 * @param engine the engine to predict in - also used for rendering
+	 * @param host
+	 * @param shim sends the packets
+	 * @throws IOException
+	 */
+	public NetClient(PongEngine engine, SocketAddress host, NetShim shim) throws IOException {
+		_engine = engine;
+		_host = host;
+		_shim = shim;
+		_channel = DatagramChannel.open();
+		_channel.configureBlocking(false);
+		_channel.bind(null);
+	}
+
+	/**
+	 * @return a client for the host of the system property <code>pong.connect</code> or null if not set
+	 */
+	public static NetClient fromSystemProperty(PongEngine engine) {
+		final String host = System.getProperty(CONNECT_PROPERTY);
+		if (host == null || host.isEmpty()) return null;
+		try {
+			final int colon = host.lastIndexOf(':');
+			final SocketAddress address = colon < 0 
+					? new InetSocketAddress(host, NetProtocol.DEFAULT_PORT)
+					: new InetSocketAddress(host.substring(0, colon), Integer.parseInt(host.substring(colon + 1)));
+			return new NetClient(engine, address, NetShim.fromSystemProperties());
+		} catch (IOException | IllegalArgumentException e) {
+			Pong.criticalError("Cannot connect to "+host+": "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Receives snapshots, predicts the next tick with the local input and sends it to the host.
+	 * @param inputs local input - only the flags of the right paddle are used
+	 * @return the events of the predicted tick
+	 */
+	public int tick(int inputs) {
+		try {
+			poll();
+			if (!_welcomed) {
+				if (_tick++ % HELLO_INTERVAL == 0) {
+					NetProtocol.begin(_out, NetProtocol.HELLO);
+					_out.flip();
+					_shim.send(_channel, _out, _host);
+				}
+				return PongEngine.EVENT_NONE;
+			}
+
+			// predict the next tick
+			_tick++;
+			final byte own = (byte) (inputs & NetProtocol.CLIENT_INPUTS);
+			_inputs[(int) (_tick & MASK)] = own;
+			sendInputs();
+			return _engine.step(own | _hostInputs);
+		} catch (IOException e) {
+			Pong.minorError("Network error: "+e.getMessage());
+			return PongEngine.EVENT_NONE;
+		}
+	}
+
+	/**
+	 * Receives all packets and sends due delayed ones.
+	 */
+	private void poll() throws IOException {
+		SocketAddress sender;
+		while ((sender = _channel.receive(_in)) != null) {
+			_in.flip();
+			if (sender.equals(_host)) {
+				switch (NetProtocol.type(_in)) {
+				case NetProtocol.WELCOME: 	welcome(); break;
+				case NetProtocol.SNAPSHOT: 	if (_welcomed) reconcile(); break;
+				default:
+				}
+			}
+			_in.clear();
+		}
+		_shim.flush(_channel);
+	}
+
+	/**
+	 * Checks that host and client play on the same board.
+	 */
+	private void welcome() {
+		if (_welcomed || _in.remaining() < NetProtocol.WELCOME_SIZE) return;
+		final double width = _in.getDouble();
+		final double height = _in.getDouble();
+		final double timeStep = _in.getDouble();
+		if (width != _engine.getWidth() || height != _engine.getHeight() || timeStep != _engine.getTimeStep()) {
+			Pong.criticalError("Host plays on a different board: "+width+"x"+height+" "+timeStep+"s");
+			return;
+		}
+		_engine.setDeflection(new DeflectionModel(_in.getDouble(), _in.getDouble(), _in.getDouble()));
+		_welcomed = true;
+		_tick = 0;
+	}
+
+	/**
+	 * Rolls the engine back to a snapshot and replays the own inputs the host has not applied yet.
+	 */
+	private void reconcile() {
+		if (_in.remaining() < NetProtocol.SNAPSHOT_SIZE) return;
+		final long hostTick = _in.getLong();
+		// late snapshots are of no use
+		if (hostTick <= _hostTick) return;
+		final long applied = _in.getLong();
+		final int hostInputs = _in.get() & NetProtocol.HOST_INPUTS;
+		final long predicted = _engine.getStateChecksum();
+		if (!_engine.readState(_in)) return;
+		if (_hostTick >= 0) _lostSnapshots += hostTick - _hostTick - 1;
+		_hostTick = hostTick;
+		_snapshots++;
+		_hostInputs = hostInputs;
+
+		// replay the inputs after the applied one - their events were published when predicted
+		long from = applied + 1;
+		if (from < _tick - HISTORY + 1) from = _tick - HISTORY + 1;
+		final GameEventBus bus = _engine.getEventBus();
+		_engine.setEventBus(null);
+		for (long t = from; t <= _tick; t++) {
+			_engine.step(_inputs[(int) (t & MASK)] | _hostInputs);
+		}
+		_engine.setEventBus(bus);
+		final long replayed = Math.max(0, _tick - from + 1);
+		_replayedTicks += replayed;
+		if (replayed > _maxReplay) _maxReplay = replayed;
+		_ackLag = _tick - applied;
+		if (_engine.getStateChecksum() != predicted) _mispredictions++;
+	}
+
+	/**
+	 * Sends the latest inputs - with the ones before in case packets get lost.
+	 */
+	private void sendInputs() throws IOException {
+		final int n = (int) Math.min(NetProtocol.INPUT_REDUNDANCY, _tick);
+		NetProtocol.begin(_out, NetProtocol.INPUT);
+		_out.putLong(_tick);
+		_out.put((byte) n);
+		for (long t = _tick - n + 1; t <= _tick; t++) {
+			_out.put(_inputs[(int) (t & MASK)]);
+		}
+		_out.flip();
+		_shim.send(_channel, _out, _host);
+	}
+
+	/**
+	 * Closes the channel.
+	 */
+	public void close() {
+		try {
+			_channel.close();
+		} catch (IOException e) {
+			Pong.minorError("Network error: "+e.getMessage());
+		}
+	}
+
+	public boolean isWelcomed() { return _welcomed; }
+	public long getSnapshots() { return _snapshots; }
+	public long getLostSnapshots() { return _lostSnapshots; }
+	public long getMispredictions() { return _mispredictions; }
+	public long getReplayedTicks() { return _replayedTicks; }
+	public long getMaxReplay() { return _maxReplay; }
+	/**
+	 * @return ticks between the client's latest input and the one the host applied last - the round trip
+	 */
+	public long getAckLag() { return _ackLag; }
+	public NetShim getShim() { return _shim; }
+
+}
@@ -0,0 +1,226 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+
+/**
+ * The authoritative side of a network game. It runs the real engine and plays the left paddle.<br>
+ * Every tick it takes the next input of the client in the order of the client's ticks from a
+ * small buffer, steps the engine and sends a snapshot of the state together with the client tick
+ * it applied last. If an input is missing the last one is repeated. If the client's inputs pile
+ * up the host skips ahead so the delay stays bounded.<br>
+ * Everything runs on the game loop's thread with a non blocking channel - there are no 
+ * threads and no allocation per tick.
+ * @author Frank Kopp
+ */
+public class NetHost {
+
+	// system property to host a game on a port
+	public static final String HOST_PROPERTY = "pong.host";
+
+	// ring of received client inputs
+	private static final int BUFFER = 256;
+	private static final int MASK = BUFFER - 1;
+	// client inputs which may wait before the host skips ahead
+	private static final int MAX_WAITING_INPUTS = 6;
+
+	private final PongEngine _engine;
+	private final DatagramChannel _channel;
+	private final NetShim _shim;
+
+	private final ByteBuffer _in = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+	private final ByteBuffer _out = ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+
+	private SocketAddress _client = null;
+
+	// received client inputs by client tick
+	private final long[] _inputTicks = new long[BUFFER];
+	private final byte[] _inputs = new byte[BUFFER];
+	private long _nextClientTick = -1;
+	private long _newestClientTick = -1;
+	private long _appliedClientTick = -1;
+	private int _clientInputs = PongEngine.INPUT_NONE;
+
+	private long _tick = 0;
+
+	// statistics
+	private long _repeatedInputs = 0;
+	private long _skippedInputs = 0;
+
+	/**
+	 * Opens the port.
+	 * @param engine the authoritative engine
+	 * @param port
+	 * @param shim sends the packets
+	 * @throws IOException
+	 */
+	public NetHost(PongEngine engine, int port, NetShim shim) throws IOException {
+		_engine = engine;
+		_shim = shim;
+		_channel = DatagramChannel.open();
+		_channel.configureBlocking(false);
+		_channel.bind(new InetSocketAddress(port));
+		Arrays.fill(_inputTicks, -1);
+	}
+
+	/**
+	 * @return a host on the port of the system property <code>pong.host</code> or null if not set
+	 */
+	public static NetHost fromSystemProperty(PongEngine engine) {
+		final String port = System.getProperty(HOST_PROPERTY);
+		if (port == null) return null;
+		try {
+			return new NetHost(engine, port.isEmpty() ? NetProtocol.DEFAULT_PORT : Integer.parseInt(port), 
+					NetShim.fromSystemProperties());
+		} catch (IOException | NumberFormatException e) {
+			Pong.criticalError("Cannot host on port "+port+": "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Receives all packets and sends due delayed ones. Called every tick before the inputs.
+	 */
+	public void poll() {
+		try {
+			SocketAddress sender;
+			while ((sender = _channel.receive(_in)) != null) {
+				_in.flip();
+				switch (NetProtocol.type(_in)) {
+				case NetProtocol.HELLO: 	welcome(sender); break;
+				case NetProtocol.INPUT: 	if (sender.equals(_client)) receiveInputs(); break;
+				default:
+				}
+				_in.clear();
+			}
+			_shim.flush(_channel);
+		} catch (IOException e) {
+			Pong.minorError("Network error: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * A client wants to join - the last one to say hello plays.
+	 */
+	private void welcome(SocketAddress client) throws IOException {
+		if (!client.equals(_client)) {
+			_client = client;
+			_nextClientTick = _newestClientTick = _appliedClientTick = -1;
+			Arrays.fill(_inputTicks, -1);
+		}
+		NetProtocol.begin(_out, NetProtocol.WELCOME);
+		_out.putDouble(_engine.getWidth());
+		_out.putDouble(_engine.getHeight());
+		_out.putDouble(_engine.getTimeStep());
+		final DeflectionModel model = _engine.getDeflection().getModel();
+		_out.putDouble(model.getHitWeight());
+		_out.putDouble(model.getMaxAngle());
+		_out.putDouble(model.getSpeedConservation());
+		_out.flip();
+		_shim.send(_channel, _out, client);
+	}
+
+	/**
+	 * Stores the inputs of an input packet by client tick.
+	 */
+	private void receiveInputs() {
+		if (_in.remaining() < NetProtocol.INPUT_SIZE) return;
+		final long tick = _in.getLong();
+		final int n = _in.get();
+		if (n <= 0 || _in.remaining() < n) return;
+		if (_nextClientTick < 0) _nextClientTick = tick;
+		for (int i = 0; i < n; i++) {
+			final long t = tick - n + 1 + i;
+			final byte input = _in.get();
+			if (t < _nextClientTick) continue;
+			_inputTicks[(int) (t & MASK)] = t;
+			_inputs[(int) (t & MASK)] = input;
+		}
+		if (tick > _newestClientTick) _newestClientTick = tick;
+	}
+
+	/**
+	 * @return the inputs of the client for this tick
+	 */
+	public int nextClientInputs() {
+		if (_nextClientTick < 0) return PongEngine.INPUT_NONE;
+		// bound the delay
+		if (_newestClientTick - _nextClientTick > MAX_WAITING_INPUTS) {
+			_skippedInputs += _newestClientTick - MAX_WAITING_INPUTS / 2 - _nextClientTick;
+			_nextClientTick = _newestClientTick - MAX_WAITING_INPUTS / 2;
+		}
+		final int slot = (int) (_nextClientTick & MASK);
+		if (_inputTicks[slot] == _nextClientTick) {
+			_clientInputs = _inputs[slot] & NetProtocol.CLIENT_INPUTS;
+			_appliedClientTick = _nextClientTick;
+			_nextClientTick++;
+		} else {
+			_repeatedInputs++;
+		}
+		return _clientInputs;
+	}
+
+	/**
+	 * Sends the state after a tick.
+	 * @param inputs of the tick
+	 */
+	public void sendSnapshot(int inputs) {
+		_tick++;
+		if (_client == null) return;
+		NetProtocol.begin(_out, NetProtocol.SNAPSHOT);
+		_out.putLong(_tick);
+		_out.putLong(_appliedClientTick);
+		_out.put((byte) (inputs & NetProtocol.HOST_INPUTS));
+		_engine.writeState(_out);
+		_out.flip();
+		try {
+			_shim.send(_channel, _out, _client);
+		} catch (IOException e) {
+			Pong.minorError("Network error: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Closes the port.
+	 */
+	public void close() {
+		try {
+			_channel.close();
+		} catch (IOException e) {
+			Pong.minorError("Network error: "+e.getMessage());
+		}
+	}
+
+	public boolean hasClient() { return _client != null; }
+	public long getRepeatedInputs() { return _repeatedInputs; }
+	public long getSkippedInputs() { return _skippedInputs; }
+	public NetShim getShim() { return _shim; }
+
+}
@@ -0,0 +1,141 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Tests a network game on the loopback interface without UI.<br>
+ * A <code>NetHost</code> and a <code>NetClient</code> run in this process in real time, each 
+ * with a <code>NetShim</code> simulating latency, jitter and packet loss. Both paddles are played
+ * by <code>PredictingAI</code>s - the client's AI sees only the client's predicted engine like 
+ * a player would.<br>
+ * Prints how often the client mispredicted and had to roll back, how far it replayed, the round
+ * trip in ticks and how far the client's ball runs ahead of the host's.<br>
+ * Usage: <code>java fko.pong.NetLoopback [-latency &lt;ms one way&gt;] [-jitter &lt;ms&gt;] 
+ * [-loss &lt;0.0-1.0&gt;] [-seconds &lt;n&gt;] [-port &lt;n&gt;]</code>
+ * @author Frank Kopp
+ */
+public class NetLoopback {
+
+	/**
+	 * @param args see class comment
+	 */
+	public static void main(String[] args) {
+		double latency = 40;
+		double jitter = 10;
+		double loss = 0.05;
+		int seconds = 20;
+		int port = NetProtocol.DEFAULT_PORT;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-latency": 	latency = Double.parseDouble(args[++i]); break;
+				case "-jitter": 	jitter = Double.parseDouble(args[++i]); break;
+				case "-loss": 		loss = Double.parseDouble(args[++i]); break;
+				case "-seconds": 	seconds = Integer.parseInt(args[++i]); break;
+				case "-port": 		port = Integer.parseInt(args[++i]); break;
+				default: 			throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java fko.pong.NetLoopback [-latency <ms one way>] [-jitter <ms>] [-loss <0.0-1.0>] [-seconds <n>] [-port <n>]");
+			System.exit(1);
+		}
+
+		final PongEngine hostEngine = new PongEngine(Tournament.WIDTH, Tournament.HEIGHT);
+		final PongEngine clientEngine = new PongEngine(Tournament.WIDTH, Tournament.HEIGHT);
+		final NetHost host;
+		final NetClient client;
+		try {
+			host = new NetHost(hostEngine, port, new NetShim(latency, jitter, loss, 1));
+			client = new NetClient(clientEngine, new InetSocketAddress("localhost", port), new NetShim(latency, jitter, loss, 2));
+		} catch (IOException e) {
+			Pong.fatalError("Cannot open loopback connection: "+e.getMessage());
+			return;
+		}
+		final PongAI hostAI = PredictingAI.create(PredictingAI.EXPERT, true, 3);
+		final PongAI clientAI = PredictingAI.create(PredictingAI.EXPERT, false, 4);
+
+		System.out.println(String.format("Loopback game for %ds with latency %.0fms (RTT %.0fms) jitter %.0fms loss %.1f%%", 
+				seconds, latency, 2 * latency, jitter, loss * 100));
+
+		hostEngine.startGame(42);
+		final long tickNanos = (long) (PongEngine.TIME_STEP * 1e9);
+		final long ticks = (long) seconds * PongEngine.TICKS_PER_SECOND;
+		final long start = System.nanoTime();
+		double ballErrorSum = 0, ballErrorMax = 0;
+		long compared = 0;
+		for (long tick = 0; tick < ticks; tick++) {
+			// host
+			host.poll();
+			final int hostInputs = hostAI.move(hostEngine) & NetProtocol.HOST_INPUTS;
+			hostEngine.step(hostInputs | host.nextClientInputs());
+			host.sendSnapshot(hostInputs);
+
+			// client
+			client.tick(clientAI.move(clientEngine));
+
+			// the client runs ahead of the host by about the one way latency so its inputs arrive in time
+			if (client.isWelcomed() && hostEngine.isBallMoving() && clientEngine.isBallMoving()) {
+				final double error = Math.hypot(hostEngine.getBallCenterX() - clientEngine.getBallCenterX(), 
+						hostEngine.getBallCenterY() - clientEngine.getBallCenterY());
+				ballErrorSum += error;
+				if (error > ballErrorMax) ballErrorMax = error;
+				compared++;
+			}
+
+			// real time
+			final long next = start + (tick + 1) * tickNanos;
+			long now;
+			while ((now = System.nanoTime()) < next) {
+				final long millis = (next - now) / 1_000_000;
+				try {
+					if (millis > 1) Thread.sleep(millis - 1); else Thread.yield();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+		host.close();
+		client.close();
+
+		System.out.println(String.format("Score host %d:%d  client view %d:%d", hostEngine.getLeftPoints(), hostEngine.getRightPoints(),
+				clientEngine.getLeftPoints(), clientEngine.getRightPoints()));
+		System.out.println(String.format("Packets host->client sent %d dropped %d  client->host sent %d dropped %d",
+				host.getShim().getSent(), host.getShim().getDropped(), client.getShim().getSent(), client.getShim().getDropped()));
+		System.out.println(String.format("Snapshots received %d lost %d  mispredictions %d (%.1f%% of snapshots)",
+				client.getSnapshots(), client.getLostSnapshots(), client.getMispredictions(), 
+				100.0 * client.getMispredictions() / Math.max(1, client.getSnapshots())));
+		System.out.println(String.format("Replayed ticks per snapshot: mean %.1f max %d  round trip %d ticks (%.0fms)",
+				(double) client.getReplayedTicks() / Math.max(1, client.getSnapshots()), client.getMaxReplay(), 
+				client.getAckLag(), client.getAckLag() * PongEngine.TIME_STEP * 1000));
+		System.out.println(String.format("Host repeated client inputs %d skipped %d", host.getRepeatedInputs(), host.getSkippedInputs()));
+		System.out.println(String.format("Client ball ahead of host ball: mean %.1fpx max %.1fpx  own paddle input latency 1 tick (%.1fms)",
+				compared == 0 ? 0 : ballErrorSum / compared, ballErrorMax, PongEngine.TIME_STEP * 1000));
+	}
+
+}
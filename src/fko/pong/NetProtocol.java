@@ -0,0 +1,90 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and helpers of the UDP protocol between <code>NetHost</code> and <code>NetClient</code>.<br>
+ * Every packet starts with MAGIC (int) and a type (byte). All values are big endian.
+ * <pre>
+ * HELLO     client -> host  until welcomed
+ * WELCOME   host -> client  width | height | timeStep | hitWeight | maxAngle | speedConservation (doubles)
+ * INPUT     client -> host  tick (long) | n (byte) | inputs of the ticks tick-n+1..tick (n bytes)
+ * SNAPSHOT  host -> client  host tick (long) | last applied client tick (long) | host inputs (byte) | state
+ * </pre>
+ * Inputs are sent redundantly so a lost packet doesn't lose inputs. Snapshots are sent every
+ * host tick - a lost one is simply replaced by the next.<br>
+ * Packets which are too short or come from another address than the peer are ignored.
+ * @author Frank Kopp
+ */
+public final class NetProtocol {
+
+	public static final int MAGIC = 0x504F4E47; // "PONG"
+	public static final int DEFAULT_PORT = 4711;
+
+	// types
+	public static final byte HELLO = 1;
+	public static final byte WELCOME = 2;
+	public static final byte INPUT = 3;
+	public static final byte SNAPSHOT = 4;
+
+	// largest packet
+	public static final int MAX_PACKET = 256;
+	// number of past inputs in every input packet
+	public static final int INPUT_REDUNDANCY = 16;
+
+	// sizes of the packets after the header - shorter packets are ignored
+	public static final int WELCOME_SIZE = 6 * Double.BYTES;
+	public static final int INPUT_SIZE = Long.BYTES + Byte.BYTES; // without the inputs
+	public static final int SNAPSHOT_SIZE = 2 * Long.BYTES + Byte.BYTES + PongEngine.STATE_SIZE;
+
+	// the host plays the left, the client the right paddle
+	public static final int HOST_INPUTS = PongEngine.INPUT_LEFT_UP | PongEngine.INPUT_LEFT_DOWN;
+	public static final int CLIENT_INPUTS = PongEngine.INPUT_RIGHT_UP | PongEngine.INPUT_RIGHT_DOWN;
+
+	private NetProtocol() {}
+
+	/**
+	 * Starts a packet.
+	 * @param buffer
+	 * @param type
+	 */
+	static void begin(ByteBuffer buffer, byte type) {
+		buffer.clear();
+		buffer.putInt(MAGIC);
+		buffer.put(type);
+	}
+
+	/**
+	 * Reads the header of a received packet.
+	 * @param buffer flipped
+	 * @return the type of the packet or 0 if it is no valid packet
+	 */
+	static byte type(ByteBuffer buffer) {
+		if (buffer.remaining() < Integer.BYTES + 1 || buffer.getInt() != MAGIC) return 0;
+		return buffer.get();
+	}
+
+}
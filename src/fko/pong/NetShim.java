@@ -0,0 +1,166 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+
+/**
+ * Sends the datagrams of <code>NetHost</code> and <code>NetClient</code> and can simulate a bad 
+ * network on the way: a one way latency with jitter and packet loss. Without simulation it 
+ * sends directly.<br>
+ * Delayed packets are copied into a preallocated ring and sent by <code>flush()</code> when
+ * they are due. Jitter never reorders packets.<br>
+ * Simulation is turned on with <code>-Dpong.net.latency=&lt;ms&gt;</code>, 
+ * <code>-Dpong.net.jitter=&lt;ms&gt;</code> and <code>-Dpong.net.loss=&lt;0.0-1.0&gt;</code>.
+ * Not thread safe.
+ * @author Frank Kopp
+ */
+public class NetShim {
+
+	public static final String LATENCY_PROPERTY = "pong.net.latency";
+	public static final String JITTER_PROPERTY = "pong.net.jitter";
+	public static final String LOSS_PROPERTY = "pong.net.loss";
+
+	// packets in flight
+	private static final int CAPACITY = 1024;
+
+	private final long _latencyNanos;
+	private final long _jitterNanos;
+	private final double _loss;
+	private final Random _random;
+
+	// ring of delayed packets
+	private final ByteBuffer _packets = ByteBuffer.allocate(CAPACITY * NetProtocol.MAX_PACKET);
+	private final int[] _lengths = new int[CAPACITY];
+	private final long[] _due = new long[CAPACITY];
+	private final SocketAddress[] _targets = new SocketAddress[CAPACITY];
+	private int _head = 0;
+	private int _size = 0;
+	private long _lastDue = 0;
+
+	// statistics
+	private long _sent = 0;
+	private long _dropped = 0;
+
+	/**
+	 * @param latencyMillis one way latency
+	 * @param jitterMillis additional random latency
+	 * @param loss probability of losing a packet
+	 * @param seed
+	 */
+	public NetShim(double latencyMillis, double jitterMillis, double loss, long seed) {
+		_latencyNanos = (long) (latencyMillis * 1e6);
+		_jitterNanos = (long) (jitterMillis * 1e6);
+		_loss = loss;
+		_random = new Random(seed);
+	}
+
+	/**
+	 * @return a shim with the simulation of the system properties - none if not set
+	 */
+	public static NetShim fromSystemProperties() {
+		try {
+			return new NetShim(
+					Double.parseDouble(System.getProperty(LATENCY_PROPERTY, "0")),
+					Double.parseDouble(System.getProperty(JITTER_PROPERTY, "0")),
+					Double.parseDouble(System.getProperty(LOSS_PROPERTY, "0")),
+					System.nanoTime());
+		} catch (NumberFormatException e) {
+			Pong.minorError("Invalid network simulation: "+e.getMessage()+" - turned off");
+			return new NetShim(0, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Sends a packet now or later - or loses it.
+	 * @param channel
+	 * @param packet flipped
+	 * @param target
+	 * @throws IOException
+	 */
+	public void send(DatagramChannel channel, ByteBuffer packet, SocketAddress target) throws IOException {
+		if (_loss > 0 && _random.nextDouble() < _loss) {
+			_dropped++;
+			return;
+		}
+		if (_latencyNanos == 0 && _jitterNanos == 0) {
+			transmit(channel, packet, target);
+			return;
+		}
+		if (_size == CAPACITY) {
+			_dropped++;
+			return;
+		}
+		final long now = System.nanoTime();
+		long due = now + _latencyNanos + (_jitterNanos > 0 ? (long) (_random.nextDouble() * _jitterNanos) : 0);
+		if (due < _lastDue) due = _lastDue;
+		_lastDue = due;
+		final int slot = (_head + _size) % CAPACITY;
+		_lengths[slot] = packet.remaining();
+		_due[slot] = due;
+		_targets[slot] = target;
+		_packets.clear().position(slot * NetProtocol.MAX_PACKET);
+		_packets.put(packet);
+		_size++;
+	}
+
+	/**
+	 * Sends all delayed packets which are due.
+	 * @param channel
+	 * @throws IOException
+	 */
+	public void flush(DatagramChannel channel) throws IOException {
+		final long now = System.nanoTime();
+		while (_size > 0 && _due[_head] <= now) {
+			final int start = _head * NetProtocol.MAX_PACKET;
+			_packets.clear().position(start).limit(start + _lengths[_head]);
+			transmit(channel, _packets, _targets[_head]);
+			_targets[_head] = null;
+			_head = (_head + 1) % CAPACITY;
+			_size--;
+		}
+	}
+
+	private void transmit(DatagramChannel channel, ByteBuffer packet, SocketAddress target) throws IOException {
+		// a full socket buffer loses the packet like the network would
+		if (channel.send(packet, target) == 0) {
+			_dropped++;
+		} else {
+			_sent++;
+		}
+	}
+
+	public long getSent() { return _sent; }
+	public long getDropped() { return _dropped; }
+
+	@Override
+	public String toString() {
+		return String.format("latency %.0fms jitter %.0fms loss %.1f%%", _latencyNanos / 1e6, _jitterNanos / 1e6, _loss * 100);
+	}
+
+}
@@ -0,0 +1,165 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+
+/**
+ * Renders the game with retained scene graph nodes.<br>
+ * The ball is a <code>Circle</code>, the paddles are <code>Rectangle</code>s and the scores
+ * are <code>Text</code> nodes. Their positions are bound to properties which are updated
+ * every pulse.
+ * @author Frank Kopp
+ */
+public class NodeRenderer extends PongRenderer {
+
+	private Rectangle _leftPaddle;
+	private Rectangle _rightPaddle;
+	private Circle _ball;
+	private Text _leftScore;
+	private Text _rightScore;
+
+	// The center points of the moving ball
+	private DoubleProperty _ballCenterX = new SimpleDoubleProperty();
+	private DoubleProperty _ballCenterY = new SimpleDoubleProperty();
+
+	// The position of the paddles
+	private DoubleProperty _leftPaddleY = new SimpleDoubleProperty();
+	private DoubleProperty _rightPaddleY = new SimpleDoubleProperty();
+
+	// score currently shown - text is only changed when the score changes
+	private int _leftPoints = -1;
+	private int _rightPoints = -1;
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#attach(javafx.scene.layout.Pane, fko.pong.PongEngine)
+	 */
+	@Override
+	public void attach(Pane pane, PongEngine engine) {
+		if (_ball == null) {
+			addBall(engine);
+			addPaddles(engine);
+			addScore(engine);
+		}
+		pane.getChildren().addAll(_ball, _leftPaddle, _rightPaddle, _leftScore, _rightScore);
+		render(engine, 1.0);
+	}
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#detach(javafx.scene.layout.Pane)
+	 */
+	@Override
+	public void detach(Pane pane) {
+		pane.getChildren().removeAll(_ball, _leftPaddle, _rightPaddle, _leftScore, _rightScore);
+	}
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#getName()
+	 */
+	@Override
+	public String getName() {
+		return "NODES";
+	}
+
+	/**
+	 * Adds a ball. Not visible when game not running. 
+	 */
+	private void addBall(PongEngine engine) {
+		_ball = new Circle(PongEngine.BALL_SIZE,  Color.WHITE);
+		_ballCenterX.setValue(engine.getBallCenterX());
+		_ballCenterY.setValue(engine.getBallCenterY());
+		_ball.centerXProperty().bind(_ballCenterX);
+		_ball.centerYProperty().bind(_ballCenterY);
+		_ball.setVisible(false); 
+	}
+
+	/**
+	 * Adding the two player paddles.
+	 */
+	private void addPaddles(PongEngine engine) {
+		_leftPaddle = new Rectangle(PongEngine.PADDLE_WIDTH, engine.getPaddleSize(), Color.WHITE);
+		_leftPaddle.setTranslateX(engine.getLeftPaddleX());
+		_leftPaddleY.set(engine.getLeftPaddleY());
+		_leftPaddle.translateYProperty().bind(_leftPaddleY);
+
+		_rightPaddle = new Rectangle(PongEngine.PADDLE_WIDTH, engine.getPaddleSize(), Color.WHITE);
+		_rightPaddle.setTranslateX(engine.getRightPaddleX());
+		_rightPaddleY.set(engine.getRightPaddleY());
+		_rightPaddle.translateYProperty().bind(_rightPaddleY);
+	}
+
+	/**
+	 * Adds the display of the score for each player.
+	 */
+	private void addScore(PongEngine engine) {
+		// create Text for each score 
+		_leftScore = new Text();
+		_rightScore = new Text();
+
+		// positioning helpers
+		double middle = engine.getWidth() / 2;
+		final Color color = Color.WHITE;
+
+		// left
+		_leftScore.setFont(SCORE_FONT);
+		_leftScore.setY(SCORE_LOCATION_Y);
+		_leftScore.setFill(color);
+		// right
+		_rightScore.setFont(SCORE_FONT);
+		_rightScore.setY(SCORE_LOCATION_Y);
+		_rightScore.setFill(color);
+
+		// position score text
+		_leftScore.setX(middle - SCORE_OFFSET_FROM_MIDDLE - _leftScore.getBoundsInParent().getWidth());
+		_rightScore.setX(middle + SCORE_OFFSET_FROM_MIDDLE);
+	}
+
+	/* (non-Javadoc)
+	 * @see fko.pong.PongRenderer#render(fko.pong.PongEngine, double)
+	 */
+	@Override
+	public void render(PongEngine engine, double alpha) {
+		_ball.setVisible(engine.isBallVisible());
+		_ballCenterX.set(ballCenterX(engine, alpha));
+		_ballCenterY.set(ballCenterY(engine, alpha));
+		_leftPaddleY.set(leftPaddleY(engine, alpha));
+		_rightPaddleY.set(rightPaddleY(engine, alpha));
+
+		if (engine.getLeftPoints() != _leftPoints) {
+			_leftPoints = engine.getLeftPoints();
+			_leftScore.setText(String.valueOf(_leftPoints));
+		}
+		if (engine.getRightPoints() != _rightPoints) {
+			_rightPoints = engine.getRightPoints();
+			_rightScore.setText(String.valueOf(_rightPoints));
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import javafx.geometry.VPos;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * An overlay showing how the game performs while it runs:<br>
+ * frames per second and the distribution of frame times, simulation ticks per second, the time
+ * the engine needs to move the ball and check its collisions, the time from a game event to its
+ * triggered sound - including the hop to the sound handler of the event bus - and 
+ * the latency from a key press to the tick moving the paddle.<br>
+ * All values are recorded into fixed size <code>Histogram</code>s which do not allocate. The
+ * text is only rebuilt twice a second and the histograms are reset after that so the overlay
+ * always shows the last interval.
+ * @author Frank Kopp
+ */
+public class PerformanceHud {
+
+	// interval to update the text and reset the statistics
+	private static final long UPDATE_INTERVAL = 500_000_000L; // nanoseconds
+
+	// 0.1ms buckets up to 100ms
+	private final Histogram _frameTimes = new Histogram(100_000L, 1000);
+	// 10ns buckets up to 50us
+	private final Histogram _collisionTimes = new Histogram(10L, 5000);
+	// 1us buckets up to 10ms - from the publish of an event to its sound, recorded by the sound handler
+	private final ConcurrentHistogram _soundLatencies = new ConcurrentHistogram(1_000L, 10000);
+	// 10us buckets up to 100ms
+	private final Histogram _inputLatencies = new Histogram(10_000L, 10000);
+
+	private final Text _text = new Text();
+
+	// handler of the event bus counting rallies
+	private final RallyStats _rallies = new RallyStats();
+	private GameEventBus _eventBus = null;
+
+	private long _lastFrame = -1;
+	private long _lastUpdate = -1;
+	private long _ticks = 0;
+
+	/**
+	 * Creates the overlay. It is not shown until it is attached to a pane.
+	 */
+	public PerformanceHud() {
+		_text.setFont(Font.font("Monospaced", 11));
+		_text.setFill(Color.LIGHTGREEN);
+		_text.setTextOrigin(VPos.TOP);
+		_text.setX(5);
+		_text.setY(5);
+		_text.setMouseTransparent(true);
+	}
+
+	/**
+	 * Shows the overlay on the pane and starts recording.
+	 * @param pane
+	 * @param engine
+	 * @param sounds
+	 * @param input
+	 */
+	public void attach(Pane pane, PongEngine engine, Sounds sounds, InputSampler input) {
+		reset(-1);
+		_text.setText("");
+		if (!pane.getChildren().contains(_text)) pane.getChildren().add(_text);
+		engine.setCollisionHistogram(_collisionTimes);
+		if (sounds != null) sounds.setLatencyHistogram(_soundLatencies);
+		input.setLatencyHistogram(_inputLatencies);
+		_eventBus = engine.getEventBus();
+	}
+
+	/**
+	 * Removes the overlay from the pane and stops recording.
+	 * @param pane
+	 * @param engine
+	 * @param sounds
+	 * @param input
+	 */
+	public void detach(Pane pane, PongEngine engine, Sounds sounds, InputSampler input) {
+		pane.getChildren().remove(_text);
+		engine.setCollisionHistogram(null);
+		if (sounds != null) sounds.setLatencyHistogram(null);
+		input.setLatencyHistogram(null);
+		_eventBus = null;
+	}
+
+	/**
+	 * @return handler for the event bus of the game
+	 */
+	public RallyStats getRallyStats() { return _rallies; }
+
+	/**
+	 * Keeps the overlay above everything else of the pane.
+	 */
+	public void toFront() {
+		_text.toFront();
+	}
+
+	/**
+	 * Called once per simulation tick.
+	 */
+	public void tick() {
+		_ticks++;
+	}
+
+	/**
+	 * Called once per rendered frame. Updates the text when the interval is over.
+	 * @param now nanoseconds
+	 */
+	public void frame(long now) {
+		if (_lastFrame >= 0) _frameTimes.record(now - _lastFrame);
+		_lastFrame = now;
+		if (_lastUpdate < 0) {
+			_lastUpdate = now;
+		} else if (now - _lastUpdate >= UPDATE_INTERVAL) {
+			update(now);
+		}
+	}
+
+	/**
+	 * Rebuilds the text from the statistics of the last interval.
+	 * @param now
+	 */
+	private void update(long now) {
+		final double seconds = (now - _lastUpdate) / 1e9;
+		final StringBuilder sb = new StringBuilder(256);
+		sb.append(String.format("FPS   %6.1f  frame p50 %5.2fms p99 %5.2fms max %5.2fms%n",
+				_frameTimes.getCount() / seconds, 
+				_frameTimes.getPercentile(0.5) / 1e6, 
+				_frameTimes.getPercentile(0.99) / 1e6, 
+				_frameTimes.getMax() / 1e6));
+		sb.append(String.format("TPS   %6.1f%n", _ticks / seconds));
+		sb.append(String.format("Coll. p50 %6dns p99 %6dns max %6dns%n",
+				_collisionTimes.getPercentile(0.5), 
+				_collisionTimes.getPercentile(0.99), 
+				_collisionTimes.getMax()));
+		sb.append(String.format("Sound p50 %6dus p99 %6dus max %6dus (%d)%n",
+				_soundLatencies.getPercentile(0.5) / 1000, 
+				_soundLatencies.getPercentile(0.99) / 1000, 
+				_soundLatencies.getMax() / 1000,
+				_soundLatencies.getCount()));
+		sb.append(String.format("Input p50 %6dus p99 %6dus max %6dus (%d)",
+				_inputLatencies.getPercentile(0.5) / 1000, 
+				_inputLatencies.getPercentile(0.99) / 1000, 
+				_inputLatencies.getMax() / 1000,
+				_inputLatencies.getCount()));
+		if (_eventBus != null) {
+			sb.append(String.format("%nEvents %6d dropped %d  rallies %d last %d longest %d hit %.2f",
+					_eventBus.getPublished(), _eventBus.getDropped(), 
+					_rallies.getRallies(), _rallies.getLastRally(), _rallies.getLongestRally(),
+					_rallies.getMeanHitPosition()));
+		}
+		_text.setText(sb.toString());
+		reset(now);
+	}
+
+	/**
+	 * Resets all statistics for the next interval.
+	 * @param now
+	 */
+	private void reset(long now) {
+		_frameTimes.reset();
+		_collisionTimes.reset();
+		_soundLatencies.reset();
+		_inputLatencies.reset();
+		_ticks = 0;
+		_lastUpdate = now;
+		if (now < 0) _lastFrame = -1;
+	}
+
+}
@@ -23,6 +23,8 @@ SOFTWARE.
  */
 package fko.pong;
 
+import java.lang.management.ManagementFactory;
+
 import javafx.application.Application;
 
 /**
@@ -33,6 +35,12 @@ public class Pong {
 
 	// VERSION
 	public static final String VERSION = "1.1"; 
+
+	// exits as soon as the game is started completely - for the training run of the class data sharing archive
+	public static final String EXIT_AFTER_STARTUP_PROPERTY = "pong.exitAfterStartup";
+
+	// start of main for the startup times
+	private static final long START_NANOS = System.nanoTime();
 	
 	/**
 	 * @param args
@@ -40,6 +48,18 @@ public class Pong {
 	public static void main(String[] args) {
 		Application.launch(PongUI.class, args);
 	}
+
+	/**
+	 * Prints how long the startup took until a step - since main and since the JVM was started.<br>
+	 * Loads the management classes so it should not be called before the first frame.
+	 * @param step
+	 * @param time nanoseconds when the step was reached
+	 */
+	public static void reportStartup(String step, long time) {
+		final long sinceMain = (time - START_NANOS) / 1_000_000;
+		final long sinceJvm = ManagementFactory.getRuntimeMXBean().getUptime() - (System.nanoTime() - time) / 1_000_000;
+		System.out.println(step + " after " + sinceMain + "ms (" + sinceJvm + "ms since JVM start)");
+	}
 	
 	 /**
      * Clean up and exit the application
@@ -77,6 +97,17 @@ public class Pong {
         Exception e = new Exception(message);
         e.printStackTrace();
     }
+
+    /**
+     * Called when there is an unexpected but recoverable error caused by an exception.<br/>
+     * Prints a stack trace together with a provided message and the trace of the cause.<br/>
+     * @param message to be displayed with the exception message
+     * @param cause
+     */
+    public static void criticalError(String message, Throwable cause) {
+        Exception e = new Exception(message, cause);
+        e.printStackTrace();
+    }
     
     /**
      * Called when there is an unexpected minor error.<br/>
@@ -0,0 +1,986 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The PongEngine is the headless simulation core of the game.<br>
+ * It holds the complete state of ball, paddles and score as plain primitives and
+ * advances it with <code>step(inputs)</code>. It does not use any JavaFX classes and
+ * can therefore run without a scene graph, e.g. for bulk simulations.<br>
+ * Every call to <code>step()</code> advances the simulation by a fixed time step. Ball and
+ * paddle speeds are in pixels per second so a faster game moves further per tick instead
+ * of ticking more often.<br>
+ * The engine also runs the <code>GameState</code> machine. Serve and goal delays are counted
+ * in ticks so nothing ever has to wait or sleep.<br>
+ * All randomness comes from a generator seeded per game and the trigonometry uses
+ * <code>StrictMath</code>. A game is therefore completely determined by its seed and the
+ * sequence of calls to the mutating methods, which a <code>MatchRecorder</code> can record.<br>
+ * <code>PongPane</code> only renders the state of this engine.<br>
+ * @author Frank Kopp
+ */
+public class PongEngine {
+
+	// fixed simulation time step
+	public static final int TICKS_PER_SECOND = 120;
+	public static final double TIME_STEP = 1.0 / TICKS_PER_SECOND; // seconds
+
+	public static final int BALL_SIZE = 5;
+	public static final int INITIAL_PADDLE_SIZE = 60;
+	public static final int PADDLE_WIDTH = 10;
+	public static final int PADDLE_DISTANCE = 20; // distance of paddle to left or right border
+
+	public static final double INITIAL_BALL_SPEED = 120.0; // pixels per second on each axis
+	public static final double INITIAL_PADDLE_SPEED = 120.0; // pixels per second
+
+	public static final double ACCELARATION = 1.05; // factor
+
+	// delays of the state machine
+	public static final double SERVE_DELAY = 0.5; // seconds
+	public static final double GOAL_DELAY = 0.5; // seconds
+
+	// upper bound of resolved collisions within one tick (e.g. ball squeezed between paddle and wall)
+	private static final int MAX_COLLISIONS_PER_STEP = 8;
+	private static final double NO_HIT = Double.POSITIVE_INFINITY;
+
+	// obstacles for the sweep test
+	private static final int HIT_NONE = 0;
+	private static final int HIT_WALL = 1;
+	private static final int HIT_LEFT_PADDLE = 2;
+	private static final int HIT_RIGHT_PADDLE = 3;
+
+	// input flags for step() and movePaddles()
+	public static final int INPUT_NONE 			= 0;
+	public static final int INPUT_LEFT_UP 		= 1;
+	public static final int INPUT_LEFT_DOWN 	= 1 << 1;
+	public static final int INPUT_RIGHT_UP 		= 1 << 2;
+	public static final int INPUT_RIGHT_DOWN 	= 1 << 3;
+	public static final int INPUT_FLAGS 		= 0x0F;
+	// how long the input of a paddle was held during the tick in 1/HELD_STEPS of a tick - 0 is the whole tick
+	public static final int HELD_STEPS 				= 64;
+	public static final int INPUT_HELD_MASK 		= HELD_STEPS - 1;
+	public static final int INPUT_LEFT_HELD_SHIFT 	= 8;
+	public static final int INPUT_RIGHT_HELD_SHIFT 	= 16;
+
+	// event flags returned by step() and moveBall()
+	public static final int EVENT_NONE 			= 0;
+	public static final int EVENT_WALL 			= 1;
+	public static final int EVENT_LEFT_PADDLE 	= 1 << 1;
+	public static final int EVENT_RIGHT_PADDLE 	= 1 << 2;
+	public static final int EVENT_GOAL_LEFT 	= 1 << 3; // left player scored
+	public static final int EVENT_GOAL_RIGHT 	= 1 << 4; // right player scored
+	public static final int EVENT_GOAL 			= EVENT_GOAL_LEFT | EVENT_GOAL_RIGHT;
+	public static final int EVENT_PADDLE 		= EVENT_LEFT_PADDLE | EVENT_RIGHT_PADDLE;
+
+	// size of the state written by writeState()
+	public static final int STATE_SIZE = 4 * Byte.BYTES + 3 * Integer.BYTES + 10 * Double.BYTES;
+
+	// length of one tick in seconds
+	private final double _timeStep;
+
+	// delays in ticks
+	private final int _serveDelayTicks;
+	private final int _goalDelayTicks;
+
+	// state of the game
+	private GameState _state = GameState.STOPPED;
+	// state to return to after PAUSED
+	private GameState _pausedState = GameState.STOPPED;
+	// ticks left until the state changes (SERVING and GOAL)
+	private int _stateTicks = 0;
+	// side of the next serve
+	private boolean _serveFromLeft = true;
+
+	// random generator for the serves - seeded with every new game
+	private final Random _random = new Random();
+	private long _seed = 0;
+
+	// if set all inputs and commands are recorded
+	private MatchRecorder _recorder = null;
+
+	// size of the board
+	private final double _width;
+	private final double _height;
+
+	// x position of the paddles (left edge)
+	private final double _leftPaddleX;
+	private final double _rightPaddleX;
+
+	private double _paddleSize = INITIAL_PADDLE_SIZE;
+
+	// The center points of the moving ball
+	private double _ballCenterX;
+	private double _ballCenterY;
+
+	// velocity of the ball in pixels per second
+	private double _speedX = INITIAL_BALL_SPEED;
+	private double _speedY = INITIAL_BALL_SPEED;
+
+	// The position of the paddles (top edge)
+	private double _leftPaddleY;
+	private double _rightPaddleY;
+
+	// positions before the last tick - used to interpolate when rendering between ticks
+	private double _prevBallCenterX;
+	private double _prevBallCenterY;
+	private double _prevLeftPaddleY;
+	private double _prevRightPaddleY;
+
+	// factor of the game speed - increases with every paddle hit
+	private double _speedFactor = 1.0;
+
+	// tunable parameters of the game - default to the constants
+	private double _initialBallSpeed = INITIAL_BALL_SPEED;
+	private double _acceleration = ACCELARATION;
+
+	// points per player
+	private int _leftPoints = 0;
+	private int _rightPoints = 0;
+
+	// Options
+	private boolean _anglePaddle = true;
+	private Deflection _deflection = DeflectionModel.DEFAULT;
+	// receives the new vector from the deflection
+	private final double[] _vector = new double[2];
+
+	// number of ticks since the engine was created
+	private long _tick = 0;
+
+	// if set every paddle hit is traced
+	private TraceLog _trace = null;
+
+	// publishes the events of the game - null if nobody listens
+	private GameEventBus _eventBus = null;
+
+	// if set the time for moving the ball and resolving its collisions is recorded
+	private Histogram _collisionHistogram = null;
+
+	// for reading states without allocation
+	private static final GameState[] STATES = GameState.values();
+
+	// contact normal of the last successful sweep test - fields to avoid allocation
+	private double _hitNormalX;
+	private double _hitNormalY;
+
+	/**
+	 * Creates a new engine for a board of the given size with the default time step.
+	 * @param width
+	 * @param height
+	 */
+	public PongEngine(double width, double height) {
+		this(width, height, TIME_STEP);
+	}
+
+	/**
+	 * Creates a new engine for a board of the given size.
+	 * @param width
+	 * @param height
+	 * @param timeStep length of one tick in seconds
+	 */
+	public PongEngine(double width, double height, double timeStep) {
+		this._timeStep = timeStep;
+		this._serveDelayTicks = (int) Math.round(SERVE_DELAY / timeStep);
+		this._goalDelayTicks = (int) Math.round(GOAL_DELAY / timeStep);
+		this._width = width;
+		this._height = height;
+		this._leftPaddleX = PADDLE_DISTANCE;
+		this._rightPaddleX = width - PADDLE_DISTANCE - PADDLE_WIDTH;
+		_ballCenterX = width / 2;
+		_ballCenterY = height / 2;
+		_leftPaddleY = height / 2 - _paddleSize / 2;
+		_rightPaddleY = _leftPaddleY;
+		_prevBallCenterX = _ballCenterX;
+		_prevBallCenterY = _ballCenterY;
+		_prevLeftPaddleY = _leftPaddleY;
+		_prevRightPaddleY = _rightPaddleY;
+	}
+
+	/**
+	 * Creates a copy of another engine's simulation - see <code>copyFrom()</code>.
+	 * @param source
+	 */
+	public PongEngine(PongEngine source) {
+		this(source._width, source._height, source._timeStep);
+		copyFrom(source);
+	}
+
+	/**
+	 * Copies the complete simulation state of another engine with the same board and time step.
+	 * The state is a flat set of primitives so this is cheap and does not allocate - it is 
+	 * meant for look ahead searches which simulate from the current state many times.<br>
+	 * Recorder, trace and histogram are not copied. The random generator is reseeded from the 
+	 * source's seed and tick as its state can't be copied - serves in the copy differ from the source.
+	 * @param source
+	 */
+	public void copyFrom(PongEngine source) {
+		if (source._width != _width || source._height != _height || source._timeStep != _timeStep) {
+			throw new IllegalArgumentException("Engines have different boards or time steps");
+		}
+		_state = source._state;
+		_pausedState = source._pausedState;
+		_stateTicks = source._stateTicks;
+		_serveFromLeft = source._serveFromLeft;
+		_seed = source._seed;
+		_random.setSeed(source._seed ^ source._tick);
+		_paddleSize = source._paddleSize;
+		_ballCenterX = source._ballCenterX;
+		_ballCenterY = source._ballCenterY;
+		_speedX = source._speedX;
+		_speedY = source._speedY;
+		_leftPaddleY = source._leftPaddleY;
+		_rightPaddleY = source._rightPaddleY;
+		_prevBallCenterX = source._prevBallCenterX;
+		_prevBallCenterY = source._prevBallCenterY;
+		_prevLeftPaddleY = source._prevLeftPaddleY;
+		_prevRightPaddleY = source._prevRightPaddleY;
+		_speedFactor = source._speedFactor;
+		_initialBallSpeed = source._initialBallSpeed;
+		_acceleration = source._acceleration;
+		_leftPoints = source._leftPoints;
+		_rightPoints = source._rightPoints;
+		_anglePaddle = source._anglePaddle;
+		_deflection = source._deflection;
+		_tick = source._tick;
+	}
+
+	/**
+	 * Starts a new game with a new random seed.
+	 * The side and start position is chosen randomly.<br>
+	 * Ignored if a game is already running.
+	 */
+	public void startGame() {
+		startGame(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Starts a new game with the ball from either of the two sides.
+	 * The side and start position is chosen randomly with the given seed.<br>
+	 * Ignored if a game is already running.
+	 * @param seed
+	 */
+	public void startGame(long seed) {
+		if (_state != GameState.STOPPED) return;
+		_seed = seed;
+		_random.setSeed(seed);
+		if (_recorder != null) _recorder.start(this);
+		_leftPoints = 0;
+		_rightPoints = 0;
+		_serveFromLeft = _random.nextBoolean();
+		publish(GameEvent.START, false, Double.NaN);
+		enterServing();
+	}
+
+	/**
+	 * Stops the game.
+	 */
+	public void stopGame() {
+		if (_recorder != null) _recorder.stop();
+		if (_state != GameState.STOPPED) publish(GameEvent.STOP, false, Double.NaN);
+		_state = GameState.STOPPED;
+	}
+
+	/**
+	 * Pause the game. Ignored if game not running or already paused.
+	 */
+	public void pauseGame() {
+		if (_state == GameState.STOPPED || _state == GameState.PAUSED) return;
+		if (_recorder != null) _recorder.pause();
+		_pausedState = _state;
+		_state = GameState.PAUSED;
+		publish(GameEvent.PAUSE, false, Double.NaN);
+	}
+
+	/**
+	 * Resume a paused game. Ignored if game not paused.
+	 */
+	public void resumeGame() {
+		if (_state != GameState.PAUSED) return;
+		if (_recorder != null) _recorder.resume();
+		_state = _pausedState;
+		publish(GameEvent.RESUME, false, Double.NaN);
+	}
+
+	/**
+	 * Puts the ball to its serve position and waits for the serve delay.
+	 */
+	private void enterServing() {
+		serve(_serveFromLeft);
+		_state = GameState.SERVING;
+		_stateTicks = _serveDelayTicks;
+		publish(GameEvent.SERVE, _serveFromLeft, Double.NaN);
+	}
+
+	/**
+	 * Puts the ball on the left or right side of the board with a random y position
+	 * and a random vertical direction.
+	 * @param fromLeft true if the ball starts on the left side moving right
+	 */
+	public void serve(boolean fromLeft) {
+		_speedFactor = 1.0;
+		if (fromLeft) {
+			_ballCenterX = 0.0 + 2 * BALL_SIZE;
+			_speedX = _initialBallSpeed;
+		} else {
+			_ballCenterX = _width - 2 * BALL_SIZE;
+			_speedX = -_initialBallSpeed;
+		}
+		// random y - fully inside the board
+		_ballCenterY = BALL_SIZE + _random.nextDouble() * (_height - 2 * BALL_SIZE);
+		// random direction
+		_speedY = _initialBallSpeed * (_random.nextBoolean() ? 1 : -1);
+		// no interpolation from the old position
+		_prevBallCenterX = _ballCenterX;
+		_prevBallCenterY = _ballCenterY;
+	}
+
+	/**
+	 * Advances the simulation by one time step: moves the paddles according to the input flags
+	 * and then - depending on the state of the game - moves the ball and resolves all collisions
+	 * or counts down the serve and goal delays.
+	 * @param inputs combination of the INPUT_* flags
+	 * @return combination of the EVENT_* flags which occurred during this tick
+	 */
+	public int step(int inputs) {
+		if (_recorder != null) _recorder.tick(inputs);
+		_tick++;
+		movePaddles(inputs);
+		switch (_state) {
+		case IN_PLAY:
+			return moveBall();
+		case SERVING:
+			if (--_stateTicks <= 0) _state = GameState.IN_PLAY;
+			return EVENT_NONE;
+		case GOAL:
+			if (--_stateTicks <= 0) enterServing();
+			return EVENT_NONE;
+		default:
+			return EVENT_NONE;
+		}
+	}
+
+	/**
+	 * Moves the paddles one time step according to the input flags.<br>
+	 * If the held steps of a paddle are set it moves only that fraction of the step, e.g. for a
+	 * key tapped between two ticks.<br>
+	 * Paddles can also be moved while the ball is not moving (e.g. game paused).
+	 * @param inputs combination of the INPUT_* flags and the held steps of each paddle
+	 */
+	public void movePaddles(int inputs) {
+		_prevLeftPaddleY = _leftPaddleY;
+		_prevRightPaddleY = _rightPaddleY;
+		final double move = INITIAL_PADDLE_SPEED * _speedFactor * _timeStep;
+		final int leftHeld = inputs >>> INPUT_LEFT_HELD_SHIFT & INPUT_HELD_MASK;
+		final int rightHeld = inputs >>> INPUT_RIGHT_HELD_SHIFT & INPUT_HELD_MASK;
+		final double leftMove = leftHeld == 0 ? move : move * leftHeld / HELD_STEPS;
+		final double rightMove = rightHeld == 0 ? move : move * rightHeld / HELD_STEPS;
+		if ((inputs & INPUT_LEFT_UP) != 0 && _leftPaddleY > 0) {
+			_leftPaddleY -= leftMove;
+		}
+		if ((inputs & INPUT_LEFT_DOWN) != 0 && _leftPaddleY + _paddleSize < _height) {
+			_leftPaddleY += leftMove;
+		}
+		if ((inputs & INPUT_RIGHT_UP) != 0 && _rightPaddleY > 0) {
+			_rightPaddleY -= rightMove;
+		}
+		if ((inputs & INPUT_RIGHT_DOWN) != 0 && _rightPaddleY + _paddleSize < _height) {
+			_rightPaddleY += rightMove;
+		}
+	}
+
+	/**
+	 * Moves the ball one time step and resolves collisions regardless of the game state.<br>
+	 * Collisions are detected by sweeping the ball along its path. The ball is moved to the exact
+	 * time of impact, bounced and then uses up the rest of the time step with its new velocity. This
+	 * way the ball can't tunnel through a paddle or end up inside a wall however fast it is.
+	 * @return combination of the EVENT_* flags which occurred
+	 */
+	public int moveBall() {
+		final Histogram histogram = _collisionHistogram;
+		final long start = histogram != null ? System.nanoTime() : 0L;
+
+		_prevBallCenterX = _ballCenterX;
+		_prevBallCenterY = _ballCenterY;
+
+		int events = EVENT_NONE;
+		double remaining = _timeStep;
+		for (int i = 0; i < MAX_COLLISIONS_PER_STEP && remaining > 0; i++) {
+			final double dx = _speedX * remaining;
+			final double dy = _speedY * remaining;
+
+			// find the earliest impact within this movement as a fraction of it
+			double tHit = NO_HIT;
+			int hit = HIT_NONE;
+			double normalX = 0;
+			double normalY = 0;
+
+			// top or bottom wall - the ball center must stay BALL_SIZE away from it
+			if (dy < 0) {
+				tHit = Math.max(0, (BALL_SIZE - _ballCenterY) / dy);
+				hit = HIT_WALL;
+			} else if (dy > 0) {
+				tHit = Math.max(0, (_height - BALL_SIZE - _ballCenterY) / dy);
+				hit = HIT_WALL;
+			}
+
+			// paddles are only hit when the ball moves towards them
+			if (_speedX < 0) {
+				final double t = sweepPaddle(_leftPaddleX, _leftPaddleY, dx, dy);
+				if (t < tHit) {
+					tHit = t;
+					hit = HIT_LEFT_PADDLE;
+					normalX = _hitNormalX;
+					normalY = _hitNormalY;
+				}
+			} else if (_speedX > 0) {
+				final double t = sweepPaddle(_rightPaddleX, _rightPaddleY, dx, dy);
+				if (t < tHit) {
+					tHit = t;
+					hit = HIT_RIGHT_PADDLE;
+					normalX = _hitNormalX;
+					normalY = _hitNormalY;
+				}
+			}
+
+			// no impact - full movement
+			if (tHit > 1) {
+				_ballCenterX += dx;
+				_ballCenterY += dy;
+				break;
+			}
+
+			// move to the point of impact
+			_ballCenterX += dx * tHit;
+			_ballCenterY += dy * tHit;
+			remaining *= 1 - tHit;
+
+			switch (hit) {
+			case HIT_WALL:
+				events |= EVENT_WALL;
+				_speedY *= -1;
+				publish(GameEvent.WALL_HIT, false, Double.NaN);
+				break;
+			case HIT_LEFT_PADDLE:
+				events |= EVENT_LEFT_PADDLE;
+				paddleHit(true, _leftPaddleY, normalX, normalY);
+				break;
+			case HIT_RIGHT_PADDLE:
+				events |= EVENT_RIGHT_PADDLE;
+				paddleHit(false, _rightPaddleY, normalX, normalY);
+				break;
+			default:
+			}
+		}
+
+		events |= checkGoal();
+
+		if (histogram != null) histogram.record(System.nanoTime() - start);
+		return events;
+	}
+
+	/**
+	 * Checks if the ball has left through left or right wall.<br>
+	 * If so we have a goal and the score is increased and the ball resetted on the
+	 * scorer's side.
+	 * @return the goal event flag or EVENT_NONE
+	 */
+	private int checkGoal() {
+		final double xMin = _ballCenterX - BALL_SIZE;
+		final double xMax = _ballCenterX + BALL_SIZE;
+		if (xMax < 0 || xMin > _width) {
+			return goal(xMin >= 0);
+		}
+		return EVENT_NONE;
+	}
+
+	/**
+	 * Sweeps the ball along (dx, dy) against a paddle.<br>
+	 * This is a ray test against the paddle rectangle expanded by the ball radius with rounded
+	 * corners (slab test for the faces, ray vs. circle for the corners). On a hit the contact
+	 * normal is stored in <code>_hitNormalX/_hitNormalY</code>.
+	 * @param paddleX left edge of the paddle
+	 * @param paddleY top edge of the paddle
+	 * @param dx movement of the ball on x
+	 * @param dy movement of the ball on y
+	 * @return time of impact as fraction of the movement [0, 1] or NO_HIT
+	 */
+	private double sweepPaddle(double paddleX, double paddleY, double dx, double dy) {
+		if (dx == 0 && dy == 0) return NO_HIT;
+
+		final double left = paddleX;
+		final double right = paddleX + PADDLE_WIDTH;
+		final double top = paddleY;
+		final double bottom = paddleY + _paddleSize;
+		final double x = _ballCenterX;
+		final double y = _ballCenterY;
+
+		double tEnter = Double.NEGATIVE_INFINITY;
+		double tExit = Double.POSITIVE_INFINITY;
+		double normalX = 0;
+		double normalY = 0;
+
+		// x slab of the expanded rectangle
+		if (dx != 0) {
+			final double t1 = (left - BALL_SIZE - x) / dx;
+			final double t2 = (right + BALL_SIZE - x) / dx;
+			tEnter = Math.min(t1, t2);
+			tExit = Math.max(t1, t2);
+			normalX = dx > 0 ? -1 : 1;
+		} else if (x < left - BALL_SIZE || x > right + BALL_SIZE) {
+			return NO_HIT;
+		}
+
+		// y slab of the expanded rectangle
+		if (dy != 0) {
+			final double t1 = (top - BALL_SIZE - y) / dy;
+			final double t2 = (bottom + BALL_SIZE - y) / dy;
+			final double tNear = Math.min(t1, t2);
+			if (tNear > tEnter) {
+				tEnter = tNear;
+				normalX = 0;
+				normalY = dy > 0 ? -1 : 1;
+			}
+			tExit = Math.min(tExit, Math.max(t1, t2));
+		} else if (y < top - BALL_SIZE || y > bottom + BALL_SIZE) {
+			return NO_HIT;
+		}
+
+		if (tEnter > tExit || tExit < 0 || tEnter > 1) return NO_HIT;
+
+		// ball already overlaps the paddle (e.g. paddle moved into the ball) - bounce immediately
+		if (tEnter < 0) {
+			if (intersectsPaddle(paddleX, paddleY)) {
+				_hitNormalX = dx > 0 ? -1 : 1;
+				_hitNormalY = 0;
+				return 0;
+			}
+			tEnter = 0;
+		}
+
+		// where the ball center enters the expanded rectangle
+		final double hx = x + dx * tEnter;
+		final double hy = y + dy * tEnter;
+
+		// face of the paddle
+		if ((hx >= left && hx <= right) || (hy >= top && hy <= bottom)) {
+			_hitNormalX = normalX;
+			_hitNormalY = normalY;
+			return tEnter;
+		}
+
+		// corner of the paddle - ray vs. circle with ball radius around the corner
+		final double cornerX = hx < left ? left : right;
+		final double cornerY = hy < top ? top : bottom;
+		final double mx = x - cornerX;
+		final double my = y - cornerY;
+		final double a = dx * dx + dy * dy;
+		final double b = mx * dx + my * dy;
+		final double c = mx * mx + my * my - BALL_SIZE * BALL_SIZE;
+		// moving away from the corner
+		if (b >= 0) return NO_HIT;
+		final double discriminant = b * b - a * c;
+		if (discriminant < 0) return NO_HIT;
+		final double t = (-b - Math.sqrt(discriminant)) / a;
+		if (t < 0 || t > 1) return NO_HIT;
+		_hitNormalX = (x + dx * t - cornerX) / BALL_SIZE;
+		_hitNormalY = (y + dy * t - cornerY) / BALL_SIZE;
+		return t;
+	}
+
+	/**
+	 * Circle vs. rectangle intersection of the ball with a paddle.
+	 */
+	private boolean intersectsPaddle(double paddleX, double paddleY) {
+		final double nearestX = Math.max(paddleX, Math.min(_ballCenterX, paddleX + PADDLE_WIDTH));
+		final double nearestY = Math.max(paddleY, Math.min(_ballCenterY, paddleY + _paddleSize));
+		final double dx = _ballCenterX - nearestX;
+		final double dy = _ballCenterY - nearestY;
+		return dx * dx + dy * dy <= BALL_SIZE * BALL_SIZE;
+	}
+
+	/**
+	 * Bounces the ball off a paddle.<br>
+	 * A hit on the front of the paddle accelerates the game and calculates the new direction.
+	 * A hit on the top or bottom edge of the paddle only reflects the ball vertically.
+	 * @param left paddle was hit
+	 * @param paddleY
+	 * @param normalX contact normal
+	 * @param normalY contact normal
+	 */
+	private void paddleHit(boolean left, double paddleY, double normalX, double normalY) {
+		if (Math.abs(normalY) > Math.abs(normalX)) {
+			_speedY = Math.abs(_speedY) * Math.signum(normalY);
+			publish(GameEvent.PADDLE_HIT, left, Double.NaN);
+			return;
+		}
+		publish(GameEvent.PADDLE_HIT, left, hitPosition(paddleY, _speedY));
+		final double oldSpeedX = _speedX;
+		final double oldSpeedY = _speedY;
+		_speedFactor *= _acceleration;
+		_speedX *= _acceleration;
+		_speedY *= _acceleration;
+		// new direction
+		if (_anglePaddle) {
+			newVector(paddleY);
+		} else {
+			// just changed direction - angle is always constant
+			_speedX *= -1;
+		}
+		if (_trace != null) {
+			_trace.paddleHit(_tick, oldSpeedX > 0, hitPosition(paddleY, oldSpeedY),
+					StrictMath.atan(oldSpeedY / Math.abs(oldSpeedX)), StrictMath.atan(_speedY / Math.abs(_speedX)),
+					Math.sqrt(oldSpeedX * oldSpeedX + oldSpeedY * oldSpeedY), 
+					Math.sqrt(_speedX * _speedX + _speedY * _speedY));
+		}
+	}
+
+	/**
+	 * Publishes an event of the current tick to the event bus if there is one.
+	 * @param type one of the <code>GameEvent</code> types
+	 * @param left side of the event
+	 * @param hitPosition of a paddle hit
+	 */
+	private void publish(int type, boolean left, double hitPosition) {
+		if (_eventBus != null) {
+			_eventBus.publish(type, _tick, left, _ballCenterX, _ballCenterY, hitPosition, _speedFactor, 
+					_leftPoints, _rightPoints);
+		}
+	}
+
+	/**
+	 * Calculates where the ball hit the paddle relative to the direction of the ball:<br>
+	 * center = 0.0, top=-1-0, bottom=+1.0 for a ball moving down, mirrored for a ball moving up. 
+	 * @param paddleY
+	 * @param speedY
+	 * @return hit position
+	 */
+	private double hitPosition(double paddleY, double speedY) {
+		final double hitPos = (_ballCenterY - paddleY) / _paddleSize;
+		return (hitPos - 0.5) * 2 * Math.signum(speedY);
+	}
+
+	/**
+	 * Calculates the new vector of the ball depending on where it hit the paddle.
+	 * @param paddleY
+	 */
+	private void newVector(double paddleY) {
+		// calculate where the ball hit the paddle
+		final double hitPos = hitPosition(paddleY, _speedY);
+
+		/*
+		 * This leads to either convergence to zero or convergence to bigger angles depending on
+		 * the influence of the hitPos - see DeflectionModel and DeflectionSweep.
+		 */
+
+		// determine new vector (angle and speed)
+		_deflection.deflect(_speedX, _speedY, hitPos, _vector);
+		_speedX = _vector[0];
+		_speedY = _vector[1];
+	}
+
+	/**
+	 * Increases score for the player who scored and starts the goal delay. After it the ball
+	 * is served from the scorer's side.
+	 * @param leftScored
+	 * @return the goal event flag
+	 */
+	private int goal(boolean leftScored) {
+		if (leftScored) {
+			_leftPoints++;
+		} else {
+			_rightPoints++;
+		}
+		_serveFromLeft = leftScored;
+		publish(GameEvent.GOAL, leftScored, Double.NaN);
+		if (_state == GameState.IN_PLAY) {
+			_state = GameState.GOAL;
+			_stateTicks = _goalDelayTicks;
+		} else {
+			serve(leftScored);
+		}
+		return leftScored ? EVENT_GOAL_LEFT : EVENT_GOAL_RIGHT;
+	}
+
+	/* ********************************
+	 * GETTER / SETTER
+	 * ********************************/
+
+	public GameState getState() { return _state; }
+
+	/**
+	 * @return the state to resume to if the game is paused
+	 */
+	public GameState getPausedState() { return _pausedState; }
+
+	/**
+	 * @return true if the ball is moved by <code>step()</code>
+	 */
+	public boolean isBallMoving() { return _state == GameState.IN_PLAY; }
+
+	/**
+	 * @return true if the ball is on the board and should be shown
+	 */
+	public boolean isBallVisible() {
+		final GameState state = _state == GameState.PAUSED ? _pausedState : _state;
+		return state == GameState.SERVING || state == GameState.IN_PLAY;
+	}
+
+	public double getWidth() { return _width; }
+	public double getHeight() { return _height; }
+
+	public double getBallCenterX() { return _ballCenterX; }
+	public double getBallCenterY() { return _ballCenterY; }
+	public double getSpeedX() { return _speedX; }
+	public double getSpeedY() { return _speedY; }
+
+	public double getLeftPaddleX() { return _leftPaddleX; }
+	public double getRightPaddleX() { return _rightPaddleX; }
+	public double getLeftPaddleY() { return _leftPaddleY; }
+	public double getRightPaddleY() { return _rightPaddleY; }
+	public double getPaddleSize() { return _paddleSize; }
+
+	public double getPrevBallCenterX() { return _prevBallCenterX; }
+	public double getPrevBallCenterY() { return _prevBallCenterY; }
+	public double getPrevLeftPaddleY() { return _prevLeftPaddleY; }
+	public double getPrevRightPaddleY() { return _prevRightPaddleY; }
+
+	/**
+	 * Puts the ball to the given position with the given velocity. 
+	 * @param x center
+	 * @param y center
+	 * @param speedX pixels per second
+	 * @param speedY pixels per second
+	 */
+	public void setBall(double x, double y, double speedX, double speedY) {
+		_ballCenterX = _prevBallCenterX = x;
+		_ballCenterY = _prevBallCenterY = y;
+		_speedX = speedX;
+		_speedY = speedY;
+	}
+
+	/**
+	 * Shows a state which was simulated elsewhere, e.g. for spectators. Nothing is simulated
+	 * and recorded - the last shown positions become the previous positions to interpolate from.
+	 * @param state
+	 * @param pausedState
+	 * @param ballX center
+	 * @param ballY center
+	 * @param leftPaddleY top edge
+	 * @param rightPaddleY top edge
+	 * @param paddleSize
+	 * @param leftPoints
+	 * @param rightPoints
+	 */
+	public void setView(GameState state, GameState pausedState, double ballX, double ballY, 
+			double leftPaddleY, double rightPaddleY, double paddleSize, int leftPoints, int rightPoints) {
+		_state = state;
+		_pausedState = pausedState;
+		_prevBallCenterX = _ballCenterX;
+		_prevBallCenterY = _ballCenterY;
+		_prevLeftPaddleY = _leftPaddleY;
+		_prevRightPaddleY = _rightPaddleY;
+		_ballCenterX = ballX;
+		_ballCenterY = ballY;
+		_leftPaddleY = leftPaddleY;
+		_rightPaddleY = rightPaddleY;
+		_paddleSize = paddleSize;
+		_leftPoints = leftPoints;
+		_rightPoints = rightPoints;
+	}
+
+	/**
+	 * @param y new top edge of the left paddle
+	 */
+	public void setLeftPaddleY(double y) { 
+		if (_recorder != null) _recorder.leftPaddle(y);
+		_leftPaddleY = _prevLeftPaddleY = y; 
+	}
+
+	/**
+	 * @param y new top edge of the right paddle
+	 */
+	public void setRightPaddleY(double y) { 
+		if (_recorder != null) _recorder.rightPaddle(y);
+		_rightPaddleY = _prevRightPaddleY = y; 
+	}
+
+	/**
+	 * @return the current factor of the game speed (1.0 after a goal)
+	 */
+	public double getSpeedFactor() { return _speedFactor; }
+
+	/**
+	 * @return length of one tick in seconds
+	 */
+	public double getTimeStep() { return _timeStep; }
+
+	public int getLeftPoints() { return _leftPoints; }
+	public int getRightPoints() { return _rightPoints; }
+
+	/**
+	 * @param histogram to record the nanoseconds of every ball move and collision check or null to turn it off
+	 */
+	public void setCollisionHistogram(Histogram histogram) { _collisionHistogram = histogram; }
+
+	/**
+	 * @param bus to publish all events of the game to or null to turn it off
+	 */
+	public void setEventBus(GameEventBus bus) { _eventBus = bus; }
+
+	/**
+	 * @return the bus the events are published to or null
+	 */
+	public GameEventBus getEventBus() { return _eventBus; }
+
+	/**
+	 * @param trace to trace every paddle hit or null to turn it off
+	 */
+	public void setTraceLog(TraceLog trace) { _trace = trace; }
+
+	/**
+	 * @return number of ticks since the engine was created
+	 */
+	public long getTick() { return _tick; }
+
+	/**
+	 * @param recorder to record all inputs and commands or null to turn it off
+	 */
+	public void setRecorder(MatchRecorder recorder) { _recorder = recorder; }
+
+	/**
+	 * @return seed of the current game
+	 */
+	public long getSeed() { return _seed; }
+
+	/**
+	 * Writes the simulation state - the same as <code>copyFrom()</code> copies apart from the
+	 * tick, the seed and the deflection - as <code>STATE_SIZE</code> bytes, e.g. for network snapshots.
+	 * @param buffer
+	 */
+	public void writeState(ByteBuffer buffer) {
+		buffer.put((byte) _state.ordinal());
+		buffer.put((byte) _pausedState.ordinal());
+		buffer.putInt(_stateTicks);
+		buffer.put((byte) (_serveFromLeft ? 1 : 0));
+		buffer.put((byte) (_anglePaddle ? 1 : 0));
+		buffer.putDouble(_paddleSize);
+		buffer.putDouble(_ballCenterX);
+		buffer.putDouble(_ballCenterY);
+		buffer.putDouble(_speedX);
+		buffer.putDouble(_speedY);
+		buffer.putDouble(_leftPaddleY);
+		buffer.putDouble(_rightPaddleY);
+		buffer.putDouble(_speedFactor);
+		buffer.putDouble(_initialBallSpeed);
+		buffer.putDouble(_acceleration);
+		buffer.putInt(_leftPoints);
+		buffer.putInt(_rightPoints);
+	}
+
+	/**
+	 * Reads a state written by <code>writeState()</code>. There is no interpolation from the
+	 * previous positions.
+	 * @param buffer
+	 * @return false if the buffer holds no valid state - the engine is unchanged then
+	 */
+	public boolean readState(ByteBuffer buffer) {
+		if (buffer.remaining() < STATE_SIZE) return false;
+		final int state = buffer.get(buffer.position());
+		final int pausedState = buffer.get(buffer.position() + 1);
+		if (state < 0 || state >= STATES.length || pausedState < 0 || pausedState >= STATES.length) return false;
+		buffer.position(buffer.position() + 2);
+		_state = STATES[state];
+		_pausedState = STATES[pausedState];
+		_stateTicks = buffer.getInt();
+		_serveFromLeft = buffer.get() != 0;
+		_anglePaddle = buffer.get() != 0;
+		_paddleSize = buffer.getDouble();
+		_ballCenterX = _prevBallCenterX = buffer.getDouble();
+		_ballCenterY = _prevBallCenterY = buffer.getDouble();
+		_speedX = buffer.getDouble();
+		_speedY = buffer.getDouble();
+		_leftPaddleY = _prevLeftPaddleY = buffer.getDouble();
+		_rightPaddleY = _prevRightPaddleY = buffer.getDouble();
+		_speedFactor = buffer.getDouble();
+		_initialBallSpeed = buffer.getDouble();
+		_acceleration = buffer.getDouble();
+		_leftPoints = buffer.getInt();
+		_rightPoints = buffer.getInt();
+		return true;
+	}
+
+	/**
+	 * A checksum over the complete simulation state - everything <code>writeState()</code> writes. 
+	 * Two engines with the same checksum are in the same state (with a very high probability).
+	 * @return checksum
+	 */
+	public long getStateChecksum() {
+		long h = 17;
+		h = 31 * h + Double.doubleToLongBits(_ballCenterX);
+		h = 31 * h + Double.doubleToLongBits(_ballCenterY);
+		h = 31 * h + Double.doubleToLongBits(_speedX);
+		h = 31 * h + Double.doubleToLongBits(_speedY);
+		h = 31 * h + Double.doubleToLongBits(_leftPaddleY);
+		h = 31 * h + Double.doubleToLongBits(_rightPaddleY);
+		h = 31 * h + Double.doubleToLongBits(_speedFactor);
+		h = 31 * h + _leftPoints;
+		h = 31 * h + _rightPoints;
+		h = 31 * h + _state.ordinal();
+		h = 31 * h + _pausedState.ordinal();
+		h = 31 * h + _stateTicks;
+		h = 31 * h + (_serveFromLeft ? 1 : 0);
+		h = 31 * h + (_anglePaddle ? 1 : 0);
+		h = 31 * h + Double.doubleToLongBits(_paddleSize);
+		h = 31 * h + Double.doubleToLongBits(_initialBallSpeed);
+		h = 31 * h + Double.doubleToLongBits(_acceleration);
+		return h;
+	}
+
+	public double getInitialBallSpeed() { return _initialBallSpeed; }
+	/**
+	 * @param speed of the ball on each axis after a serve in pixels per second - takes effect with the next serve
+	 */
+	public void setInitialBallSpeed(double speed) { _initialBallSpeed = speed; }
+
+	public double getAcceleration() { return _acceleration; }
+	/**
+	 * @param acceleration factor of the game speed for every paddle hit
+	 */
+	public void setAcceleration(double acceleration) { _acceleration = acceleration; }
+
+	public Deflection getDeflection() { return _deflection; }
+	/**
+	 * @param deflection of the angling paddle
+	 */
+	public void setDeflection(Deflection deflection) { _deflection = deflection; }
+
+	public boolean isAnglePaddle() { return _anglePaddle; }
+	public void setAnglePaddle(boolean anglePaddle) { 
+		if (_recorder != null && anglePaddle != _anglePaddle) _recorder.anglePaddle(anglePaddle);
+		_anglePaddle = anglePaddle; 
+	}
+
+}
@@ -23,15 +23,15 @@ SOFTWARE.
  */
 package fko.pong;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import fko.pong.Sounds.Clips;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.event.EventHandler;
@@ -45,81 +45,99 @@ import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.text.Font;
-import javafx.scene.text.FontPosture;
-import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
-import javafx.util.Duration;
 
 /**
  * The PongPane handles the playing and screen output.<br>
  * It builds a board with two paddles, a ball a two scores.<br>
  * It adds controls by keyboard and mouse and also adds sound events.<br>
+ * The simulation itself is done by a <code>PongEngine</code> - this pane only
+ * renders its state.<br>
+ * A single <code>GameLoop</code> driven by the JavaFX pulse ticks the engine with a fixed time step
+ * and renders the interpolated state once per pulse.<br>
+ * Rendering is done either with scene graph nodes (<code>NodeRenderer</code>) or in immediate
+ * mode on a canvas (<code>CanvasRenderer</code>). It can be switched while the game is running.<br>
+ * With <code>-Dpong.record=&lt;folder&gt;</code> every game is recorded to a match log and with
+ * <code>-Dpong.replay=&lt;match log&gt;</code> a recorded game is replayed instead of played.<br>
+ * Each paddle can be played by the computer (<code>PredictingAI</code>) - the difficulty is set with
+ * <code>-Dpong.ai=easy|normal|expert|perfect|hard</code>.<br>
+ * With <code>-Dpong.host=[port]</code> the game is hosted for a network player who plays the right
+ * paddle with <code>-Dpong.connect=&lt;host&gt;[:port]</code>. Both players use either set of keys.<br>
+ * With <code>-Dpong.spectate=[port]</code> the game is streamed to spectators who watch it with
+ * <code>-Dpong.watch=&lt;host&gt;[:port]</code>.<br>
  * @author Frank Kopp
  */
 public class PongPane extends Pane implements InvalidationListener {
 
-	private static final int BALL_MOVE_INCREMENTS = 2;
-	private static final int BALL_SIZE = 5;
-	private static final int INITIAL_PADDLE_SIZE = 60;
+	// ticks the engine and renders it
+	private GameLoop _gameLoop;
+
+	// timestamped key and mouse input - sampled at every tick
+	private InputSampler _input;
 
-	private static final double INITIAL_BALL_SPEED = 60.0;
-	private static final double INITIAL_PADDLE_SPEED = 60.0;
-	private static final double ACCELARATION = 1.05; // factor
+	// the headless simulation - created in initialize() when the size of the pane is known
+	private PongEngine _engine;
 
-	private double _ballSpeed = INITIAL_BALL_SPEED;
-	private double _paddleSpeed = INITIAL_PADDLE_SPEED;
+	// records the current game if turned on
+	private MatchRecorder _recorder = null;
+	// replays a recorded game instead of playing
+	private MatchReplay _replay = null;
 
-	private double _speedX = BALL_MOVE_INCREMENTS;
-	private double _speedY = BALL_MOVE_INCREMENTS;
+	// network game - at most one of them is set
+	private NetHost _netHost = null;
+	private NetClient _netClient = null;
 
-	private double _paddleSize = INITIAL_PADDLE_SIZE;
+	// spectators - streaming the game or watching another
+	private SpectatorServer _spectatorServer = null;
+	private SpectatorClient _watch = null;
 
-	private Timeline _ballAnimation;
-	private Timeline _paddleAnimation;
+	// loaded in the background after the first frame - null until then
+	private volatile Sounds _sounds = null;
+	// render calls until the first frame is on the screen - it is painted after its render call
+	private int _framesUntilPainted = 2;
 
-	protected boolean leftPaddleUp = false;
-	protected boolean leftPaddleDown = false;
-	protected boolean rightPaddleUp = false;
-	protected boolean rightPaddleDown = false;
+	// events of the engine - sound and statistics are handled on their own threads which are
+	// started after the first frame
+	private final GameEventBus _eventBus = new GameEventBus();
+	// writes the matches to the history if turned on - set after the first frame
+	private HistoryRecorder _history = null;
 
-	private Sounds _sounds = new Sounds();
-	private Rectangle _leftPaddle;
-	private Rectangle _rightPaddle;
-	private Circle _ball;
+	// the renderers - the canvas renderer is created when first used
+	private final NodeRenderer _nodeRenderer = new NodeRenderer();
+	private CanvasRenderer _canvasRenderer = null;
+	private PongRenderer _renderer = null;
 
-	// The center points of the moving ball
-	private DoubleProperty _ballCenterX = new SimpleDoubleProperty();
-	private DoubleProperty _ballCenterY = new SimpleDoubleProperty();
+	// performance overlay
+	private final PerformanceHud _hud = new PerformanceHud();
 
-	// The position of the paddles
-	private DoubleProperty _leftPaddleY = new SimpleDoubleProperty();
-	private DoubleProperty _rightPaddleY = new SimpleDoubleProperty();
+	// all inputs of one paddle
+	private static final int LEFT_INPUTS = PongEngine.INPUT_LEFT_UP | PongEngine.INPUT_LEFT_DOWN 
+			| PongEngine.INPUT_HELD_MASK << PongEngine.INPUT_LEFT_HELD_SHIFT;
+	private static final int RIGHT_INPUTS = PongEngine.INPUT_RIGHT_UP | PongEngine.INPUT_RIGHT_DOWN 
+			| PongEngine.INPUT_HELD_MASK << PongEngine.INPUT_RIGHT_HELD_SHIFT;
 
 	// helper for dragging of paddles
+	private static final int DRAG_NONE = 0;
+	private static final int DRAG_LEFT = 1;
+	private static final int DRAG_RIGHT = 2;
+	protected int _dragPaddle = DRAG_NONE;
 	protected double _initialTranslateY;
 	protected double _initialDragAnchor;
 
-	// points per player
-	Player _playerLeft = new Player("Left");
-	Player _playerRight = new Player("Right");
-
-	// status of game
-	private boolean _gamePaused = false;
-	private boolean _gameRunning = false;
-
-	// the text for the points
-	private StringProperty _leftPlayerPoints = new SimpleStringProperty("0");
-	private StringProperty _rightPlayerPoints = new SimpleStringProperty("0");
-
 	// text to display options which can be turned on and off
 	private StringProperty _optionsTextString = new SimpleStringProperty("Options: ");
 
 	// Options
 	private BooleanProperty _soundOn 	= new SimpleBooleanProperty(false);
 	private BooleanProperty _anglePaddle = new SimpleBooleanProperty(true);
+	private BooleanProperty _canvasRendering = new SimpleBooleanProperty(false);
+	private BooleanProperty _showHud = new SimpleBooleanProperty(false);
+	private BooleanProperty _leftComputer = new SimpleBooleanProperty(false);
+	private BooleanProperty _rightComputer = new SimpleBooleanProperty(false);
+
+	// computer players - null if played by a human
+	private PongAI _leftAI = null;
+	private PongAI _rightAI = null;
 
 	/**
 	 * The pane where the playing takes place.
@@ -129,29 +147,59 @@ public class PongPane extends Pane implements InvalidationListener {
 		this.setBackground(new Background(
 				new BackgroundFill(Color.BLACK, CornerRadii.EMPTY, Insets.EMPTY)));
 
-		_sounds = new Sounds();
+		_eventBus.addHandler("EventSound", this::playSound);
+		_eventBus.addHandler("EventStats", _hud.getRallyStats());
 
 		// initialize options listener - any time an option property is changed this.invalidated() is called
 		_soundOn.addListener(this);
 		_anglePaddle.addListener(this);
+		_canvasRendering.addListener(this);
+		_showHud.addListener(this);
+		_leftComputer.addListener(this);
+		_rightComputer.addListener(this);
 		updateOptions();
 	}
 
 	/**
-	 * Initializes the screen by adding a ball, two paddles and two scores.<br>
-	 * Also adds the key handler for movements. 
+	 * Initializes the screen by attaching the renderer for ball, paddles and scores.<br>
+	 * Also adds the key and mouse handler for movements. 
 	 * @param optionsText 
 	 */
 	public void initialize(Text optionsText) {
 
 		optionsText.textProperty().bind(_optionsTextString);
 
-		addBall();
-		addPaddles();
-		addScore();
+		_engine = createEngine();
+		_engine.setEventBus(_eventBus);
+		// trace physics if turned on with -Dpong.trace=<file>
+		_engine.setTraceLog(TraceLog.fromSystemProperty());
+		_input = new InputSampler(_engine.getTimeStep());
+		// network game if turned on with -Dpong.host=[port] or -Dpong.connect=<host>[:port]
+		if (_replay == null) {
+			_watch = SpectatorClient.fromSystemProperty();
+			if (_watch == null) _netHost = NetHost.fromSystemProperty(_engine);
+			if (_watch == null && _netHost == null) _netClient = NetClient.fromSystemProperty(_engine);
+		}
+		// stream to spectators if turned on with -Dpong.spectate=[port]
+		_spectatorServer = SpectatorServer.fromSystemProperty(_engine);
+
+		addMouseHandler();
 
 		updateOptions();
 
+		_gameLoop = new GameLoop(_engine.getTimeStep()) {
+			@Override
+			protected void tick() {
+				PongPane.this.tick();
+				if (_spectatorServer != null) _spectatorServer.publish(_engine);
+			}
+			@Override
+			protected void render(double alpha) {
+				PongPane.this.render(alpha);
+			}
+		};
+		_gameLoop.start();
+
 		// set key event to control game and move flags
 		this.getScene().setOnKeyPressed(new EventHandler<KeyEvent>() {
 			@Override
@@ -161,20 +209,22 @@ public class PongPane extends Pane implements InvalidationListener {
 				case SPACE: startGame();	 break;
 				case ESCAPE: stopGame(); break;
 				case P: {
-					if (_gameRunning) {
-						if (_gamePaused) resumeGame();
-						else pauseGame();
-					}
+					if (_engine.getState() == GameState.PAUSED) resumeGame();
+					else pauseGame();
 					break;
 				}
 				// options control
 				case DIGIT1: _soundOn.set(!_soundOn.get());; break;
 				case DIGIT2: _anglePaddle.set(!_anglePaddle.get()); break;
+				case DIGIT3: _canvasRendering.set(!_canvasRendering.get()); break;
+				case DIGIT4: _showHud.set(!_showHud.get()); break;
+				case DIGIT5: _leftComputer.set(!_leftComputer.get()); break;
+				case DIGIT6: _rightComputer.set(!_rightComputer.get()); break;
 				// paddle control
-				case Q: 		leftPaddleUp = true; break;
-				case A:		leftPaddleDown = true; break;
-				case UP:	 	rightPaddleUp = true; break;
-				case DOWN:  	rightPaddleDown = true; break;
+				case Q: 		_input.press(InputSampler.LEFT_UP); break;
+				case A:		_input.press(InputSampler.LEFT_DOWN); break;
+				case UP:	 	_input.press(InputSampler.RIGHT_UP); break;
+				case DOWN:  	_input.press(InputSampler.RIGHT_DOWN); break;
 				default:
 				}
 			}
@@ -183,16 +233,40 @@ public class PongPane extends Pane implements InvalidationListener {
 			@Override
 			public void handle(KeyEvent event) {
 				switch (event.getCode()) {
-				case Q: 		leftPaddleUp = false; break;
-				case A:		leftPaddleDown = false; break;
-				case UP:	 	rightPaddleUp = false; break;
-				case DOWN:  	rightPaddleDown = false; break;
+				case Q: 		_input.release(InputSampler.LEFT_UP); break;
+				case A:		_input.release(InputSampler.LEFT_DOWN); break;
+				case UP:	 	_input.release(InputSampler.RIGHT_UP); break;
+				case DOWN:  	_input.release(InputSampler.RIGHT_DOWN); break;
 				default:
 				}
 			}
 		}); 
 	}
 
+	/**
+	 * Creates the engine for the size of the pane or for the match log to replay.
+	 * @return the engine
+	 */
+	private PongEngine createEngine() {
+		final String replayFile = System.getProperty(MatchReplay.REPLAY_PROPERTY);
+		if (replayFile != null && !replayFile.isEmpty()) {
+			try {
+				_replay = new MatchReplay(Paths.get(replayFile));
+				final PongEngine engine = _replay.createEngine();
+				_anglePaddle.set(engine.isAnglePaddle());
+				return engine;
+			} catch (IOException e) {
+				Pong.criticalError("Match log "+replayFile+" cannot be replayed: "+e.getMessage());
+				_replay = null;
+			}
+		}
+		final PongEngine engine = new PongEngine(this.getWidth(), this.getHeight());
+		// model of the angling paddle - can be selected with -Dpong.deflection=<weight>,<max angle>,<conservation>
+		// and looked up in tables with -Dpong.deflection.table=<hit steps>x<angle steps>
+		engine.setDeflection(TableDeflection.fromSystemProperty(DeflectionModel.fromSystemProperty()));
+		return engine;
+	}
+
 	/**
 	 * Is called by the option property objects whenever they change 
 	 * @see javafx.beans.InvalidationListener#invalidated(javafx.beans.Observable)
@@ -207,54 +281,74 @@ public class PongPane extends Pane implements InvalidationListener {
 	 */
 	private void updateOptions() {
 		// sound
-		if (_soundOn.get()) {
-			_sounds.soundOn();
-		} else {
-			_sounds.soundOff();
-		}		
+		if (_sounds != null) {
+			if (_soundOn.get()) {
+				_sounds.soundOn();
+			} else {
+				_sounds.soundOff();
+			}
+		}
+
+		// angling paddle and renderer
+		if (_engine != null) {
+			// a replay sets the option from the log
+			if (_replay == null) _engine.setAnglePaddle(_anglePaddle.get());
+			updateRenderer();
+			if (_showHud.get()) {
+				_hud.attach(this, _engine, _sounds, _input);
+				_hud.toFront();
+			} else {
+				_hud.detach(this, _engine, _sounds, _input);
+			}
+		}
+
+		// computer players
+		_leftAI = _leftComputer.get() ? (_leftAI != null ? _leftAI : createAI(true)) : null;
+		_rightAI = _rightComputer.get() ? (_rightAI != null ? _rightAI : createAI(false)) : null;
 
 		// Options Text
 		StringBuilder sb = new StringBuilder("Options: ");
 		sb.append("Sound (1) ").append(_soundOn.get() ? "ON" : "OFF").append("  ");
 		sb.append("Angling Paddle (2) ").append(_anglePaddle.get() ? "ON" : "OFF").append("  ");
+		// no renderer before initialize() which updates the options again
+		sb.append("Renderer (3) ").append(_renderer != null ? _renderer.getName() : "").append("  ");
+		sb.append("HUD (4) ").append(_showHud.get() ? "ON" : "OFF").append("  ");
+		sb.append("CPU Left (5) ").append(_leftComputer.get() ? "ON" : "OFF").append("  ");
+		sb.append("CPU Right (6) ").append(_rightComputer.get() ? "ON" : "OFF").append("  ");
 		_optionsTextString.set(sb.toString());
 	}
 
 	/**
-	 * Adds the display of the score for each player.
+	 * @param left true for the left paddle
+	 * @return a computer player with the difficulty of the system property <code>pong.ai</code>
 	 */
-	private void addScore() {
-		// create Text for each score 
-		Text leftScore = new Text();
-		Text rightScore = new Text();
-		this.getChildren().add(leftScore);
-		this.getChildren().add(rightScore);
-
-		// positioning helpers
-		double middle = this.getWidth() / 2;
-		final int offsetFromMiddle = 150;
-
-		// layout helpers
-		final Font font = Font.font("OCR A Std", FontWeight.BOLD, FontPosture.REGULAR, 40.0);
-		final int locationY = 50;
-		final Color color = Color.WHITE;
-
-		// left
-		leftScore.setFont(font);
-		leftScore.setY(locationY);
-		leftScore.setFill(color);
-		// right
-		rightScore.setFont(font);
-		rightScore.setY(locationY);
-		rightScore.setFill(color);
-
-		// position score text
-		leftScore.setX(middle - offsetFromMiddle - leftScore.getBoundsInParent().getWidth());
-		rightScore.setX(middle + offsetFromMiddle);
-
-		// bind text to score property
-		leftScore.textProperty().bind(_leftPlayerPoints);
-		rightScore.textProperty().bind(_rightPlayerPoints);
+	private static PongAI createAI(boolean left) {
+		final String difficulty = System.getProperty(PredictingAI.AI_PROPERTY, PredictingAI.NORMAL);
+		// the hard AI searches in the background so it never blocks the game loop
+		if (MonteCarloAI.HARD.equals(difficulty)) return MonteCarloAI.createInteractive(left, System.nanoTime());
+		PongAI ai = PredictingAI.create(difficulty, left, System.nanoTime());
+		if (ai == null) {
+			Pong.minorError("Unknown AI difficulty "+difficulty+" - using "+PredictingAI.NORMAL);
+			ai = PredictingAI.create(PredictingAI.NORMAL, left, System.nanoTime());
+		}
+		return ai;
+	}
+
+	/**
+	 * Switches to the renderer selected in the options.
+	 */
+	private void updateRenderer() {
+		final PongRenderer renderer;
+		if (_canvasRendering.get()) {
+			if (_canvasRenderer == null) _canvasRenderer = new CanvasRenderer();
+			renderer = _canvasRenderer;
+		} else {
+			renderer = _nodeRenderer;
+		}
+		if (renderer == _renderer) return;
+		if (_renderer != null) _renderer.detach(this);
+		_renderer = renderer;
+		_renderer.attach(this, _engine);
 	}
 
 	/**
@@ -262,314 +356,285 @@ public class PongPane extends Pane implements InvalidationListener {
 	 * The side and start position is chosen randomly.
 	 */
 	public void startGame() {
-		// if game is running do nothing
-		if (_gameRunning) return;
-		// new players
-		_playerLeft = new Player("Left");
-		_playerRight = new Player("Right");
-
-		_leftPlayerPoints.setValue(String.valueOf(_playerLeft._points));
-		_rightPlayerPoints.setValue(String.valueOf(_playerRight._points));
-
-		// start from either side of the board
-		if (Math.random() < 0.5) {
-			_ballCenterX.setValue(0.0+_ball.getBoundsInParent().getWidth());	
-			_speedX = BALL_MOVE_INCREMENTS;
-		} else {
-			_ballCenterX.setValue(this.getWidth()-_ball.getBoundsInParent().getWidth());
-			_speedX = -BALL_MOVE_INCREMENTS;
+		// if game is running or replayed or controlled by the host do nothing
+		if (_engine.getState() != GameState.STOPPED || _replay != null || isRemote()) return;
+		// record the game if turned on with -Dpong.record=<folder>
+		_recorder = MatchRecorder.fromSystemProperty();
+		_engine.setRecorder(_recorder);
+		if (_history != null) {
+			_history.setPlayers(playerName(true), playerName(false));
+		}
+		_engine.startGame();
+	}
+
+	/**
+	 * @param left
+	 * @return name of the player of a paddle in the match history
+	 */
+	private String playerName(boolean left) {
+		if (left ? _leftAI != null : _rightAI != null) {
+			return HistoryRecorder.computerName(System.getProperty(PredictingAI.AI_PROPERTY, PredictingAI.NORMAL), left);
 		}
-		// random y
-		_ballCenterY.setValue(Math.random() * this.getHeight());
-		// random direction
-		_speedY = BALL_MOVE_INCREMENTS * (Math.random() < 0.5 ? 1 : -1);
-		_ball.setVisible(true); 
-		_ballAnimation.play();
-		_gamePaused = false;
-		_gameRunning = true;
+		if (_netHost != null && !left) return "Remote";
+		return left ? "Left" : "Right";
 	}
 
 	/**
-	 * Stops the game. Ignored if game not running.
+	 * Stops the game or ends a replay. Ignored if game not running.
 	 */
 	public void stopGame() {
-		_ball.setVisible(false); 
-		_ballAnimation.stop();
-		_gamePaused = false;
-		_gameRunning = false;
+		if (isRemote()) return;
+		_replay = null;
+		_engine.stopGame();
+		if (_recorder != null) {
+			_engine.setRecorder(null);
+			_recorder.close();
+			_recorder = null;
+		}
 	}
 
 	/**
-	 * Pause the game. Ignored if game not running or already paused.
+	 * Pause the game. Ignored if game not running or already paused or replayed.
 	 */
 	public void pauseGame() {
-		if (_gameRunning && _gamePaused) return;
-		_gamePaused = true;
-		_ballAnimation.stop();
+		if (_replay != null || isRemote()) return;
+		_engine.pauseGame();
 	}
 
 	/**
-	 * Resume a paused game. Ignored if game not running or game not paused.
+	 * Resume a paused game. Ignored if game not running or game not paused or replayed.
 	 */
 	public void resumeGame() {
-		if (_gameRunning && !_gamePaused) return;
-		_gamePaused = false;
-		_ballAnimation.play();
+		if (_replay != null || isRemote()) return;
+		_engine.resumeGame();
 	}
 
 	/**
-	 * Adding the two player paddles to the screen.<br>
-	 * Also adding a mouse handler to the paddles.
+	 * Adds a mouse handler to the pane for dragging the paddles.<br>
+	 * The paddles are found by their position in the engine so this works with every renderer.
 	 */
-	private void addPaddles() {
-		double minX = this.getBoundsInLocal().getMinX();
-		double maxX = this.getBoundsInLocal().getMaxX();
-		double minY = this.getBoundsInLocal().getMinY();
-		double maxY = this.getBoundsInLocal().getMaxY();
-		final int paddleWidth = 10;
-		double left  = minX + 20;
-		double right = maxX - 20 - paddleWidth;
-		double startPos = (maxY-minY)/2 - _paddleSize/2;
-
-		// enable dragging of paddles with the mouse
+	private void addMouseHandler() {
 		EventHandler<MouseEvent> mouseDragHandler = new EventHandler<MouseEvent>() {
 			@Override
 			public void handle(MouseEvent event) {
-				final Rectangle source = (Rectangle) event.getSource();
 				final EventType<? extends MouseEvent> eventType = event.getEventType();
-				// only the two paddles have these handler so we can do the simple if
-				DoubleProperty yProp = source.equals(_leftPaddle) ? _leftPaddleY : _rightPaddleY;
-				// handle the three different mouse events
-				if (eventType.equals(MouseEvent.MOUSE_PRESSED) ) {
-					source.setCursor(Cursor.CLOSED_HAND);
-					_initialTranslateY = source.getTranslateY();
+				// handle the different mouse events
+				if (eventType.equals(MouseEvent.MOUSE_MOVED)) {
+					setCursor(draggablePaddleAt(event.getX(), event.getY()) != DRAG_NONE ? Cursor.OPEN_HAND : Cursor.DEFAULT);
+				} else if (eventType.equals(MouseEvent.MOUSE_PRESSED) ) {
+					_dragPaddle = draggablePaddleAt(event.getX(), event.getY());
+					if (_dragPaddle == DRAG_NONE) return;
+					setCursor(Cursor.CLOSED_HAND);
+					_initialTranslateY = _dragPaddle == DRAG_LEFT ? _engine.getLeftPaddleY() : _engine.getRightPaddleY();
 					_initialDragAnchor = event.getSceneY();
 				} else if (eventType.equals(MouseEvent.MOUSE_DRAGGED) ) {
+					if (_dragPaddle == DRAG_NONE) return;
 					double dragY = event.getSceneY() - _initialDragAnchor;
 					// don't leave area
-					if (_initialTranslateY + dragY > source.getParent().getBoundsInLocal().getMinY() 
-							&& _initialTranslateY + dragY + _paddleSize < source.getParent().getBoundsInLocal().getMaxY() ) {
-						yProp.setValue(_initialTranslateY + dragY);
+					if (_initialTranslateY + dragY > 0 
+							&& _initialTranslateY + dragY + _engine.getPaddleSize() < _engine.getHeight() ) {
+						// set with the next tick
+						_input.drag(_dragPaddle == DRAG_LEFT, _initialTranslateY + dragY);
 					}
 				} else if (eventType.equals(MouseEvent.MOUSE_RELEASED) ) {
-					source.setCursor(Cursor.OPEN_HAND);
+					if (_dragPaddle != DRAG_NONE) setCursor(Cursor.OPEN_HAND);
+					_dragPaddle = DRAG_NONE;
 				}
 			};
 		};
+		this.setOnMouseMoved(mouseDragHandler);
+		this.setOnMousePressed(mouseDragHandler);
+		this.setOnMouseDragged(mouseDragHandler);
+		this.setOnMouseReleased(mouseDragHandler);
+	}
 
-		_leftPaddle = new Rectangle(paddleWidth,_paddleSize, Color.WHITE);
-		_leftPaddle.setTranslateX(left);
-		_leftPaddleY.set(startPos);
-		_leftPaddle.setCursor(Cursor.OPEN_HAND);
-		_leftPaddle.translateYProperty().bind(_leftPaddleY);
-		_leftPaddle.setOnMousePressed(mouseDragHandler); 
-		_leftPaddle.setOnMouseDragged(mouseDragHandler); 
-		_leftPaddle.setOnMouseReleased(mouseDragHandler);
-		this.getChildren().add(_leftPaddle);
-
-		_rightPaddle = new Rectangle(paddleWidth,_paddleSize, Color.WHITE);
-		_rightPaddle.setTranslateX(right);
-		_rightPaddleY.set(startPos);
-		_rightPaddle.setCursor(Cursor.OPEN_HAND);
-		_rightPaddle.translateYProperty().bind(_rightPaddleY);
-		_rightPaddle.setOnMousePressed(mouseDragHandler);
-		_rightPaddle.setOnMouseDragged(mouseDragHandler);
-		_rightPaddle.setOnMouseReleased(mouseDragHandler);
-		this.getChildren().add(_rightPaddle);
-
-		_paddleAnimation = new Timeline();
-		_paddleAnimation.setCycleCount(Timeline.INDEFINITE);
-		KeyFrame movePaddle = 
-				new KeyFrame(Duration.seconds(1/_paddleSpeed), e -> { movePaddles();	});
-		_paddleAnimation.getKeyFrames().add(movePaddle);
-		_paddleAnimation.play();
+	/**
+	 * @return which paddle at the given position of the pane may be dragged - only the own paddle 
+	 * 			in a network game and none in a replay or spectator view
+	 */
+	private int draggablePaddleAt(double x, double y) {
+		if (_replay != null || isRemote()) return DRAG_NONE;
+		final int paddle = paddleAt(x, y);
+		// the right paddle is the client's - the client predicts it with its own inputs
+		return _netHost != null && paddle == DRAG_RIGHT ? DRAG_NONE : paddle;
 	}
 
 	/**
-	 * Called by the Timeline animation event to move the paddles.
+	 * @return which paddle is at the given position of the pane
 	 */
-	private void movePaddles() {
-		if (leftPaddleUp 
-				&& _leftPaddleY.getValue() > this.getBoundsInLocal().getMinY()) {
-			_leftPaddleY.setValue(_leftPaddleY.getValue() - 2);
-		}
-		if (leftPaddleDown  
-				&& _leftPaddleY.getValue() + _paddleSize < this.getBoundsInLocal().getMaxY()) {
-			_leftPaddleY.setValue(_leftPaddleY.getValue() + 2);
-		}
-		if (rightPaddleUp
-				&& _rightPaddleY.getValue() > this.getBoundsInLocal().getMinY()) {
-			_rightPaddleY.setValue(_rightPaddleY.getValue() - 2);
+	private int paddleAt(double x, double y) {
+		if (x >= _engine.getLeftPaddleX() && x <= _engine.getLeftPaddleX() + PongEngine.PADDLE_WIDTH
+				&& y >= _engine.getLeftPaddleY() && y <= _engine.getLeftPaddleY() + _engine.getPaddleSize()) {
+			return DRAG_LEFT;
 		}
-		if (rightPaddleDown
-				&& _rightPaddleY.getValue() + _paddleSize < this.getBoundsInLocal().getMaxY()) {
-			_rightPaddleY.setValue(_rightPaddleY.getValue() + 2);
+		if (x >= _engine.getRightPaddleX() && x <= _engine.getRightPaddleX() + PongEngine.PADDLE_WIDTH
+				&& y >= _engine.getRightPaddleY() && y <= _engine.getRightPaddleY() + _engine.getPaddleSize()) {
+			return DRAG_RIGHT;
 		}
+		return DRAG_NONE;
 	}
 
 	/**
-	 * Adds a ball to the screen. Not visible when game not running. 
+	 * Called by the game loop for every time step. Paddles always move, what happens
+	 * to the ball depends on the state of the game.
 	 */
-	private void addBall() {
-		_ball = new Circle(BALL_SIZE,  Color.WHITE);
-		_ballCenterX.setValue(this.getWidth()/2);
-		_ballCenterY.setValue(this.getHeight()/2);
-		_ball.centerXProperty().bind(_ballCenterX);
-		_ball.centerYProperty().bind(_ballCenterY);
-		this.getChildren().add(_ball);
-
-		_ballAnimation = new Timeline();
-		_ballAnimation.setCycleCount(Timeline.INDEFINITE);
-		KeyFrame moveBall = 
-				new KeyFrame(Duration.seconds(1/_ballSpeed), e -> {	moveBall();	});
-		_ballAnimation.getKeyFrames().add(moveBall);
-		_ball.setVisible(false); 
+	private void tick() {
+		// all input events until the end of this tick
+		final int sampled = _input.sample(_engine, _gameLoop.getTickTime());
+
+		if (_replay != null) {
+			final int events = _replay.step(_engine);
+			if (events == MatchReplay.END_OF_LOG) {
+				if (!_replay.verify(_engine)) Pong.minorError("Replay does not match the recorded match");
+				stopGame();
+			}
+			if (_showHud.get()) _hud.tick();
+			return;
+		}
+
+		if (_watch != null) {
+			watchTick();
+			return;
+		}
+		if (_netHost != null || _netClient != null) {
+			netTick(sampled);
+			if (_showHud.get()) _hud.tick();
+			return;
+		}
+
+		int inputs = sampled;
+		// computer players replace the keys of their paddle
+		if (_leftAI != null) {
+			inputs = (inputs & ~LEFT_INPUTS) | _leftAI.move(_engine);
+		}
+		if (_rightAI != null) {
+			inputs = (inputs & ~RIGHT_INPUTS) | _rightAI.move(_engine);
+		}
+
+		_engine.step(inputs);
+		if (_showHud.get()) _hud.tick();
 	}
 
 	/**
-	 * Called by the Timeline animation event to move the ball.
+	 * Ticks a network game. The local player plays the left paddle on the host and the right
+	 * paddle on the client with either set of keys or the computer player of that side.<br>
+	 * Only whole ticks are sent over the network - a key held for part of a tick counts as held.
+	 * @param sampled inputs of the keys
 	 */
-	private void moveBall() {
-		_ballCenterX.setValue(_ballCenterX.getValue() + _speedX);
-		_ballCenterY.setValue(_ballCenterY.getValue() + _speedY);
-		checkCollision();
+	private void netTick(int sampled) {
+		final boolean up = (sampled & (PongEngine.INPUT_LEFT_UP | PongEngine.INPUT_RIGHT_UP)) != 0;
+		final boolean down = (sampled & (PongEngine.INPUT_LEFT_DOWN | PongEngine.INPUT_RIGHT_DOWN)) != 0;
+		if (_netHost != null) {
+			_netHost.poll();
+			int inputs = _leftAI != null ? _leftAI.move(_engine) & NetProtocol.HOST_INPUTS 
+					: (up ? PongEngine.INPUT_LEFT_UP : 0) | (down ? PongEngine.INPUT_LEFT_DOWN : 0);
+			inputs |= _netHost.nextClientInputs();
+			_engine.step(inputs);
+			_netHost.sendSnapshot(inputs);
+		} else {
+			final int inputs = _rightAI != null ? _rightAI.move(_engine) & NetProtocol.CLIENT_INPUTS
+					: (up ? PongEngine.INPUT_RIGHT_UP : 0) | (down ? PongEngine.INPUT_RIGHT_DOWN : 0);
+			_netClient.tick(inputs);
+		}
 	}
 
 	/**
-	 * Checks if the ball has hit a wall, a paddle or has left through left or right wall.<br>
-	 * If left through left or right wall we have a goal and the score is increased and the ball resetted on the
-	 * scorer's side.   
+	 * Shows the state of a watched game.
 	 */
-	private void checkCollision() {
-		double xMin = _ball.getBoundsInParent().getMinX();
-		double yMin = _ball.getBoundsInParent().getMinY();
-		double xMax = _ball.getBoundsInParent().getMaxX();
-		double yMax = _ball.getBoundsInParent().getMaxY();
-
-		// hit left or right wall
-		if (xMax < 0 || xMin > this.getWidth()) {
-			_sounds.playClip(Clips.GOAL);
-			_ballSpeed *= INITIAL_BALL_SPEED;
-			_paddleSpeed *= INITIAL_PADDLE_SPEED;
-			_ballAnimation.setRate(1.0);
-			_paddleAnimation.setRate(1.0);
-			_speedX *= -1;
-			goal(xMin < 0 ? _playerRight : _playerLeft);
+	private void watchTick() {
+		try {
+			if (_watch.read() < 0) {
+				Pong.minorError("Spectator server closed the connection");
+				_watch.close();
+				_watch = null;
+				return;
+			}
+		} catch (IOException e) {
+			Pong.criticalError("Watching failed: "+e.getMessage());
+			_watch.close();
+			_watch = null;
+			return;
 		}
-
-		// hit top or bottom wall
-		if (yMin < 0 || yMax > this.getHeight()) {
-			_sounds.playClip(Clips.WALL);
-			_speedY *= -1;
+		if (_watch.isConnected() && (_watch.getWidth() != (int) Math.round(_engine.getWidth()) 
+				|| _watch.getHeight() != (int) Math.round(_engine.getHeight()))) {
+			Pong.criticalError("Watched game is played on a different board: "+_watch.getWidth()+"x"+_watch.getHeight());
+			_watch.close();
+			_watch = null;
+			return;
 		}
-
-		// hit on a paddle - left
-		if (_speedX < 0 && _ball.intersects(_leftPaddle.getBoundsInParent())) {
-			_sounds.playClip(Clips.LEFT);
-			_ballSpeed *= ACCELARATION;
-			_paddleSpeed *= ACCELARATION;
-			_ballAnimation.setRate(_ballAnimation.getRate()*ACCELARATION);
-			_paddleAnimation.setRate(_paddleAnimation.getRate()*ACCELARATION);
-			// new direction
-			
-			if (_anglePaddle.get()) {
-				DoubleProperty paddle = _leftPaddleY;
-				newVector(paddle);
-			} else {
-				// just changed direction - angle is always constant
-				_speedX *= -1;
-			}
-		// hit on a paddle - right
-		} else if (_speedX > 0 && _ball.intersects(_rightPaddle.getBoundsInParent())) {
-			_sounds.playClip(Clips.RIGHT);
-			_ballSpeed *= ACCELARATION;
-			_paddleSpeed *= ACCELARATION;
-			_ballAnimation.setRate(_ballAnimation.getRate()*ACCELARATION);
-			_paddleAnimation.setRate(_paddleAnimation.getRate()*ACCELARATION);
-			// new direction
-			if (_anglePaddle.get()) {
-				DoubleProperty paddle = _rightPaddleY;
-				newVector(paddle);
-			} else {
-				// just changed direction - angle is always constant
-				_speedX *= -1;
-			}
-
-		} 
-
+		_watch.show(_engine);
+		if (_showHud.get()) _hud.tick();
 	}
 
 	/**
-	 * @param paddle
+	 * @return true if the game is controlled by a host or watched
 	 */
-	public void newVector(DoubleProperty paddle) {
-		
-		System.out.println("Old SpeedY: "+_speedY);
-		System.out.println("Old SpeedX: "+_speedX);
-		
-		// calculate where the ball hit the paddle
-		// center = 0.0, top=-1-0, bottom=+1.0
-		double hitPos = (_ballCenterY.doubleValue() - paddle.doubleValue()) / _paddleSize;
-		hitPos = (hitPos-0.5) * 2 * Math.signum(_speedY);
-		System.out.println("HitPos: "+hitPos);
-
-		/*
-		 * This leads to either convergence to zero or convergence to bigger angles depending on 
-		 * the influence of the hitPos. 
-		 */
-		
-		// determine new vector (angle and speed)
-		double speed = Math.sqrt(_speedX*_speedX+_speedY*_speedY); // Pythagoras c=speed
-		System.out.println("Old Speed: "+speed);
-		double angle = Math.atan(_speedY/Math.abs(_speedX)); // current angle in RAD
-		System.out.println(String.format("Old Angle: %.2f ",Math.toDegrees(angle)));
-		double newAngle = angle * (1+(hitPos)); // influence of the hit position
-		System.out.println(String.format("New Angle: %.2f",Math.toDegrees(newAngle)));
-		
-		// adapt speeds for constant total speed
-		_speedY = speed * Math.sin(newAngle);
-		System.out.println("New SpeedY: "+_speedY);
-		_speedX = Math.signum(_speedX) * speed * Math.cos(newAngle);
-		_speedX *= -1; // turn direction
-		System.out.println("New SpeedX: "+_speedX);
-		System.out.println();
-		//pauseGame();
+	private boolean isRemote() {
+		return _netClient != null || _watch != null;
 	}
 
 	/**
-	 * Increases score for the player who scored and resets the ball to the scorer's side. 
-	 * @param playerScored
+	 * Plays the sound of an event. Called by the sound handler of the event bus.
+	 * @param event
+	 * @param endOfBatch
 	 */
-	private void goal(Player playerScored) {
-		// hide ball
-		_ballAnimation.pause();
-		_ball.setVisible(false);
-
-		// start from either side of the board
-		if (playerScored.equals(_playerLeft)) {
-			_ballCenterX.setValue(0.0+_ball.getBoundsInParent().getWidth());	
-			_speedX = BALL_MOVE_INCREMENTS;
-			_playerLeft._points++;
-			_leftPlayerPoints.setValue(String.valueOf(_playerLeft._points));
-		} else {
-			_ballCenterX.setValue(this.getWidth()-_ball.getBoundsInParent().getWidth());
-			_speedX = -BALL_MOVE_INCREMENTS;
-			_playerRight._points++;
-			_rightPlayerPoints.setValue(String.valueOf(_playerRight._points));
+	private void playSound(GameEvent event, boolean endOfBatch) {
+		final Sounds sounds = _sounds;
+		if (sounds == null) return;
+		// stereo position of the ball
+		final double pan = event.getX() / _engine.getWidth() * 2 - 1;
+		switch (event.getType()) {
+		case GameEvent.GOAL: 		sounds.playClip(Clips.GOAL, 0.0, event.getSpeed(), event.getPublishTime()); break;
+		case GameEvent.WALL_HIT: 	sounds.playClip(Clips.WALL, pan, event.getSpeed(), event.getPublishTime()); break;
+		case GameEvent.PADDLE_HIT: 	sounds.playClip(event.isLeft() ? Clips.LEFT : Clips.RIGHT, pan, event.getSpeed(), 
+				event.getPublishTime()); break;
+		default:
 		}
-		// random y
-		_ballCenterY.setValue(Math.random() * this.getHeight());
-		// random direction
-		_speedY = BALL_MOVE_INCREMENTS * (Math.random() < 0.5 ? 1 : -1);
-
-		// short break
-		try { Thread.sleep(500);
-		} catch (InterruptedException e) {}
-		_ball.setVisible(true);
-		_ballAnimation.play();
 	}
 
+	/**
+	 * Draws the state of the engine interpolated between the last two ticks with the
+	 * current renderer.
+	 * @param alpha fraction of a time step elapsed since the last tick
+	 */
+	private void render(double alpha) {
+		// the next pulse starts after the previous frame has been painted
+		if (_framesUntilPainted > 0 && --_framesUntilPainted == 0) firstFrame();
+		_renderer.render(_engine, alpha);
+		if (_showHud.get()) _hud.frame(System.nanoTime());
+	}
 
+	/**
+	 * Reports the startup time and loads everything not needed for the first frame in the
+	 * background: the match history with its ratings, the event handlers and the sounds. 
+	 * The game is playable until then - without sound and without being recorded in the history.
+	 */
+	private void firstFrame() {
+		final long firstFrame = System.nanoTime();
+		final Thread loader = new Thread(() -> {
+			Pong.reportStartup("First frame", firstFrame);
+			// keep all matches if turned on with -Dpong.history=<folder>
+			final MatchHistory history = MatchHistory.fromSystemProperty();
+			if (history != null) {
+				final HistoryRecorder recorder = 
+						new HistoryRecorder(history, Ratings.rebuild(history, Runtime.getRuntime().availableProcessors()));
+				_eventBus.addHandler("EventHistory", recorder);
+				Platform.runLater(() -> _history = recorder);
+				Pong.reportStartup("Match history loaded", System.nanoTime());
+			}
+			_eventBus.start();
+			final Sounds sounds = new Sounds();
+			// turned on by the options
+			sounds.soundOff();
+			Pong.reportStartup("Sounds loaded", System.nanoTime());
+			Platform.runLater(() -> {
+				_sounds = sounds;
+				updateOptions();
+				if (Boolean.getBoolean(Pong.EXIT_AFTER_STARTUP_PROPERTY)) Pong.exit();
+			});
+		}, "StartupLoader");
+		loader.setDaemon(true);
+		loader.start();
+	}
 
-
-}
\ No newline at end of file
+}
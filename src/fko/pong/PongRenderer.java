@@ -0,0 +1,107 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+
+/**
+ * Base class for the different ways to draw the state of a <code>PongEngine</code> on a 
+ * <code>PongPane</code>.<br>
+ * A renderer is attached to the pane, called once per pulse with the engine and the
+ * interpolation factor and detached again when the pane switches to another renderer.
+ * @author Frank Kopp
+ */
+public abstract class PongRenderer {
+
+	// layout of the scores
+	protected static final Font SCORE_FONT = Font.font("OCR A Std", FontWeight.BOLD, FontPosture.REGULAR, 40.0);
+	protected static final int SCORE_OFFSET_FROM_MIDDLE = 150;
+	protected static final int SCORE_LOCATION_Y = 50;
+
+	/**
+	 * Adds everything this renderer needs to the pane.
+	 * @param pane
+	 * @param engine
+	 */
+	public abstract void attach(Pane pane, PongEngine engine);
+
+	/**
+	 * Removes everything this renderer has added to the pane.
+	 * @param pane
+	 */
+	public abstract void detach(Pane pane);
+
+	/**
+	 * Draws the state of the engine interpolated between its last two ticks.
+	 * @param engine
+	 * @param alpha fraction of a time step elapsed since the last tick
+	 */
+	public abstract void render(PongEngine engine, double alpha);
+
+	/**
+	 * @return name of the renderer for the options text 
+	 */
+	public abstract String getName();
+
+	/**
+	 * @return the x position of the ball interpolated between the last two ticks
+	 */
+	protected static double ballCenterX(PongEngine engine, double alpha) {
+		return lerp(engine.getPrevBallCenterX(), engine.getBallCenterX(), ballAlpha(engine, alpha));
+	}
+
+	/**
+	 * @return the y position of the ball interpolated between the last two ticks
+	 */
+	protected static double ballCenterY(PongEngine engine, double alpha) {
+		return lerp(engine.getPrevBallCenterY(), engine.getBallCenterY(), ballAlpha(engine, alpha));
+	}
+
+	/**
+	 * @return the top of the left paddle interpolated between the last two ticks
+	 */
+	protected static double leftPaddleY(PongEngine engine, double alpha) {
+		return lerp(engine.getPrevLeftPaddleY(), engine.getLeftPaddleY(), alpha);
+	}
+
+	/**
+	 * @return the top of the right paddle interpolated between the last two ticks
+	 */
+	protected static double rightPaddleY(PongEngine engine, double alpha) {
+		return lerp(engine.getPrevRightPaddleY(), engine.getRightPaddleY(), alpha);
+	}
+
+	// a resting ball is drawn where it is
+	private static double ballAlpha(PongEngine engine, double alpha) {
+		return engine.isBallMoving() ? alpha : 1.0;
+	}
+
+	private static double lerp(double from, double to, double alpha) {
+		return from + (to - from) * alpha;
+	}
+
+}
@@ -0,0 +1,238 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * An AI which predicts where the ball will cross the line of its paddle.<br>
+ * The wall reflections are folded analytically - the straight path of the ball is mirrored 
+ * back into the board - so the prediction costs the same however often the ball bounces.
+ * It is only calculated when the velocity of the ball changed (a wall or paddle hit or a serve)
+ * and cached otherwise. Every other tick only compares the paddle with the cached target.<br>
+ * Difficulty knobs:
+ * <ul>
+ * <li>reaction delay - ticks after a bounce before the AI reacts to the new prediction</li>
+ * <li>error - the prediction is off by a random amount up to this many pixels</li>
+ * <li>max speed - fraction of the paddle speed the AI uses (0.0 - 1.0)</li>
+ * </ul>
+ * The randomness comes from a seeded generator kept in a single long so the AI never allocates. 
+ * It does not take paddle hits into account which change the ball's angle - neither its own
+ * nor the opponent's.
+ * @author Frank Kopp
+ */
+public class PredictingAI implements PongAI {
+
+	// presets
+	public static final String EASY = "easy";
+	public static final String NORMAL = "normal";
+	public static final String EXPERT = "expert";
+	public static final String PERFECT = "perfect";
+
+	// system property for the difficulty of the AI in the game
+	public static final String AI_PROPERTY = "pong.ai";
+
+	private final boolean _left;
+	private final int _inputUp;
+	private final int _inputDown;
+
+	// difficulty
+	private final int _reactionTicks;
+	private final double _error;
+	private final double _maxSpeed;
+
+	// xorshift state for the error
+	private long _random;
+
+	// cached prediction - invalid after every change of the ball's velocity
+	private double _cachedSpeedX = Double.NaN;
+	private double _cachedSpeedY = Double.NaN;
+	private double _target;
+	// the current prediction is for a ball coming towards the paddle
+	private boolean _incoming = false;
+	// ticks until the AI reacts on the current prediction
+	private int _reactionCountdown = 0;
+	// target before the last prediction - followed during the reaction delay
+	private double _previousTarget;
+
+	// accumulated fraction of paddle movement for max speed < 1
+	private double _speedCredit = 0;
+
+	// where the paddle's center aims relative to the predicted ball - changes the angle of the return
+	private double _aimOffset = 0;
+
+	// number of predictions for testing the cache
+	private long _predictions = 0;
+
+	/**
+	 * @param left true for the left paddle
+	 * @param reactionTicks ticks after a bounce before reacting
+	 * @param error maximum error of the prediction in pixels
+	 * @param maxSpeed fraction of the paddle speed used (0.0 - 1.0]
+	 * @param seed for the error
+	 */
+	public PredictingAI(boolean left, int reactionTicks, double error, double maxSpeed, long seed) {
+		if (reactionTicks < 0 || error < 0 || maxSpeed <= 0 || maxSpeed > 1) {
+			throw new IllegalArgumentException("Invalid AI difficulty: "+reactionTicks+","+error+","+maxSpeed);
+		}
+		_left = left;
+		_inputUp = left ? PongEngine.INPUT_LEFT_UP : PongEngine.INPUT_RIGHT_UP;
+		_inputDown = left ? PongEngine.INPUT_LEFT_DOWN : PongEngine.INPUT_RIGHT_DOWN;
+		_reactionTicks = reactionTicks;
+		_error = error;
+		_maxSpeed = maxSpeed;
+		reset(seed);
+	}
+
+	/**
+	 * Forgets the current prediction - e.g. to reuse the AI for a new game.
+	 * @param seed for the error
+	 */
+	public void reset(long seed) {
+		_random = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+		_cachedSpeedX = _cachedSpeedY = Double.NaN;
+		_target = _previousTarget = Double.NaN;
+		_incoming = false;
+		_reactionCountdown = 0;
+		_speedCredit = 0;
+	}
+
+	/**
+	 * @param offset from the predicted ball to the center of the paddle in pixels
+	 */
+	public void setAimOffset(double offset) {
+		if (_incoming) _target += offset - _aimOffset;
+		_aimOffset = offset;
+	}
+
+	/**
+	 * @param name of a preset
+	 * @param left true for the left paddle
+	 * @param seed for the error
+	 * @return the AI or null if the preset is unknown
+	 */
+	public static PredictingAI create(String name, boolean left, long seed) {
+		switch (name) {
+		case EASY: 		return new PredictingAI(left, 36, 45, 0.6, seed);
+		case NORMAL: 	return new PredictingAI(left, 24, 30, 0.75, seed);
+		case EXPERT: 	return new PredictingAI(left, 12, 18, 0.9, seed);
+		case PERFECT: 	return new PredictingAI(left, 0, 0, 1.0, seed);
+		default: 		return null;
+		}
+	}
+
+	/**
+	 * @see fko.pong.PongAI#move(fko.pong.PongEngine)
+	 */
+	@Override
+	public int move(PongEngine engine) {
+		final double speedX = engine.getSpeedX();
+		final double speedY = engine.getSpeedY();
+		final double height = engine.getHeight();
+
+		// new prediction only if the ball changed its direction
+		if (!engine.isBallMoving()) {
+			_cachedSpeedX = Double.NaN;
+			_incoming = false;
+			_target = _previousTarget = height / 2;
+		} else if (speedX != _cachedSpeedX || speedY != _cachedSpeedY) {
+			_cachedSpeedX = speedX;
+			_cachedSpeedY = speedY;
+			_previousTarget = Double.isNaN(_target) ? height / 2 : _target;
+			_reactionCountdown = _reactionTicks;
+			_predictions++;
+			_incoming = _left ? speedX < 0 : speedX > 0;
+			if (_incoming) {
+				final double lineX = _left 
+						? engine.getLeftPaddleX() + PongEngine.PADDLE_WIDTH + PongEngine.BALL_SIZE
+						: engine.getRightPaddleX() - PongEngine.BALL_SIZE;
+				_target = intercept(engine.getBallCenterX(), engine.getBallCenterY(), speedX, speedY, lineX, height);
+				if (_error > 0) _target += (nextRandom() * 2 - 1) * _error;
+				_target += _aimOffset;
+			} else {
+				// wait in the middle
+				_target = height / 2;
+			}
+		}
+
+		final double target;
+		if (_reactionCountdown > 0) {
+			_reactionCountdown--;
+			target = _previousTarget;
+		} else {
+			target = _target;
+		}
+
+		// limit the speed by skipping ticks
+		_speedCredit += _maxSpeed;
+		if (_speedCredit < 1) return PongEngine.INPUT_NONE;
+		_speedCredit -= 1;
+
+		// move unless the paddle would overshoot
+		final double center = (_left ? engine.getLeftPaddleY() : engine.getRightPaddleY()) + engine.getPaddleSize() / 2;
+		final double step = PongEngine.INITIAL_PADDLE_SPEED * engine.getSpeedFactor() * engine.getTimeStep();
+		if (target < center - step / 2) return _inputUp;
+		if (target > center + step / 2) return _inputDown;
+		return PongEngine.INPUT_NONE;
+	}
+
+	/**
+	 * Calculates where the ball crosses a vertical line by folding the wall reflections.
+	 * @param x center of the ball
+	 * @param y center of the ball
+	 * @param speedX must not be 0
+	 * @param speedY
+	 * @param lineX the line
+	 * @param height of the board
+	 * @return y of the ball's center when it crosses the line
+	 */
+	public static double intercept(double x, double y, double speedX, double speedY, double lineX, double height) {
+		final double time = (lineX - x) / speedX;
+		// the ball's center moves between BALL_SIZE and height - BALL_SIZE 
+		final double range = height - 2 * PongEngine.BALL_SIZE;
+		final double unfolded = y - PongEngine.BALL_SIZE + speedY * time;
+		double folded = unfolded % (2 * range);
+		if (folded < 0) folded += 2 * range;
+		if (folded > range) folded = 2 * range - folded;
+		return PongEngine.BALL_SIZE + folded;
+	}
+
+	/**
+	 * @return a random number 0.0 - 1.0 (xorshift64)
+	 */
+	private double nextRandom() {
+		long x = _random;
+		x ^= x << 13;
+		x ^= x >>> 7;
+		x ^= x << 17;
+		_random = x;
+		return (x >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return number of predictions calculated so far
+	 */
+	public long getPredictions() {
+		return _predictions;
+	}
+
+}
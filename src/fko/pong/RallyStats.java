@@ -0,0 +1,96 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+/**
+ * Counts the paddle hits of the rallies of a game from the events of the <code>GameEventBus</code>.
+ * <br>
+ * Runs on the thread of its handler, the results can be read from any thread.
+ * @author Frank Kopp
+ */
+public class RallyStats implements GameEventHandler {
+
+	// only written by the handler thread
+	private int _hits = 0;
+	private double _hitPositions = 0;
+	private int _centeredHits = 0;
+
+	private volatile int _rallies = 0;
+	private volatile int _lastRally = 0;
+	private volatile int _longestRally = 0;
+	private volatile long _totalHits = 0;
+	private volatile double _meanHitPosition = 0;
+
+	@Override
+	public void onEvent(GameEvent event, boolean endOfBatch) {
+		switch (event.getType()) {
+		case GameEvent.SERVE:
+			_hits = 0;
+			break;
+		case GameEvent.PADDLE_HIT:
+			_hits++;
+			_totalHits++;
+			// edge hits have no position
+			if (!Double.isNaN(event.getHitPosition())) {
+				_hitPositions += Math.abs(event.getHitPosition());
+				_centeredHits++;
+				_meanHitPosition = _hitPositions / _centeredHits;
+			}
+			break;
+		case GameEvent.GOAL:
+			_rallies++;
+			_lastRally = _hits;
+			if (_hits > _longestRally) _longestRally = _hits;
+			_hits = 0;
+			break;
+		default:
+		}
+	}
+
+	/**
+	 * @return number of finished rallies
+	 */
+	public int getRallies() { return _rallies; }
+
+	/**
+	 * @return paddle hits of the last finished rally
+	 */
+	public int getLastRally() { return _lastRally; }
+
+	/**
+	 * @return paddle hits of the longest rally
+	 */
+	public int getLongestRally() { return _longestRally; }
+
+	/**
+	 * @return paddle hits of all rallies
+	 */
+	public long getTotalHits() { return _totalHits; }
+
+	/**
+	 * @return mean distance of the hits from the paddle center - 0.0 center to 1.0 edge
+	 */
+	public double getMeanHitPosition() { return _meanHitPosition; }
+
+}
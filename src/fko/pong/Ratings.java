@@ -0,0 +1,311 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Glicko ratings of all players which are updated after every match, with a 
+ * <code>Leaderboard</code> for the rank of a player and the best players.<br>
+ * Every match is a rating period of its own: both players are rated against the rating and
+ * deviation the other had before the match. The deviation shrinks with every match down to 
+ * a minimum, so ratings keep following the players like an Elo rating with a small K.<br>
+ * The ratings only depend on the order of the matches and can always be rebuilt from the 
+ * <code>MatchHistory</code> with <code>rebuild()</code>.<br>
+ * Thread safe.
+ * @author Frank Kopp
+ */
+public class Ratings {
+
+	public static final double INITIAL_RATING = 1500.0;
+	public static final double INITIAL_DEVIATION = 350.0;
+	public static final double MIN_DEVIATION = 50.0;
+
+	private static final double Q = Math.log(10) / 400;
+
+	// matches decoded by one task of the rebuild
+	private static final int REBUILD_BLOCK = 1 << 16;
+
+	private final Map<String, Integer> _ids = new HashMap<>();
+	private String[] _names = new String[16];
+	private double[] _rating = new double[16];
+	private double[] _deviation = new double[16];
+	private int[] _matches = new int[16];
+	private int _players = 0;
+
+	private final Leaderboard _leaderboard = new Leaderboard();
+
+	/**
+	 * Rates a match.
+	 * @param left name of the left player
+	 * @param right name of the right player
+	 * @param leftPoints
+	 * @param rightPoints
+	 */
+	public synchronized void record(String left, String right, int leftPoints, int rightPoints) {
+		record(playerId(left), playerId(right), leftPoints, rightPoints);
+	}
+
+	/**
+	 * Rates a match.
+	 * @param left id of the left player
+	 * @param right id of the right player
+	 * @param leftPoints
+	 * @param rightPoints
+	 */
+	private void record(int left, int right, int leftPoints, int rightPoints) {
+		if (left == right) return;
+		final double score = leftPoints > rightPoints ? 1.0 : leftPoints < rightPoints ? 0.0 : 0.5;
+		final double leftRating = _rating[left];
+		final double leftDeviation = _deviation[left];
+		rate(left, _rating[right], _deviation[right], score);
+		rate(right, leftRating, leftDeviation, 1.0 - score);
+		_matches[left]++;
+		_matches[right]++;
+		_leaderboard.update(left, _rating[left]);
+		_leaderboard.update(right, _rating[right]);
+	}
+
+	/**
+	 * Updates the rating and deviation of a player after one game.
+	 * @param id
+	 * @param opponentRating
+	 * @param opponentDeviation
+	 * @param score 1.0 win, 0.5 draw, 0.0 loss
+	 */
+	private void rate(int id, double opponentRating, double opponentDeviation, double score) {
+		final double g = 1 / Math.sqrt(1 + 3 * Q * Q * opponentDeviation * opponentDeviation / (Math.PI * Math.PI));
+		final double expected = 1 / (1 + Math.pow(10, -g * (_rating[id] - opponentRating) / 400));
+		final double dSquaredInverse = Q * Q * g * g * expected * (1 - expected);
+		final double variance = 1 / (1 / (_deviation[id] * _deviation[id]) + dSquaredInverse);
+		_rating[id] += Q * variance * g * (score - expected);
+		_deviation[id] = Math.max(MIN_DEVIATION, Math.sqrt(variance));
+	}
+
+	/**
+	 * @param name
+	 * @return id of the player - added with the initial rating if unknown
+	 */
+	private int playerId(String name) {
+		final Integer id = _ids.get(name);
+		if (id != null) return id;
+		if (_players == _names.length) {
+			final int capacity = _players * 2;
+			_names = Arrays.copyOf(_names, capacity);
+			_rating = Arrays.copyOf(_rating, capacity);
+			_deviation = Arrays.copyOf(_deviation, capacity);
+			_matches = Arrays.copyOf(_matches, capacity);
+		}
+		final int newId = _players++;
+		_names[newId] = name;
+		_rating[newId] = INITIAL_RATING;
+		_deviation[newId] = INITIAL_DEVIATION;
+		_ids.put(name, newId);
+		return newId;
+	}
+
+	/**
+	 * @param name
+	 * @return rating of the player or the initial rating if unknown
+	 */
+	public synchronized double getRating(String name) {
+		final Integer id = _ids.get(name);
+		return id == null ? INITIAL_RATING : _rating[id];
+	}
+
+	/**
+	 * @param name
+	 * @return rating deviation of the player
+	 */
+	public synchronized double getDeviation(String name) {
+		final Integer id = _ids.get(name);
+		return id == null ? INITIAL_DEVIATION : _deviation[id];
+	}
+
+	/**
+	 * @param name
+	 * @return rated matches of the player
+	 */
+	public synchronized int getMatches(String name) {
+		final Integer id = _ids.get(name);
+		return id == null ? 0 : _matches[id];
+	}
+
+	/**
+	 * @param name
+	 * @return rank of the player starting with 1 or 0 if unrated
+	 */
+	public synchronized int getRank(String name) {
+		final Integer id = _ids.get(name);
+		return id == null ? 0 : _leaderboard.getRank(id);
+	}
+
+	/**
+	 * @param k
+	 * @return names of the best k players
+	 */
+	public synchronized String[] getTop(int k) {
+		final int[] ids = _leaderboard.getTop(k);
+		final String[] top = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) top[i] = _names[ids[i]];
+		return top;
+	}
+
+	/**
+	 * @return number of rated players
+	 */
+	public synchronized int getPlayerCount() {
+		return _leaderboard.size();
+	}
+
+	/**
+	 * Rebuilds the ratings from all matches of a history. Rating a match depends on all matches
+	 * before it, so the matches are rated in order by the calling thread while the threads read
+	 * and decode the following blocks of matches in parallel.
+	 * @param history
+	 * @param threads number of threads decoding the matches
+	 * @return the ratings after the last match of the history
+	 */
+	public static Ratings rebuild(MatchHistory history, int threads) {
+		final Ratings ratings = new Ratings();
+		// history ids to rating ids - the same players in the same order
+		final int players = history.getPlayerCount();
+		for (int id = 0; id < players; id++) ratings.playerId(history.getPlayerName(id));
+
+		final long matches = history.getMatchCount();
+		final ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			final Thread t = new Thread(r, "RatingsRebuild");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			// decode at most two blocks per thread ahead of the rating
+			final List<Future<int[]>> blocks = new ArrayList<>();
+			long next = 0;
+			int rated = 0;
+			while (rated < blocks.size() || next < matches) {
+				while (next < matches && blocks.size() - rated < 2 * threads) {
+					final long from = next;
+					final long to = Math.min(matches, from + REBUILD_BLOCK);
+					blocks.add(pool.submit(() -> decode(history, from, to)));
+					next = to;
+				}
+				final int[] block = blocks.get(rated).get();
+				blocks.set(rated++, null);
+				synchronized (ratings) {
+					for (int i = 0; i < block.length; i += 4) {
+						ratings.record(block[i], block[i + 1], block[i + 2], block[i + 3]);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Pong.criticalError("Ratings cannot be rebuilt: "+e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return ratings;
+	}
+
+	/**
+	 * @return left player, right player, left points and right points of the matches
+	 */
+	private static int[] decode(MatchHistory history, long from, long to) {
+		final int[] block = new int[(int) (to - from) * 4];
+		int i = 0;
+		for (long match = from; match < to; match++) {
+			block[i++] = history.getLeftPlayer(match);
+			block[i++] = history.getRightPlayer(match);
+			block[i++] = history.getLeftPoints(match);
+			block[i++] = history.getRightPoints(match);
+		}
+		return block;
+	}
+
+	/**
+	 * Rebuilds the ratings from a match history and shows the leaderboard.
+	 * @param args see usage
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) usage();
+		final Path folder = Paths.get(args[0]);
+		int top = 10;
+		String player = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int i = 1; i < args.length; i++) {
+				switch (args[i]) {
+				case "-top": 		top = Integer.parseInt(args[++i]); break;
+				case "-player": 	player = args[++i]; break;
+				case "-threads": 	threads = Integer.parseInt(args[++i]); break;
+				default: usage();
+				}
+			}
+		} catch (RuntimeException e) {
+			usage();
+		}
+		if (threads < 1) usage();
+
+		try (MatchHistory history = new MatchHistory(folder)) {
+			final long start = System.nanoTime();
+			final Ratings ratings = rebuild(history, threads);
+			System.out.printf("%d matches of %d players rated in %.2fs with %d threads%n", history.getMatchCount(),
+					ratings.getPlayerCount(), (System.nanoTime() - start) / 1e9, threads);
+			int rank = 1;
+			for (String name : ratings.getTop(top)) {
+				System.out.println(ratings.format(rank++, name));
+			}
+			if (player != null) {
+				System.out.println(ratings.getRank(player) == 0 ? "Unrated player: "+player
+						: ratings.format(ratings.getRank(player), player));
+			}
+		} catch (IOException e) {
+			Pong.criticalError("Match history "+folder+" cannot be opened: "+e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	private String format(int rank, String name) {
+		return String.format("%5d. %-31s %7.1f +-%5.1f %8d matches", rank, name, 
+				getRating(name), 2 * getDeviation(name), getMatches(name));
+	}
+
+	private static void usage() {
+		System.err.println("Usage: java fko.pong.Ratings <history folder> [-top <k>] [-player <name>] [-threads <n>]");
+		System.exit(1);
+	}
+
+}
@@ -0,0 +1,254 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * A small software mixer which plays all sounds through one <code>SourceDataLine</code>.<br>
+ * A dedicated audio thread sums all active voices into a short buffer and writes it to the line.
+ * The line buffer is only two mix buffers long which puts a hard upper bound on the latency.<br>
+ * There is a fixed number of voices. If all are busy the oldest voice is stolen.
+ * Every voice has its own gain and stereo pan.<br>
+ * Sounds are triggered through a lock free single producer queue - <code>trigger()</code> must
+ * always be called from the same thread (e.g. the JavaFX Application Thread). It does not allocate.
+ * @author Frank Kopp
+ */
+public class SoundMixer implements Runnable {
+
+	public static final float SAMPLE_RATE = 44100f;
+	public static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+
+	public static final int MAX_VOICES = 8;
+
+	// frames mixed per write to the line - 256 frames are ~5.8ms
+	private static final int BUFFER_FRAMES = 256;
+	private static final int BYTES_PER_FRAME = 4;
+
+	// size of the trigger queue - must be a power of 2
+	private static final int TRIGGER_QUEUE_SIZE = 32;
+	private static final int TRIGGER_QUEUE_MASK = TRIGGER_QUEUE_SIZE - 1;
+
+	// all playable sounds as mono samples at SAMPLE_RATE - indexed by sound id
+	private final short[][] _sounds;
+
+	// the voices - only accessed by the audio thread
+	private final short[][] _voiceData = new short[MAX_VOICES][];
+	private final int[] _voicePosition = new int[MAX_VOICES];
+	private final float[] _voiceGainLeft = new float[MAX_VOICES];
+	private final float[] _voiceGainRight = new float[MAX_VOICES];
+	private final long[] _voiceStarted = new long[MAX_VOICES];
+	private long _voiceCounter = 0;
+
+	// trigger queue - head is written by the producer only, tail by the audio thread only
+	private final int[] _triggerSound = new int[TRIGGER_QUEUE_SIZE];
+	private final float[] _triggerGain = new float[TRIGGER_QUEUE_SIZE];
+	private final float[] _triggerPan = new float[TRIGGER_QUEUE_SIZE];
+	private volatile long _triggerHead = 0;
+	private volatile long _triggerTail = 0;
+
+	// mix buffers
+	private final int[] _mixBuffer = new int[BUFFER_FRAMES * 2];
+	private final byte[] _outBuffer = new byte[BUFFER_FRAMES * BYTES_PER_FRAME];
+
+	private SourceDataLine _line;
+	private Thread _thread;
+	private volatile boolean _running = false;
+
+	/**
+	 * @param sounds mono samples at SAMPLE_RATE per sound id - see <code>toMixerSamples()</code>
+	 */
+	public SoundMixer(short[][] sounds) {
+		_sounds = sounds;
+	}
+
+	/**
+	 * Opens the line and starts the audio thread.
+	 * @throws LineUnavailableException
+	 */
+	public void start() throws LineUnavailableException {
+		if (_running) return;
+		_line = AudioSystem.getSourceDataLine(FORMAT);
+		_line.open(FORMAT, 2 * _outBuffer.length);
+		_line.start();
+		_running = true;
+		_thread = new Thread(this, "Pong Sound Mixer");
+		_thread.setDaemon(true);
+		_thread.setPriority(Thread.MAX_PRIORITY);
+		_thread.start();
+	}
+
+	/**
+	 * Stops the audio thread and closes the line.
+	 */
+	public void stop() {
+		if (!_running) return;
+		_running = false;
+		try {
+			_thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		_line.close();
+	}
+
+	/**
+	 * Triggers a sound. Must always be called from the same thread.
+	 * @param sound id of the sound
+	 * @param gain 0.0 - 1.0
+	 * @param pan -1.0 (left) to 1.0 (right)
+	 * @return false if the trigger queue is full and the sound was dropped
+	 */
+	public boolean trigger(int sound, float gain, float pan) {
+		final long head = _triggerHead;
+		if (head - _triggerTail >= TRIGGER_QUEUE_SIZE) return false;
+		final int i = (int) (head & TRIGGER_QUEUE_MASK);
+		_triggerSound[i] = sound;
+		_triggerGain[i] = gain;
+		_triggerPan[i] = pan;
+		// volatile write publishes the entry to the audio thread
+		_triggerHead = head + 1;
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while (_running) {
+			startTriggeredVoices();
+			mix();
+			// blocks until there is room in the line buffer - this paces the loop
+			_line.write(_outBuffer, 0, _outBuffer.length);
+		}
+		_line.drain();
+	}
+
+	/**
+	 * Starts a voice for all sounds triggered since the last mix.
+	 */
+	private void startTriggeredVoices() {
+		long tail = _triggerTail;
+		final long head = _triggerHead;
+		while (tail < head) {
+			final int i = (int) (tail & TRIGGER_QUEUE_MASK);
+			startVoice(_triggerSound[i], _triggerGain[i], _triggerPan[i]);
+			tail++;
+		}
+		_triggerTail = tail;
+	}
+
+	/**
+	 * Starts a sound on a free voice or steals the oldest one.
+	 */
+	private void startVoice(int sound, float gain, float pan) {
+		if (sound < 0 || sound >= _sounds.length || _sounds[sound] == null) return;
+		int voice = 0;
+		for (int v = 0; v < MAX_VOICES; v++) {
+			if (_voiceData[v] == null) {
+				voice = v;
+				break;
+			}
+			if (_voiceStarted[v] < _voiceStarted[voice]) voice = v;
+		}
+		// constant power pan law
+		final double angle = (Math.max(-1f, Math.min(1f, pan)) + 1) * Math.PI / 4;
+		_voiceData[voice] = _sounds[sound];
+		_voicePosition[voice] = 0;
+		_voiceGainLeft[voice] = (float) (gain * Math.cos(angle));
+		_voiceGainRight[voice] = (float) (gain * Math.sin(angle));
+		_voiceStarted[voice] = _voiceCounter++;
+	}
+
+	/**
+	 * Sums all active voices into the out buffer.
+	 */
+	private void mix() {
+		Arrays.fill(_mixBuffer, 0);
+		for (int v = 0; v < MAX_VOICES; v++) {
+			final short[] data = _voiceData[v];
+			if (data == null) continue;
+			final float gainLeft = _voiceGainLeft[v];
+			final float gainRight = _voiceGainRight[v];
+			int position = _voicePosition[v];
+			final int frames = Math.min(BUFFER_FRAMES, data.length - position);
+			for (int f = 0; f < frames; f++) {
+				final short sample = data[position++];
+				_mixBuffer[2 * f] += (int) (sample * gainLeft);
+				_mixBuffer[2 * f + 1] += (int) (sample * gainRight);
+			}
+			if (position >= data.length) {
+				_voiceData[v] = null;
+			} else {
+				_voicePosition[v] = position;
+			}
+		}
+		// clip and convert to 16 bit little endian
+		for (int i = 0, b = 0; i < _mixBuffer.length; i++) {
+			final int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, _mixBuffer[i]));
+			_outBuffer[b++] = (byte) sample;
+			_outBuffer[b++] = (byte) (sample >> 8);
+		}
+	}
+
+	/**
+	 * Converts 16 bit signed little endian PCM to mono samples at the mixer's sample rate.
+	 * @param pcm
+	 * @param format format of the pcm data - must be 16 bit signed little endian
+	 * @return mono samples at SAMPLE_RATE
+	 */
+	public static short[] toMixerSamples(byte[] pcm, AudioFormat format) {
+		final int channels = format.getChannels();
+		final int frames = pcm.length / (2 * channels);
+		// down mix to mono
+		final float[] mono = new float[frames];
+		for (int f = 0; f < frames; f++) {
+			int sum = 0;
+			for (int c = 0; c < channels; c++) {
+				final int i = 2 * (f * channels + c);
+				sum += (short) ((pcm[i] & 0xff) | (pcm[i + 1] << 8));
+			}
+			mono[f] = (float) sum / channels;
+		}
+		// linear resampling
+		final double step = format.getSampleRate() / SAMPLE_RATE;
+		final int length = (int) (frames / step);
+		final short[] samples = new short[length];
+		for (int i = 0; i < length; i++) {
+			final double position = i * step;
+			final int index = (int) position;
+			final double fraction = position - index;
+			final float next = index + 1 < frames ? mono[index + 1] : mono[index];
+			samples[i] = (short) Math.round(mono[index] + (next - mono[index]) * fraction);
+		}
+		return samples;
+	}
+
+}
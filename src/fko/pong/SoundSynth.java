@@ -0,0 +1,130 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import fko.pong.Sounds.Clips;
+
+/**
+ * Synthesizes the sound effects instead of loading them from files.<br>
+ * The tones are square waves like the ones of the original arcade game. Pitch and length
+ * depend on the speed of the ball: the speed factor of the engine is divided into a few pitch
+ * buckets and every clip is rendered once per bucket when the game starts - faster rallies
+ * sound higher and shorter without synthesizing anything while playing.<br>
+ * All tones are mono samples at the sample rate of the <code>SoundMixer</code>.
+ * @author Frank Kopp
+ */
+public final class SoundSynth {
+
+	// number of pitch buckets per clip
+	public static final int PITCH_BUCKETS = 8;
+
+	// speed factor per bucket - about 5 paddle hits with the default acceleration
+	private static final double BUCKET_SPEED_STEP = 1.25;
+	// pitch per bucket - two semitones
+	private static final double BUCKET_PITCH_STEP = Math.pow(2, 2 / 12.0);
+	// length per bucket
+	private static final double BUCKET_LENGTH_STEP = 0.9;
+
+	// amplitude of the square wave
+	private static final double AMPLITUDE = 0.3 * Short.MAX_VALUE;
+	// fade in and out to avoid clicks in seconds
+	private static final double ATTACK = 0.002;
+	private static final double RELEASE = 0.006;
+
+	// frequency in Hz and length in seconds of the slowest bucket - indexed by Clips.ordinal()
+	private static final double[] FREQUENCY = new double[Clips.values().length];
+	private static final double[] LENGTH = new double[Clips.values().length];
+	static {
+		tone(Clips.WALL, 	226.0, 0.016);
+		tone(Clips.LEFT, 	459.0, 0.032);
+		tone(Clips.RIGHT, 	386.0, 0.032);
+		tone(Clips.GOAL, 	490.0, 0.257);
+	}
+
+	private static void tone(Clips c, double frequency, double length) {
+		FREQUENCY[c.ordinal()] = frequency;
+		LENGTH[c.ordinal()] = length;
+	}
+
+	private SoundSynth() {}
+
+	/**
+	 * Renders all clips in all pitch buckets.
+	 * @return mono samples at <code>SoundMixer.SAMPLE_RATE</code> indexed by <code>soundId()</code>
+	 */
+	public static short[][] render() {
+		final short[][] sounds = new short[Clips.values().length * PITCH_BUCKETS][];
+		for (Clips c : Clips.values()) {
+			for (int bucket = 0; bucket < PITCH_BUCKETS; bucket++) {
+				sounds[c.ordinal() * PITCH_BUCKETS + bucket] = render(
+						FREQUENCY[c.ordinal()] * Math.pow(BUCKET_PITCH_STEP, bucket), 
+						LENGTH[c.ordinal()] * Math.pow(BUCKET_LENGTH_STEP, bucket));
+			}
+		}
+		return sounds;
+	}
+
+	/**
+	 * Renders one square wave tone with a linear fade in and out.
+	 * @param frequency in Hz
+	 * @param length in seconds
+	 * @return mono samples at <code>SoundMixer.SAMPLE_RATE</code>
+	 */
+	static short[] render(double frequency, double length) {
+		final double rate = SoundMixer.SAMPLE_RATE;
+		final int samples = (int) Math.round(length * rate);
+		final int attack = (int) (ATTACK * rate);
+		final int release = (int) (RELEASE * rate);
+		final double period = rate / frequency;
+		final short[] tone = new short[samples];
+		for (int i = 0; i < samples; i++) {
+			double envelope = 1.0;
+			if (i < attack) envelope = (double) i / attack;
+			if (samples - i < release) envelope = Math.min(envelope, (double) (samples - i) / release);
+			final double value = (i % period) < period / 2 ? AMPLITUDE : -AMPLITUDE;
+			tone[i] = (short) Math.round(value * envelope);
+		}
+		return tone;
+	}
+
+	/**
+	 * @param speedFactor of the ball - 1.0 at the serve
+	 * @return pitch bucket of the speed
+	 */
+	public static int bucket(double speedFactor) {
+		if (!(speedFactor > 1.0)) return 0;
+		final int bucket = (int) (Math.log(speedFactor) / Math.log(BUCKET_SPEED_STEP));
+		return Math.min(bucket, PITCH_BUCKETS - 1);
+	}
+
+	/**
+	 * @param c
+	 * @param speedFactor of the ball
+	 * @return id of the rendered sound in the array of <code>render()</code>
+	 */
+	public static int soundId(Clips c, double speedFactor) {
+		return c.ordinal() * PITCH_BUCKETS + bucket(speedFactor);
+	}
+
+}
@@ -23,29 +23,45 @@ SOFTWARE.
  */
 package fko.pong;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URL;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineEvent;
 import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
 
 /**
- * This is an example program that demonstrates how to play back an audio file
- * using the Clip in Java Sound API.
+ * Plays the sound effects of the game.<br>
+ * All clips are decoded to PCM once when this object is created and for every clip a
+ * small pool of already opened lines is kept. Playing a clip only rewinds and starts the
+ * next line of its pool - no file I/O, decoding, line acquisition or allocation when
+ * a sound is triggered.<br>
+ * In mixer mode (system property <code>pong.mixer=true</code>) all sounds are instead played
+ * by a <code>SoundMixer</code> on a single line which also supports stereo panning.<br>
+ * In synthesis mode (system property <code>pong.synth=true</code>) no files are loaded - the
+ * <code>SoundSynth</code> renders all clips in every pitch bucket at startup and they are played
+ * by the mixer with a pitch depending on the speed of the ball.
  * @author www.codejava.net
+ * @author Frank Kopp
  */
 public class Sounds {
 
 	// folder to all sound files
 	public static final String SOUND_FOLDER = "/sounds/";
 
+	// system property to turn on the mixer mode
+	public static final String MIXER_PROPERTY = "pong.mixer";
+
+	// system property to turn on the synthesized sounds
+	public static final String SYNTH_PROPERTY = "pong.synth";
+
+	// number of opened lines per clip - the same clip can overlap itself this many times
+	private static final int LINES_PER_CLIP = 3;
+
 	/**
 	 * All available audio clips of this class
 	 */
@@ -63,33 +79,153 @@ public class Sounds {
 		}
 	}
 
-	// to play sounds parallel
-	ExecutorService _executor = Executors.newScheduledThreadPool(3);
+	// decoded PCM data and its format per clip - indexed by Clips.ordinal()
+	private final byte[][] _pcmData = new byte[Clips.values().length][];
+	private final AudioFormat[] _formats = new AudioFormat[Clips.values().length];
+
+	// pool of opened lines per clip - null if the clip is not available
+	private final Clip[][] _lines = new Clip[Clips.values().length][];
+	// next line of the pool to use
+	private final int[] _nextLine = new int[Clips.values().length];
+
+	// software mixer - only in mixer and synthesis mode
+	private SoundMixer _mixer = null;
+	// sounds of the mixer are rendered per pitch bucket
+	private boolean _synthesized = false;
 
-	// available sounds mapped by the enum
-	private Map<Clips, URL> _sounds;
-	
 	// sound on/off
-	private boolean soundOn = true;
+	private volatile boolean soundOn = true;
+
+	// if set the time to trigger a sound is recorded - sounds are played by another thread than the HUD's
+	private volatile ConcurrentHistogram _latencyHistogram = null;
 
 	/**
-	 * Create an object with all tetris sounds available 
+	 * Create an object with all pong sounds decoded and ready to play.<br>
+	 * Uses the mixer mode if the system property <code>pong.mixer</code> is true and synthesized
+	 * sounds if <code>pong.synth</code> is true.
 	 */
 	public Sounds() {
-		_sounds = new HashMap<>();
+		this(Boolean.getBoolean(MIXER_PROPERTY), Boolean.getBoolean(SYNTH_PROPERTY));
+	}
+
+	/**
+	 * Create an object with all pong sounds decoded and ready to play 
+	 * @param useMixer true to play all sounds through a software mixer on a single line
+	 */
+	public Sounds(boolean useMixer) {
+		this(useMixer, false);
+	}
+
+	/**
+	 * Create an object with all pong sounds ready to play 
+	 * @param useMixer true to play all sounds through a software mixer on a single line
+	 * @param synthesize true to synthesize the sounds instead of loading the files - always 
+	 * plays through the mixer
+	 */
+	public Sounds(boolean useMixer, boolean synthesize) {
+		if (synthesize) {
+			startMixer(SoundSynth.render());
+			_synthesized = _mixer != null;
+			return;
+		}
 		// for all defined values in ENUM Clips
-		// read in the Clip and store them in the Map
-		Arrays.stream(Clips.values())
-		.forEach(c -> {
+		// decode the sound file and open the lines for it
+		for (Clips c : Clips.values()) {
 			final String filename = SOUND_FOLDER + c._name+".wav";
 			final URL url = Pong.class.getResource(filename);
-			// create AudioInputStream object
-			if (url != null) {
-				_sounds.put(c, url);
-			} else {
+			if (url == null) {
 				Pong.criticalError("Sound file: "+filename+" cannot be loaded!");
+				continue;
+			}
+			try {
+				decode(c, url);
+			} catch (UnsupportedAudioFileException | IOException e) {
+				Pong.criticalError("Sound file: "+filename+" cannot be decoded: "+e.getMessage());
+				continue;
+			}
+			if (!useMixer) openLines(c);
+		}
+		if (useMixer) startMixer(decodedSamples());
+	}
+
+	/**
+	 * Reads the sound file completely and stores it as signed PCM.
+	 * @param c
+	 * @param url
+	 * @throws UnsupportedAudioFileException
+	 * @throws IOException
+	 */
+	private void decode(Clips c, URL url) throws UnsupportedAudioFileException, IOException {
+		try (AudioInputStream fileIn = AudioSystem.getAudioInputStream(url)) {
+			AudioInputStream audioIn = fileIn;
+			final AudioFormat source = fileIn.getFormat();
+			// convert all other formats to 16 bit signed little endian PCM
+			if (source.getEncoding() != AudioFormat.Encoding.PCM_SIGNED 
+					|| source.getSampleSizeInBits() != 16 || source.isBigEndian()) {
+				final AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+						source.getSampleRate(), 16, source.getChannels(), source.getChannels() * 2,
+						source.getSampleRate(), false);
+				audioIn = AudioSystem.getAudioInputStream(target, fileIn);
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = audioIn.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			_pcmData[c.ordinal()] = out.toByteArray();
+			_formats[c.ordinal()] = audioIn.getFormat();
+		}
+	}
+
+	/**
+	 * Opens the pool of lines for an already decoded clip.
+	 * @param c
+	 */
+	private void openLines(Clips c) {
+		final byte[] data = _pcmData[c.ordinal()];
+		final AudioFormat format = _formats[c.ordinal()];
+		final Clip[] lines = new Clip[LINES_PER_CLIP];
+		try {
+			for (int i = 0; i < LINES_PER_CLIP; i++) {
+				lines[i] = AudioSystem.getClip();
+				lines[i].open(format, data, 0, data.length);
 			}
-		});
+		} catch (LineUnavailableException | IllegalArgumentException e) {
+			Pong.criticalError("No audio line for sound "+c+": "+e.getMessage());
+			for (Clip line : lines) {
+				if (line != null) line.close();
+			}
+			return;
+		}
+		_lines[c.ordinal()] = lines;
+	}
+
+	/**
+	 * @return all decoded clips as samples for the mixer - indexed by Clips.ordinal()
+	 */
+	private short[][] decodedSamples() {
+		final short[][] samples = new short[Clips.values().length][];
+		for (Clips c : Clips.values()) {
+			if (_pcmData[c.ordinal()] == null) continue;
+			samples[c.ordinal()] = SoundMixer.toMixerSamples(_pcmData[c.ordinal()], _formats[c.ordinal()]);
+		}
+		return samples;
+	}
+
+	/**
+	 * Starts the software mixer.
+	 * @param samples mono samples at the mixer's sample rate per sound id
+	 */
+	private void startMixer(short[][] samples) {
+		final SoundMixer mixer = new SoundMixer(samples);
+		try {
+			mixer.start();
+		} catch (LineUnavailableException | IllegalArgumentException e) {
+			Pong.criticalError("No audio line for the sound mixer: "+e.getMessage());
+			return;
+		}
+		_mixer = mixer;
 	}
 
 	/**
@@ -97,43 +233,76 @@ public class Sounds {
 	 * @param c enum from Clips
 	 */
 	public void playClip(Clips c) {
-		
+		playClip(c, 0.0);
+	}
+
+	/**
+	 * Plays the give clip once.
+	 * @param c enum from Clips
+	 * @param pan -1.0 (left) to 1.0 (right) - only supported in mixer mode
+	 */
+	public void playClip(Clips c, double pan) {
+		playClip(c, pan, 1.0);
+	}
+
+	/**
+	 * Plays the give clip once.
+	 * @param c enum from Clips
+	 * @param pan -1.0 (left) to 1.0 (right) - only supported in mixer mode
+	 * @param speed factor of the ball - sets the pitch of synthesized sounds
+	 */
+	public void playClip(Clips c, double pan, double speed) {
+		playClip(c, pan, speed, System.nanoTime());
+	}
+
+	/**
+	 * Plays the give clip once.
+	 * @param c enum from Clips
+	 * @param pan -1.0 (left) to 1.0 (right) - only supported in mixer mode
+	 * @param speed factor of the ball - sets the pitch of synthesized sounds
+	 * @param eventTime <code>System.nanoTime()</code> of the event causing the sound - the latency
+	 * 			is measured from it
+	 */
+	public void playClip(Clips c, double pan, double speed, long eventTime) {
+		if (!soundOn) return;
+		final ConcurrentHistogram histogram = _latencyHistogram;
+
+		// mixer mode
+		if (_mixer != null) {
+			final int sound = _synthesized ? SoundSynth.soundId(c, speed) : c.ordinal();
+			_mixer.trigger(sound, 1.0f, (float) pan);
+		} else {
+			startLine(c);
+		}
+
+		if (histogram != null) histogram.record(System.nanoTime() - eventTime);
+	}
+
+	/**
+	 * Rewinds and starts the next line of the clip's pool.
+	 * @param c
+	 */
+	private void startLine(Clips c) {
 		// sound was not available
-		if (_sounds.get(c) == null || !soundOn) return;
-		
-		// execute in a new thread to play sound
-		_executor.execute(() -> {
-			 AudioInputStream audioIn = null;
-             try {
-                 audioIn = AudioSystem.getAudioInputStream(_sounds.get(c));
-             } catch (Exception e) {
-            	 e.printStackTrace();
-             }
-             if (audioIn == null) {
-                 return;
-             }
-             final Clip clip;
-             try {
-                 clip = AudioSystem.getClip();
-             } catch (LineUnavailableException e) {
-            	 e.printStackTrace();
-                 return;
-             }
-             try {
-                 clip.open(audioIn);
-             } catch (Exception e) {
-            	 e.printStackTrace();
-                 return;
-             }
-             clip.addLineListener(event -> {
-                 if (event.getType() == LineEvent.Type.STOP) {
-                     clip.close();
-                 }
-             });
-             clip.start();
-		});			
+		final Clip[] lines = _lines[c.ordinal()];
+		if (lines == null) return;
+
+		// rewind and start the next line of the pool
+		final int i = _nextLine[c.ordinal()];
+		_nextLine[c.ordinal()] = (i + 1) % lines.length;
+		final Clip clip = lines[i];
+		clip.stop();
+		clip.setFramePosition(0);
+		clip.start();
 	}
 	
+	/**
+	 * @param histogram to record the nanoseconds from the event to the triggered sound or null to turn it off
+	 */
+	public void setLatencyHistogram(ConcurrentHistogram histogram) {
+		_latencyHistogram = histogram;
+	}
+
 	public void soundOff() {
 		soundOn=false;
 	}
@@ -0,0 +1,197 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A read only view of a game streamed by a <code>SpectatorServer</code>.<br>
+ * <code>read()</code> takes whatever arrived from a non blocking channel and decodes the frames.
+ * <code>show()</code> puts the view into an engine for rendering - one frame behind and
+ * interpolated between the last two frames so the ball moves smoothly although frames arrive only
+ * every few ticks.<br>
+ * Used by the game with <code>-Dpong.watch=&lt;host&gt;[:port]</code> and by <code>SpectatorLoad</code>.
+ * @author Frank Kopp
+ */
+public class SpectatorClient {
+
+	// system property to watch a game: <host>[:<port>]
+	public static final String WATCH_PROPERTY = "pong.watch";
+
+	private static final GameState[] STATES = GameState.values();
+
+	private final SocketChannel _channel;
+	private final ByteBuffer _in = ByteBuffer.allocate(1024);
+
+	// header
+	private boolean _connected = false;
+	private int _width;
+	private int _height;
+	private int _interval = 1;
+
+	// last two frames
+	private final short[] _frame = new short[SpectatorProtocol.FIELDS];
+	private final short[] _previous = new short[SpectatorProtocol.FIELDS];
+	private final short[] _next = new short[SpectatorProtocol.FIELDS];
+	private long _frames = 0;
+	private int _shown = 0;
+
+	/**
+	 * Connects to a server.
+	 * @param server
+	 * @throws IOException
+	 */
+	public SpectatorClient(SocketAddress server) throws IOException {
+		_channel = SocketChannel.open(server);
+		_channel.configureBlocking(false);
+	}
+
+	/**
+	 * @return a client for the server of the system property <code>pong.watch</code> or null if not set
+	 */
+	public static SpectatorClient fromSystemProperty() {
+		final String server = System.getProperty(WATCH_PROPERTY);
+		if (server == null || server.isEmpty()) return null;
+		try {
+			final int colon = server.lastIndexOf(':');
+			return new SpectatorClient(colon < 0 
+					? new InetSocketAddress(server, SpectatorProtocol.DEFAULT_PORT)
+					: new InetSocketAddress(server.substring(0, colon), Integer.parseInt(server.substring(colon + 1))));
+		} catch (IOException | IllegalArgumentException e) {
+			Pong.criticalError("Cannot watch "+server+": "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Reads and decodes everything that arrived. Never blocks.
+	 * @return number of decoded frames or -1 if the server closed the connection
+	 * @throws IOException if reading fails or the stream is corrupt
+	 */
+	public int read() throws IOException {
+		int frames = 0;
+		int read;
+		do {
+			read = _channel.read(_in);
+			_in.flip();
+			if (!_connected) readHeader();
+			if (_connected) {
+				while (true) {
+					System.arraycopy(_frame, 0, _next, 0, _frame.length);
+					try {
+						if (!SpectatorProtocol.decode(_in, _next)) break;
+					} catch (IllegalStateException e) {
+						throw new IOException(e.getMessage());
+					}
+					System.arraycopy(_frame, 0, _previous, 0, _frame.length);
+					System.arraycopy(_next, 0, _frame, 0, _frame.length);
+					frames++;
+				}
+			}
+			_in.compact();
+		} while (read > 0);
+		if (frames > 0) {
+			_frames += frames;
+			_shown = 0;
+		}
+		return read < 0 && frames == 0 ? -1 : frames;
+	}
+
+	private void readHeader() throws IOException {
+		if (_in.remaining() < SpectatorProtocol.HEADER_SIZE) return;
+		if (_in.getInt() != SpectatorProtocol.MAGIC || _in.get() != SpectatorProtocol.VERSION) {
+			throw new IOException("Not a spectator stream of this version");
+		}
+		_width = _in.getShort();
+		_height = _in.getShort();
+		_interval = _in.get();
+		_connected = true;
+	}
+
+	/**
+	 * Shows the view in the engine. Called once per tick.
+	 * @param engine
+	 */
+	public void show(PongEngine engine) {
+		if (_frames == 0) return;
+		final short state = _frame[SpectatorProtocol.STATE];
+		// interpolate between the last two frames - a new serve or goal is shown at once
+		final double t = _frames == 1 || state != _previous[SpectatorProtocol.STATE] 
+				? 1.0 : Math.min(1.0, (double) ++_shown / _interval);
+		engine.setView(STATES[state & 0xF], STATES[state >> 4],
+				position(SpectatorProtocol.BALL_X, t), position(SpectatorProtocol.BALL_Y, t),
+				position(SpectatorProtocol.LEFT_Y, t), position(SpectatorProtocol.RIGHT_Y, t),
+				position(SpectatorProtocol.PADDLE_SIZE, t),
+				_frame[SpectatorProtocol.LEFT_POINTS], _frame[SpectatorProtocol.RIGHT_POINTS]);
+	}
+
+	private double position(int field, double t) {
+		return (_previous[field] + (_frame[field] - _previous[field]) * t) / SpectatorProtocol.SCALE;
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() {
+		try {
+			_channel.close();
+		} catch (IOException e) {
+			Pong.minorError("Closing spectator connection: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the channel, e.g. to register it with a selector
+	 */
+	public SocketChannel getChannel() { return _channel; }
+
+	/**
+	 * @return true when the header was received
+	 */
+	public boolean isConnected() { return _connected; }
+
+	public int getWidth() { return _width; }
+	public int getHeight() { return _height; }
+
+	/**
+	 * @return ticks per frame
+	 */
+	public int getInterval() { return _interval; }
+
+	/**
+	 * @return number of frames received
+	 */
+	public long getFrames() { return _frames; }
+
+	/**
+	 * @param field one of the <code>SpectatorProtocol</code> fields
+	 * @return the quantized value of the field in the last frame
+	 */
+	public short getField(int field) { return _frame[field]; }
+
+}
@@ -0,0 +1,195 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load generator for the <code>SpectatorServer</code>.<br>
+ * Runs a headless game of two computer players in real time which is published to a server in
+ * this process and connects the given number of spectators on localhost. All spectators are read 
+ * and decoded by one thread with a selector. At the end the game is frozen until every spectator
+ * caught up (at most two seconds) and the last frame of every spectator is compared with the game.<br>
+ * Prints the bytes per frame, key frames, skipped frames and the CPU time of the server thread
+ * per broadcast and per spectator frame.<br>
+ * Usage: <code>java fko.pong.SpectatorLoad [-spectators &lt;n&gt;] [-seconds &lt;n&gt;] 
+ * [-interval &lt;ticks per frame&gt;] [-port &lt;n&gt;]</code>
+ * @author Frank Kopp
+ */
+public class SpectatorLoad {
+
+	/**
+	 * @param args see class comment
+	 */
+	public static void main(String[] args) {
+		int spectators = 2000;
+		int seconds = 10;
+		int interval = SpectatorServer.DEFAULT_INTERVAL;
+		int port = SpectatorProtocol.DEFAULT_PORT;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-spectators": spectators = Integer.parseInt(args[++i]); break;
+				case "-seconds": 	seconds = Integer.parseInt(args[++i]); break;
+				case "-interval": 	interval = Integer.parseInt(args[++i]); break;
+				case "-port": 		port = Integer.parseInt(args[++i]); break;
+				default: 			throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java fko.pong.SpectatorLoad [-spectators <n>] [-seconds <n>] [-interval <ticks per frame>] [-port <n>]");
+			System.exit(1);
+		}
+
+		final PongEngine engine = new PongEngine(Tournament.WIDTH, Tournament.HEIGHT);
+		final PongAI leftAI = PredictingAI.create(PredictingAI.EXPERT, true, 1);
+		final PongAI rightAI = PredictingAI.create(PredictingAI.EXPERT, false, 2);
+
+		final SpectatorServer server;
+		final SpectatorClient[] clients = new SpectatorClient[spectators];
+		final Selector selector;
+		try {
+			server = new SpectatorServer(port, engine.getWidth(), engine.getHeight(), interval);
+			selector = Selector.open();
+			for (int i = 0; i < spectators; i++) {
+				clients[i] = new SpectatorClient(new InetSocketAddress("localhost", port));
+				clients[i].getChannel().register(selector, SelectionKey.OP_READ, clients[i]);
+			}
+		} catch (IOException e) {
+			Pong.fatalError("Cannot connect spectators: "+e.getMessage());
+			return;
+		}
+
+		// all spectators are read by one thread
+		final AtomicBoolean reading = new AtomicBoolean(true);
+		final Thread reader = new Thread(() -> {
+			try {
+				while (reading.get()) {
+					selector.select(100);
+					final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						if (((SpectatorClient) key.attachment()).read() < 0) key.cancel();
+					}
+				}
+			} catch (IOException e) {
+				Pong.criticalError("Spectator failed: "+e.getMessage());
+			}
+		}, "SpectatorLoad");
+		reader.setDaemon(true);
+		reader.start();
+
+		System.out.println(String.format("%d spectators, %d frames per second, %ds", 
+				spectators, PongEngine.TICKS_PER_SECOND / interval, seconds));
+
+		// the game in real time - then frozen until everybody caught up
+		engine.startGame(42);
+		final short[] expected = new short[SpectatorProtocol.FIELDS];
+		final long tickNanos = (long) (PongEngine.TIME_STEP * 1e9);
+		final long ticks = (long) seconds * PongEngine.TICKS_PER_SECOND;
+		final long settle = 2 * PongEngine.TICKS_PER_SECOND;
+		final long start = System.nanoTime();
+		for (long tick = 0; tick < ticks + settle; tick++) {
+			if (tick < ticks) {
+				engine.step(leftAI.move(engine) | rightAI.move(engine));
+			} else if (tick % (PongEngine.TICKS_PER_SECOND / 10) == 0) {
+				SpectatorProtocol.quantize(engine, expected);
+				if (countMismatches(clients, expected) == 0) break;
+			}
+			server.publish(engine);
+			final long next = start + (tick + 1) * tickNanos;
+			long now;
+			while ((now = System.nanoTime()) < next) {
+				final long millis = (next - now) / 1_000_000;
+				try {
+					if (millis > 1) Thread.sleep(millis - 1); else Thread.yield();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+		final double elapsed = (System.nanoTime() - start) / 1e9;
+
+		final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		final long readerNanos = threadBean.getThreadCpuTime(reader.getId());
+		reading.set(false);
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			return;
+		}
+
+		final int connected = server.getSpectators();
+
+		// every spectator must have the last frame of the game
+		SpectatorProtocol.quantize(engine, expected);
+		final int mismatches = countMismatches(clients, expected);
+		long received = 0, minReceived = Long.MAX_VALUE;
+		for (SpectatorClient client : clients) {
+			received += client.getFrames();
+			minReceived = Math.min(minReceived, client.getFrames());
+			client.close();
+		}
+		server.close();
+
+		final long frames = server.getFrames();
+		final long broadcasts = server.getBroadcasts();
+		final double serverNanos = server.getBroadcastNanos();
+		System.out.println(String.format("Connected %d  broadcasts %d (%.0f/s)  frames to sockets %d  skipped %d  key frames %d",
+				connected, broadcasts, broadcasts / elapsed, frames, server.getSkippedFrames(), server.getKeyFrames()));
+		System.out.println(String.format("Bytes per frame %.2f  total %.0f KB/s",
+				(double) server.getBytes() / Math.max(1, frames), server.getBytes() / elapsed / 1024));
+		final double frameNanos = serverNanos / Math.max(1, frames);
+		System.out.println(String.format("Server CPU per broadcast %.0f us  per spectator frame %.0f ns  load %.1f%% of a core  (~%.0f spectators per core at %d frames/s)",
+				serverNanos / Math.max(1, broadcasts) / 1e3, frameNanos, 100 * serverNanos / 1e9 / elapsed, 
+				1e9 / frameNanos / (PongEngine.TICKS_PER_SECOND / interval), PongEngine.TICKS_PER_SECOND / interval));
+		System.out.println(String.format("Spectators received %d frames (min %d per spectator)  reader CPU %.1f%% of a core  wrong last frame %d",
+				received, minReceived, 100 * readerNanos / 1e9 / elapsed, mismatches));
+	}
+
+	/**
+	 * @return number of clients whose last frame is not the expected one
+	 */
+	private static int countMismatches(SpectatorClient[] clients, short[] expected) {
+		int mismatches = 0;
+		for (SpectatorClient client : clients) {
+			for (int field = 0; field < SpectatorProtocol.FIELDS; field++) {
+				if (client.getField(field) != expected[field]) {
+					mismatches++;
+					break;
+				}
+			}
+		}
+		return mismatches;
+	}
+
+}
@@ -0,0 +1,176 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and the frame codec of the TCP stream from <code>SpectatorServer</code> to 
+ * <code>SpectatorClient</code>.<br>
+ * After a header (MAGIC int, VERSION byte, width short, height short, ticks per frame byte) the 
+ * stream is a sequence of frames. A frame is the quantized view of the game - positions in quarter
+ * pixels - delta encoded against the frame before it in the stream:
+ * <pre>
+ * mask (short) - 2 bits per field: SAME, BYTE (signed delta follows), FULL (short value follows)
+ * field deltas and values in field order
+ * </pre>
+ * A frame against no base is a key frame with all fields FULL. A moving ball typically costs
+ * 4 bytes per frame.
+ * @author Frank Kopp
+ */
+public final class SpectatorProtocol {
+
+	public static final int MAGIC = 0x50564557; // "PVEW"
+	public static final byte VERSION = 1;
+	public static final int DEFAULT_PORT = 4712;
+	public static final int HEADER_SIZE = Integer.BYTES + 1 + 2 * Short.BYTES + 1;
+
+	// fields of a frame
+	public static final int STATE = 0;			// state | paused state << 4
+	public static final int BALL_X = 1;
+	public static final int BALL_Y = 2;
+	public static final int LEFT_Y = 3;
+	public static final int RIGHT_Y = 4;
+	public static final int PADDLE_SIZE = 5;
+	public static final int LEFT_POINTS = 6;
+	public static final int RIGHT_POINTS = 7;
+	public static final int FIELDS = 8;
+
+	// quantization of positions
+	public static final double SCALE = 4;
+
+	// field codes of the mask
+	private static final int SAME = 0;
+	private static final int BYTE = 1;
+	private static final int FULL = 2;
+
+	// largest frame - a key frame
+	public static final int MAX_FRAME = Short.BYTES + FIELDS * Short.BYTES;
+
+	private SpectatorProtocol() {}
+
+	/**
+	 * Writes the stream header.
+	 * @param out
+	 * @param width of the board
+	 * @param height of the board
+	 * @param interval ticks per frame
+	 */
+	static void writeHeader(ByteBuffer out, double width, double height, int interval) {
+		out.putInt(MAGIC);
+		out.put(VERSION);
+		out.putShort((short) Math.round(width));
+		out.putShort((short) Math.round(height));
+		out.put((byte) interval);
+	}
+
+	/**
+	 * Quantizes the view of the engine to a frame.
+	 * @param engine
+	 * @param frame FIELDS values
+	 */
+	static void quantize(PongEngine engine, short[] frame) {
+		frame[STATE] = (short) (engine.getState().ordinal() | engine.getPausedState().ordinal() << 4);
+		frame[BALL_X] = quantize(engine.getBallCenterX());
+		frame[BALL_Y] = quantize(engine.getBallCenterY());
+		frame[LEFT_Y] = quantize(engine.getLeftPaddleY());
+		frame[RIGHT_Y] = quantize(engine.getRightPaddleY());
+		frame[PADDLE_SIZE] = quantize(engine.getPaddleSize());
+		frame[LEFT_POINTS] = (short) Math.min(engine.getLeftPoints(), Short.MAX_VALUE);
+		frame[RIGHT_POINTS] = (short) Math.min(engine.getRightPoints(), Short.MAX_VALUE);
+	}
+
+	private static short quantize(double position) {
+		final long q = Math.round(position * SCALE);
+		return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, q));
+	}
+
+	/**
+	 * Encodes a frame against a base.
+	 * @param base the frame the receiver has or null for a key frame
+	 * @param frame
+	 * @param out at least MAX_FRAME bytes remaining
+	 * @return number of bytes written
+	 */
+	static int encode(short[] base, short[] frame, ByteBuffer out) {
+		final int start = out.position();
+		out.putShort((short) 0);
+		int mask = 0;
+		for (int i = 0; i < FIELDS; i++) {
+			final int delta = base == null ? Integer.MAX_VALUE : frame[i] - base[i];
+			if (delta == 0) continue;
+			if (delta >= Byte.MIN_VALUE && delta <= Byte.MAX_VALUE) {
+				mask |= BYTE << 2 * i;
+				out.put((byte) delta);
+			} else {
+				mask |= FULL << 2 * i;
+				out.putShort(frame[i]);
+			}
+		}
+		out.putShort(start, (short) mask);
+		return out.position() - start;
+	}
+
+	/**
+	 * @param mask of a frame
+	 * @return the length of the frame in bytes or -1 if the mask is invalid
+	 */
+	static int frameLength(int mask) {
+		int length = Short.BYTES;
+		for (int i = 0; i < FIELDS; i++) {
+			switch ((mask >>> 2 * i) & 3) {
+			case SAME: break;
+			case BYTE: length += 1; break;
+			case FULL: length += Short.BYTES; break;
+			default: return -1;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Decodes the next frame of the buffer onto the previous one if it is complete.
+	 * @param in flipped
+	 * @param frame the previous frame - updated in place
+	 * @return true if a frame was decoded, false if it is not complete yet
+	 * @throws IllegalStateException if the stream is corrupt
+	 */
+	static boolean decode(ByteBuffer in, short[] frame) {
+		if (in.remaining() < Short.BYTES) return false;
+		final int mask = in.getShort(in.position()) & 0xFFFF;
+		final int length = frameLength(mask);
+		if (length < 0) throw new IllegalStateException("Invalid frame mask "+Integer.toHexString(mask));
+		if (in.remaining() < length) return false;
+		in.getShort();
+		for (int i = 0; i < FIELDS; i++) {
+			switch ((mask >>> 2 * i) & 3) {
+			case BYTE: frame[i] += in.get(); break;
+			case FULL: frame[i] = in.getShort(); break;
+			default:
+			}
+		}
+		return true;
+	}
+
+}
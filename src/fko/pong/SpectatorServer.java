@@ -0,0 +1,417 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Streams a running game to any number of read only spectators over TCP.<br>
+ * The game loop calls <code>publish()</code> every tick. Every <code>interval</code> ticks it
+ * quantizes the view of the engine into a small ring and wakes up the server thread - it never
+ * blocks and never touches a socket.<br>
+ * The server thread owns a single selector for accepting and all spectator connections. For every
+ * new frame it encodes the delta once for each base in use - the last frame a spectator got - 
+ * into one direct buffer and writes it to every spectator through a view of that buffer. As TCP 
+ * delivers in order the last frame completely handed to the socket is what the spectator will 
+ * have, so it is the base for the next delta without any acknowledgements from the spectators.<br>
+ * If a socket doesn't take a whole frame the rest goes into a small pooled direct buffer of the 
+ * spectator and is written together with the next frame in one gathering write. A spectator which
+ * is still more than a frame behind skips frames until it caught up - slow spectators never slow 
+ * down others or grow any queue.<br>
+ * Enabled in the game with <code>-Dpong.spectate=[port]</code>, watched with 
+ * <code>-Dpong.watch=&lt;host&gt;[:port]</code> and load tested with <code>SpectatorLoad</code>.
+ * @author Frank Kopp
+ */
+public class SpectatorServer implements Runnable {
+
+	// system property to start the server: [<port>]
+	public static final String SPECTATE_PROPERTY = "pong.spectate";
+	// ticks per frame in the game - 60 frames per second
+	public static final int DEFAULT_INTERVAL = 2;
+
+	// frames kept as bases for deltas - older spectators get a key frame
+	private static final int HISTORY = 32;
+	private static final int MASK = HISTORY - 1;
+	// frames handed over from the game loop
+	private static final int SLOTS = 8;
+	// pending bytes per spectator - at most the rest of one frame and a frame
+	private static final int PENDING_SIZE = 64;
+	private static final int SLAB_SIZE = 1024 * PENDING_SIZE;
+	private static final int BACKLOG = 1024;
+	private static final long SELECT_TIMEOUT = 100;
+
+	private final int _interval;
+	private final double _width;
+	private final double _height;
+	private final ServerSocketChannel _serverChannel;
+	private final Selector _selector;
+	private final Thread _thread;
+	private volatile boolean _open = true;
+
+	// hand over from the game loop
+	private final short[][] _slots = new short[SLOTS][SpectatorProtocol.FIELDS];
+	private volatile long _published = -1;
+	private int _ticks = 0;
+
+	// server thread - sent frames by frame number
+	private final short[][] _history = new short[HISTORY][SpectatorProtocol.FIELDS];
+	private long _frame = -1;
+	// encoded deltas of the current frame by distance to the base - HISTORY is the key frame
+	private final ByteBuffer _block = ByteBuffer.allocateDirect((HISTORY + 1) * SpectatorProtocol.MAX_FRAME);
+	private final int[] _encodedLength = new int[HISTORY + 1];
+	private final long[] _encodedFrame = new long[HISTORY + 1];
+	private final ArrayList<Spectator> _spectators = new ArrayList<>();
+	private final ArrayDeque<ByteBuffer> _pool = new ArrayDeque<>();
+	private final ByteBuffer _drain = ByteBuffer.allocate(256);
+	private final ThreadMXBean _threadBean = ManagementFactory.getThreadMXBean();
+
+	// statistics - written by the server thread only
+	private volatile int _spectatorCount = 0;
+	private volatile long _frames = 0;
+	private volatile long _bytes = 0;
+	private volatile long _keyFrames = 0;
+	private volatile long _skipped = 0;
+	private volatile long _broadcasts = 0;
+	private volatile long _broadcastNanos = 0;
+
+	/**
+	 * A connected spectator.
+	 */
+	private static final class Spectator {
+		final SocketChannel channel;
+		// bytes not taken by the socket yet - flipped
+		final ByteBuffer pending;
+		// view of the encoded deltas
+		final ByteBuffer view;
+		final ByteBuffer[] gather;
+		// last frame handed to the socket
+		long frame = -1;
+
+		Spectator(SocketChannel channel, ByteBuffer pending, ByteBuffer view) {
+			this.channel = channel;
+			this.pending = pending;
+			this.view = view;
+			this.gather = new ByteBuffer[] { pending, view };
+		}
+	}
+
+	/**
+	 * Opens the server socket and starts the server thread.
+	 * @param port
+	 * @param width of the board
+	 * @param height of the board
+	 * @param interval ticks per frame
+	 * @throws IOException
+	 */
+	public SpectatorServer(int port, double width, double height, int interval) throws IOException {
+		if (interval < 1 || interval > Byte.MAX_VALUE) throw new IllegalArgumentException("Interval "+interval);
+		_interval = interval;
+		_width = width;
+		_height = height;
+		_selector = Selector.open();
+		_serverChannel = ServerSocketChannel.open();
+		_serverChannel.configureBlocking(false);
+		_serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+		_serverChannel.register(_selector, SelectionKey.OP_ACCEPT);
+		Arrays.fill(_encodedFrame, -1);
+		_thread = new Thread(this, "SpectatorServer");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	/**
+	 * @param engine the engine of the game
+	 * @return a server on the port of the system property <code>pong.spectate</code> or null if not set
+	 */
+	public static SpectatorServer fromSystemProperty(PongEngine engine) {
+		final String port = System.getProperty(SPECTATE_PROPERTY);
+		if (port == null) return null;
+		try {
+			return new SpectatorServer(port.isEmpty() ? SpectatorProtocol.DEFAULT_PORT : Integer.parseInt(port), 
+					engine.getWidth(), engine.getHeight(), DEFAULT_INTERVAL);
+		} catch (IOException | NumberFormatException e) {
+			Pong.criticalError("Cannot start spectator server on port "+port+": "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Publishes the view of the engine to the spectators every <code>interval</code> ticks.
+	 * Called by the game loop after every tick - never blocks.
+	 * @param engine
+	 */
+	public void publish(PongEngine engine) {
+		if (++_ticks < _interval) return;
+		_ticks = 0;
+		final long next = _published + 1;
+		SpectatorProtocol.quantize(engine, _slots[(int) (next % SLOTS)]);
+		_published = next;
+		_selector.wakeup();
+	}
+
+	/**
+	 * Stops the server thread and closes all connections.
+	 */
+	public void close() {
+		_open = false;
+		_selector.wakeup();
+		try {
+			_thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The server thread.
+	 */
+	@Override
+	public void run() {
+		final short[] latest = new short[SpectatorProtocol.FIELDS];
+		try {
+			while (_open) {
+				_selector.select(SELECT_TIMEOUT);
+				final Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) {
+						accept();
+					} else if (key.isReadable()) {
+						drain(key);
+					}
+				}
+				final long published = _published;
+				if (published > _frame && take(published, latest)) {
+					final long start = _threadBean.getCurrentThreadCpuTime();
+					broadcast(published, latest);
+					_broadcastNanos += _threadBean.getCurrentThreadCpuTime() - start;
+					_broadcasts++;
+				}
+			}
+		} catch (IOException e) {
+			Pong.criticalError("Spectator server failed: "+e.getMessage());
+		} finally {
+			for (int i = _spectators.size() - 1; i >= 0; i--) disconnect(i);
+			try {
+				_serverChannel.close();
+				_selector.close();
+			} catch (IOException e) {
+				Pong.minorError("Closing spectator server: "+e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Copies a published frame from the ring.
+	 * @return false if the game loop overwrote the slot while copying
+	 */
+	private boolean take(long published, short[] frame) {
+		System.arraycopy(_slots[(int) (published % SLOTS)], 0, frame, 0, frame.length);
+		return _published - published < SLOTS - 1;
+	}
+
+	/**
+	 * Accepts all pending connections. The header is written with the first frame.
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = _serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			final Spectator spectator = new Spectator(channel, takeBuffer(), _block.duplicate());
+			SpectatorProtocol.writeHeader(spectator.pending, _width, _height, _interval);
+			spectator.pending.flip();
+			channel.register(_selector, SelectionKey.OP_READ, spectator);
+			_spectators.add(spectator);
+		}
+		_spectatorCount = _spectators.size();
+	}
+
+	/**
+	 * Spectators don't send anything - reading only notices closed connections.
+	 */
+	private void drain(SelectionKey key) {
+		final Spectator spectator = (Spectator) key.attachment();
+		int read;
+		try {
+			do {
+				_drain.clear();
+				read = spectator.channel.read(_drain);
+			} while (read > 0);
+		} catch (IOException e) {
+			read = -1;
+		}
+		if (read < 0) {
+			disconnect(_spectators.indexOf(spectator));
+		}
+	}
+
+	/**
+	 * Sends a frame to all spectators.
+	 * @param frame number of the frame
+	 * @param values of the frame
+	 */
+	private void broadcast(long frame, short[] values) {
+		System.arraycopy(values, 0, _history[(int) (frame & MASK)], 0, values.length);
+		_frame = frame;
+		long frames = 0, bytes = 0, keyFrames = 0, skipped = 0;
+
+		for (int i = _spectators.size() - 1; i >= 0; i--) {
+			final Spectator spectator = _spectators.get(i);
+			try {
+				final ByteBuffer pending = spectator.pending;
+				if (pending.remaining() > SpectatorProtocol.MAX_FRAME) {
+					// more than a frame behind - catch up first
+					spectator.channel.write(pending);
+					skipped++;
+					continue;
+				}
+				final long distance = spectator.frame < 0 || frame - spectator.frame >= HISTORY 
+						? HISTORY : frame - spectator.frame;
+				final int slot = (int) distance;
+				if (_encodedFrame[slot] != frame) {
+					_block.clear().position(slot * SpectatorProtocol.MAX_FRAME);
+					_encodedLength[slot] = SpectatorProtocol.encode(
+							slot == HISTORY ? null : _history[(int) ((frame - slot) & MASK)], values, _block);
+					_encodedFrame[slot] = frame;
+				}
+				final ByteBuffer view = spectator.view;
+				final int start = slot * SpectatorProtocol.MAX_FRAME;
+				view.limit(start + _encodedLength[slot]).position(start);
+				if (pending.hasRemaining()) {
+					spectator.channel.write(spectator.gather);
+				} else {
+					spectator.channel.write(view);
+				}
+				if (view.hasRemaining()) {
+					pending.compact();
+					pending.put(view);
+					pending.flip();
+				}
+				spectator.frame = frame;
+				frames++;
+				bytes += _encodedLength[slot];
+				if (slot == HISTORY) keyFrames++;
+			} catch (IOException e) {
+				disconnect(i);
+			}
+		}
+
+		_frames += frames;
+		_bytes += bytes;
+		_keyFrames += keyFrames;
+		_skipped += skipped;
+	}
+
+	/**
+	 * Closes a spectator's connection and returns its buffer to the pool.
+	 * @param index in the list of spectators
+	 */
+	private void disconnect(int index) {
+		if (index < 0) return;
+		final Spectator spectator = _spectators.get(index);
+		// order of the spectators doesn't matter
+		final int last = _spectators.size() - 1;
+		_spectators.set(index, _spectators.get(last));
+		_spectators.remove(last);
+		_spectatorCount = _spectators.size();
+		try {
+			spectator.channel.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		spectator.pending.clear();
+		_pool.push(spectator.pending);
+	}
+
+	/**
+	 * @return a buffer for pending bytes - direct buffers are allocated in slabs
+	 */
+	private ByteBuffer takeBuffer() {
+		if (_pool.isEmpty()) {
+			final ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+			for (int offset = 0; offset < SLAB_SIZE; offset += PENDING_SIZE) {
+				slab.limit(offset + PENDING_SIZE).position(offset);
+				_pool.push(slab.slice());
+			}
+		}
+		return _pool.pop();
+	}
+
+	/**
+	 * @return number of connected spectators
+	 */
+	public int getSpectators() { return _spectatorCount; }
+
+	/**
+	 * @return frames handed to spectators' sockets
+	 */
+	public long getFrames() { return _frames; }
+
+	/**
+	 * @return bytes of all frames handed to the sockets
+	 */
+	public long getBytes() { return _bytes; }
+
+	/**
+	 * @return frames which were sent as key frames
+	 */
+	public long getKeyFrames() { return _keyFrames; }
+
+	/**
+	 * @return frames not sent to a spectator because its socket was full
+	 */
+	public long getSkippedFrames() { return _skipped; }
+
+	/**
+	 * @return number of frames broadcast
+	 */
+	public long getBroadcasts() { return _broadcasts; }
+
+	/**
+	 * @return CPU time of the server thread for all broadcasts in nanoseconds
+	 */
+	public long getBroadcastNanos() { return _broadcastNanos; }
+
+	/**
+	 * @return ticks per frame
+	 */
+	public int getInterval() { return _interval; }
+
+}
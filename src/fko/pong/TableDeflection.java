@@ -0,0 +1,236 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.Random;
+
+/**
+ * A <code>Deflection</code> which looks up the new vector of the ball in precomputed tables 
+ * instead of calculating it with <code>atan</code>, <code>sin</code> and <code>cos</code>.<br>
+ * The tables hold the outgoing vector for a unit speed over a grid of hit positions and
+ * incoming directions. The direction is parameterized as <code>vy / (|vx| + |vy|)</code> which
+ * needs no trigonometry and - unlike the sine - is close to linear in the angle up to steep angles.
+ * A lookup interpolates bilinearly between the four surrounding grid points and scales by the 
+ * speed of the ball - only one <code>sqrt</code> is left.<br>
+ * The resolution is configurable and <code>measureError()</code> determines the error against the
+ * exact <code>DeflectionModel</code>. Run <code>java fko.pong.TableDeflection [w,a,c]</code>
+ * to print the error bounds for a range of resolutions. The speed of a lookup is measured by
+ * <code>DeflectionBenchmark</code> in <code>pong-bench</code>.<br>
+ * The tables are immutable and can be shared between engines.
+ * @author Frank Kopp
+ */
+public class TableDeflection implements Deflection {
+
+	// system property to use the tables: <hitSteps>x<angleSteps> or <steps> for both
+	public static final String TABLE_PROPERTY = "pong.deflection.table";
+
+	// 66 KB - error below 0.011 degrees and 0.17% of the speed for the default model
+	public static final int DEFAULT_HIT_STEPS = 32;
+	public static final int DEFAULT_ANGLE_STEPS = 128;
+
+	// hit positions beyond the paddle's ends (ball overlaps the edge) - larger values are clamped
+	static final double HIT_RANGE = 1.0 + 2.0 * PongEngine.BALL_SIZE / PongEngine.INITIAL_PADDLE_SIZE;
+
+	private final DeflectionModel _model;
+	private final int _hitSteps;
+	private final int _angleSteps;
+
+	// outgoing unit vector per grid point interleaved as x,y - row major by hit position
+	private final double[] _table;
+
+	/**
+	 * Creates the tables with the default resolution.
+	 * @param model the exact model
+	 */
+	public TableDeflection(DeflectionModel model) {
+		this(model, DEFAULT_HIT_STEPS, DEFAULT_ANGLE_STEPS);
+	}
+
+	/**
+	 * Creates the tables.
+	 * @param model the exact model
+	 * @param hitSteps steps of the hit position
+	 * @param angleSteps steps of the incoming direction
+	 */
+	public TableDeflection(DeflectionModel model, int hitSteps, int angleSteps) {
+		if (hitSteps < 1 || angleSteps < 1) {
+			throw new IllegalArgumentException("Invalid table resolution: "+hitSteps+"x"+angleSteps);
+		}
+		_model = model;
+		_hitSteps = hitSteps;
+		_angleSteps = angleSteps;
+		_table = new double[(hitSteps + 1) * (angleSteps + 1) * 2];
+
+		final double[] result = new double[2];
+		int i = 0;
+		for (int h = 0; h <= hitSteps; h++) {
+			final double hitPos = -HIT_RANGE + 2 * HIT_RANGE * h / hitSteps;
+			for (int a = 0; a <= angleSteps; a++) {
+				final double direction = -1.0 + 2.0 * a / angleSteps;
+				final double x = 1.0 - Math.abs(direction);
+				final double length = Math.sqrt(x * x + direction * direction);
+				// unit speed from the left moving right - the exact model turns it around 
+				model.deflect(x / length, direction / length, hitPos, result);
+				_table[i++] = -result[0];
+				_table[i++] = result[1];
+			}
+		}
+	}
+
+	/**
+	 * @param model the exact model
+	 * @param resolution as <code>&lt;hitSteps&gt;x&lt;angleSteps&gt;</code> or <code>&lt;steps&gt;</code> for both
+	 * @return the table deflection
+	 * @throws IllegalArgumentException if the resolution can't be parsed
+	 */
+	public static TableDeflection parse(DeflectionModel model, String resolution) {
+		final String[] values = resolution.split("x");
+		if (values.length == 1) {
+			final int steps = Integer.parseInt(values[0].trim());
+			return new TableDeflection(model, steps, steps);
+		}
+		if (values.length != 2) throw new IllegalArgumentException("Invalid table resolution: "+resolution);
+		return new TableDeflection(model, Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim()));
+	}
+
+	/**
+	 * @param model the exact model
+	 * @return tables for the model if turned on with the system property <code>pong.deflection.table</code>
+	 * 			otherwise the model itself
+	 */
+	public static Deflection fromSystemProperty(DeflectionModel model) {
+		final String resolution = System.getProperty(TABLE_PROPERTY);
+		if (resolution == null || resolution.isEmpty()) return model;
+		try {
+			return parse(model, resolution);
+		} catch (IllegalArgumentException e) {
+			Pong.minorError(e.getMessage()+" - using the exact model");
+			return model;
+		}
+	}
+
+	/**
+	 * @see fko.pong.Deflection#deflect(double, double, double, double[])
+	 */
+	@Override
+	public void deflect(double speedX, double speedY, double hitPos, double[] result) {
+		final double speed = Math.sqrt(speedX * speedX + speedY * speedY);
+
+		// position in the grid
+		if (hitPos < -HIT_RANGE) hitPos = -HIT_RANGE;
+		else if (hitPos > HIT_RANGE) hitPos = HIT_RANGE;
+		final double fh = (hitPos + HIT_RANGE) * (_hitSteps / (2 * HIT_RANGE));
+		final double fa = (speedY / (Math.abs(speedX) + Math.abs(speedY)) + 1.0) * (_angleSteps * 0.5);
+		int h = (int) fh;
+		int a = (int) fa;
+		if (h >= _hitSteps) h = _hitSteps - 1;
+		if (a >= _angleSteps) a = _angleSteps - 1;
+		else if (a < 0) a = 0;
+		final double th = fh - h;
+		final double ta = fa - a;
+
+		// bilinear interpolation of the four surrounding grid points
+		final int row = _angleSteps + 1;
+		final int i00 = (h * row + a) << 1;
+		final int i10 = i00 + (row << 1);
+		final double x0 = _table[i00] + (_table[i00 + 2] - _table[i00]) * ta;
+		final double y0 = _table[i00 + 1] + (_table[i00 + 3] - _table[i00 + 1]) * ta;
+		final double x1 = _table[i10] + (_table[i10 + 2] - _table[i10]) * ta;
+		final double y1 = _table[i10 + 1] + (_table[i10 + 3] - _table[i10 + 1]) * ta;
+
+		result[0] = -Math.signum(speedX) * speed * (x0 + (x1 - x0) * th); // turn direction
+		result[1] = speed * (y0 + (y1 - y0) * th);
+	}
+
+	/**
+	 * @see fko.pong.Deflection#getModel()
+	 */
+	@Override
+	public DeflectionModel getModel() {
+		return _model;
+	}
+
+	public int getHitSteps() { return _hitSteps; }
+	public int getAngleSteps() { return _angleSteps; }
+
+	/**
+	 * @return size of the tables in bytes
+	 */
+	public int getTableSize() {
+		return _table.length * Double.BYTES;
+	}
+
+	/**
+	 * Measures the error of the tables against the exact model for random hits.<br>
+	 * Incoming angles are limited to +-85 degrees as the game never gets steeper in practice.
+	 * @param samples number of random hits
+	 * @param seed
+	 * @return [0] max angle error in degrees, [1] mean angle error in degrees, [2] max relative speed error
+	 */
+	public double[] measureError(int samples, long seed) {
+		final Random random = new Random(seed);
+		final double[] exact = new double[2];
+		final double[] approx = new double[2];
+		final double maxIncoming = Math.toRadians(85);
+		double maxAngleError = 0, sumAngleError = 0, maxSpeedError = 0;
+		for (int i = 0; i < samples; i++) {
+			final double hitPos = (random.nextDouble() * 2 - 1) * HIT_RANGE;
+			final double angle = (random.nextDouble() * 2 - 1) * maxIncoming;
+			final double speedX = (random.nextBoolean() ? 1 : -1) * Math.cos(angle) * PongEngine.INITIAL_BALL_SPEED;
+			final double speedY = Math.sin(angle) * PongEngine.INITIAL_BALL_SPEED;
+			_model.deflect(speedX, speedY, hitPos, exact);
+			deflect(speedX, speedY, hitPos, approx);
+			final double exactSpeed = Math.hypot(exact[0], exact[1]);
+			final double approxSpeed = Math.hypot(approx[0], approx[1]);
+			// angle between the two vectors
+			final double angleError = Math.toDegrees(Math.abs(Math.atan2(
+					exact[0] * approx[1] - exact[1] * approx[0], exact[0] * approx[0] + exact[1] * approx[1])));
+			final double speedError = Math.abs(approxSpeed - exactSpeed) / exactSpeed;
+			if (angleError > maxAngleError) maxAngleError = angleError;
+			if (speedError > maxSpeedError) maxSpeedError = speedError;
+			sumAngleError += angleError;
+		}
+		return new double[] { maxAngleError, sumAngleError / samples, maxSpeedError };
+	}
+
+	/**
+	 * Prints the error bounds of the tables for a range of resolutions.
+	 * @param args optional model as <code>&lt;hitWeight&gt;,&lt;maxAngle&gt;,&lt;speedConservation&gt;</code>
+	 */
+	public static void main(String[] args) {
+		final DeflectionModel model = args.length > 0 ? DeflectionModel.parse(args[0]) : DeflectionModel.DEFAULT;
+		final int samples = 1_000_000;
+		System.out.println("Model "+model+" - error against the exact model for "+samples+" random hits");
+		System.out.println("resolution\tsize (KB)\tmax angle error (deg)\tmean angle error (deg)\tmax speed error (%)");
+		for (int hitSteps = 8; hitSteps <= 128; hitSteps *= 2) {
+			for (int angleSteps = 64; angleSteps <= 1024; angleSteps *= 2) {
+				final TableDeflection table = new TableDeflection(model, hitSteps, angleSteps);
+				final double[] error = table.measureError(samples, 42);
+				System.out.println(String.format("%dx%d   \t%d\t\t%.5f\t\t\t%.5f\t\t\t%.4f", hitSteps, angleSteps, 
+						table.getTableSize() / 1024, error[0], error[1], error[2] * 100));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,392 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many complete matches AI vs AI headless and as fast as possible.<br>
+ * The matches are distributed over all cores by a <code>ForkJoinPool</code>. Every task
+ * plays its matches with its own engines and collects its own <code>Results</code> which are
+ * merged when the tasks join - nothing is shared between the threads while playing so the
+ * throughput scales with the number of cores.<br>
+ * Every match has its own seed derived from the tournament seed so a tournament is
+ * reproducible independent of the number of threads.<br>
+ * Usage: <code>java fko.pong.Tournament [options]</code> - see <code>usage()</code>
+ * @author Frank Kopp
+ */
+public class Tournament {
+
+	// defaults
+	public static final double WIDTH = 600;
+	public static final double HEIGHT = 375;
+	public static final int DEFAULT_MATCHES = 1000;
+	// two perfect paddles rally until the time is over - with these defaults most matches finish
+	public static final int DEFAULT_POINTS = 5;
+	public static final int DEFAULT_MAX_MINUTES = 30; // game time
+	public static final String DEFAULT_AI = "easy";
+
+	// matches a task plays itself instead of forking
+	private static final int MATCHES_PER_TASK = 4;
+
+	// paddle hits for which the ball speed progression is collected
+	private static final int MAX_HITS = 40;
+
+	// buckets of the length histograms - wider buckets for very long matches
+	private static final int MAX_BUCKETS = 10_000;
+
+	private int _matches = DEFAULT_MATCHES;
+	private int _points = DEFAULT_POINTS;
+	private long _maxTicks = DEFAULT_MAX_MINUTES * 60L * PongEngine.TICKS_PER_SECOND;
+	private long _seed = 0;
+	private double _ballSpeed = PongEngine.INITIAL_BALL_SPEED;
+	private double _acceleration = PongEngine.ACCELARATION;
+	private boolean _anglePaddle = true;
+	private DeflectionModel _deflection = DeflectionModel.DEFAULT;
+	// resolution of the deflection tables or null for the exact model
+	private String _table = null;
+	// the model or its tables - immutable and shared by all matches
+	private Deflection _deflectionStrategy = DeflectionModel.DEFAULT;
+	private String _leftAI = DEFAULT_AI;
+	private String _rightAI = DEFAULT_AI;
+
+	/**
+	 * Creates an AI by name.
+	 * @param name follow, hard (<code>MonteCarloAI</code>) or a preset of <code>PredictingAI</code>
+	 * @param left true for the left paddle
+	 * @param seed for AIs which use randomness
+	 * @return the AI or null if the name is unknown
+	 */
+	public static PongAI createAI(String name, boolean left, long seed) {
+		switch (name) {
+		case "follow": return new FollowBallAI(left);
+		case MonteCarloAI.HARD: return MonteCarloAI.createHeadless(left, seed);
+		default: return PredictingAI.create(name, left, seed);
+		}
+	}
+
+	/**
+	 * Plays all matches with the given number of threads.
+	 * @param threads
+	 * @return the merged results of all matches
+	 */
+	public Results run(int threads) {
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new MatchTask(0, _matches));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays matches from..to-1 - forks until only a few matches are left.
+	 */
+	private class MatchTask extends RecursiveTask<Results> {
+		private static final long serialVersionUID = 1L;
+
+		private final int _from;
+		private final int _to;
+
+		MatchTask(int from, int to) {
+			_from = from;
+			_to = to;
+		}
+
+		@Override
+		protected Results compute() {
+			if (_to - _from <= MATCHES_PER_TASK) {
+				final Results results = new Results(_points, _maxTicks);
+				for (int i = _from; i < _to; i++) {
+					playMatch(i, results);
+				}
+				return results;
+			}
+			final int middle = (_from + _to) >>> 1;
+			final MatchTask right = new MatchTask(middle, _to);
+			right.fork();
+			final Results results = new MatchTask(_from, middle).compute();
+			results.add(right.join());
+			return results;
+		}
+	}
+
+	/**
+	 * Plays one complete match until one side has reached the points or the maximum game time is over.
+	 * @param match number of the match
+	 * @param results to add the match to
+	 */
+	void playMatch(int match, Results results) {
+		final PongEngine engine = new PongEngine(WIDTH, HEIGHT);
+		engine.setInitialBallSpeed(_ballSpeed);
+		engine.setAcceleration(_acceleration);
+		engine.setAnglePaddle(_anglePaddle);
+		engine.setDeflection(_deflectionStrategy);
+		final long seed = mix(_seed + match);
+		final PongAI left = createAI(_leftAI, true, seed);
+		final PongAI right = createAI(_rightAI, false, ~seed);
+
+		engine.startGame(seed);
+		int hits = 0;
+		long rallyStart = 0;
+		long ticks = 0;
+		while (ticks < _maxTicks 
+				&& engine.getLeftPoints() < _points && engine.getRightPoints() < _points) {
+			final int events = engine.step(left.move(engine) | right.move(engine));
+			ticks++;
+			if (events == PongEngine.EVENT_NONE) continue;
+			if ((events & PongEngine.EVENT_PADDLE) != 0) {
+				if (hits < MAX_HITS) {
+					final double vx = engine.getSpeedX();
+					final double vy = engine.getSpeedY();
+					results._speedSum[hits] += Math.sqrt(vx * vx + vy * vy);
+					results._speedCount[hits]++;
+				}
+				hits++;
+			}
+			if ((events & PongEngine.EVENT_GOAL) != 0) {
+				results._rallyHits.record(hits);
+				results._rallyTicks.record(ticks - rallyStart);
+				hits = 0;
+				rallyStart = ticks;
+			}
+		}
+		engine.stopGame();
+
+		results._matches++;
+		results._ticks += ticks;
+		results._matchTicks.record(ticks);
+		final int leftPoints = engine.getLeftPoints();
+		final int rightPoints = engine.getRightPoints();
+		if (leftPoints >= _points) {
+			results._leftWins++;
+			results._loserPoints[rightPoints]++;
+		} else if (rightPoints >= _points) {
+			results._rightWins++;
+			results._loserPoints[leftPoints]++;
+		}
+	}
+
+	/**
+	 * @return a well distributed seed for consecutive values (SplitMix64)
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Aggregated results of a number of matches. Not thread safe - every task has its own
+	 * and they are merged with <code>add()</code>.
+	 */
+	public static class Results {
+
+		private long _matches = 0;
+		private long _leftWins = 0;
+		private long _rightWins = 0;
+		private long _ticks = 0;
+
+		// points of the loser of a match
+		private final long[] _loserPoints;
+		// paddle hits per rally
+		private final Histogram _rallyHits = new Histogram(1, 200);
+		// length of a rally in ticks including serve and goal delay
+		private final Histogram _rallyTicks;
+		// length of a match in ticks
+		private final Histogram _matchTicks;
+		// sum of the ball speeds after the n-th paddle hit of a rally
+		private final double[] _speedSum = new double[MAX_HITS];
+		private final long[] _speedCount = new long[MAX_HITS];
+
+		/**
+		 * @param points to win a match
+		 * @param maxTicks maximum length of a match - the length histograms cover it completely
+		 */
+		Results(int points, long maxTicks) {
+			_loserPoints = new long[points];
+			_rallyTicks = ticksHistogram(PongEngine.TICKS_PER_SECOND / 2, maxTicks);
+			_matchTicks = ticksHistogram(PongEngine.TICKS_PER_SECOND * 10, maxTicks);
+		}
+
+		/**
+		 * @param bucketWidth width of a bucket if there are not too many
+		 * @param maxTicks largest value to be recorded
+		 * @return histogram without an overflow bucket for values up to maxTicks
+		 */
+		private static Histogram ticksHistogram(long bucketWidth, long maxTicks) {
+			final long width = Math.max(bucketWidth, maxTicks / MAX_BUCKETS + 1);
+			return new Histogram(width, (int) (maxTicks / width) + 1);
+		}
+
+		/**
+		 * Adds the results of other matches.
+		 * @param other
+		 */
+		void add(Results other) {
+			_matches += other._matches;
+			_leftWins += other._leftWins;
+			_rightWins += other._rightWins;
+			_ticks += other._ticks;
+			for (int i = 0; i < _loserPoints.length; i++) _loserPoints[i] += other._loserPoints[i];
+			_rallyHits.add(other._rallyHits);
+			_rallyTicks.add(other._rallyTicks);
+			_matchTicks.add(other._matchTicks);
+			for (int i = 0; i < MAX_HITS; i++) {
+				_speedSum[i] += other._speedSum[i];
+				_speedCount[i] += other._speedCount[i];
+			}
+		}
+
+		public long getMatches() { return _matches; }
+		public long getLeftWins() { return _leftWins; }
+		public long getRightWins() { return _rightWins; }
+		public long getTicks() { return _ticks; }
+		public Histogram getRallyHits() { return _rallyHits; }
+
+		/**
+		 * @param hit number of the paddle hit in a rally starting with 0
+		 * @return mean speed of the ball in pixels per second after this hit or 0 if never reached
+		 */
+		public double getMeanSpeedAfterHit(int hit) {
+			return hit >= MAX_HITS || _speedCount[hit] == 0 ? 0 : _speedSum[hit] / _speedCount[hit];
+		}
+
+		/**
+		 * Prints the results.
+		 */
+		void print() {
+			final double secondsPerTick = 1.0 / PongEngine.TICKS_PER_SECOND;
+			System.out.println(String.format("Matches: %d  left wins: %d  right wins: %d  unfinished: %d", 
+					_matches, _leftWins, _rightWins, _matches - _leftWins - _rightWins));
+			System.out.println(String.format("Match length (game time): mean %.1fs  p50 %.0fs  p99 %.0fs  max %.1fs", 
+					_matchTicks.getMean() * secondsPerTick, _matchTicks.getPercentile(0.5) * secondsPerTick,
+					_matchTicks.getPercentile(0.99) * secondsPerTick, _matchTicks.getMax() * secondsPerTick));
+			System.out.println(String.format("Rallies: %d  paddle hits per rally: mean %.2f  p50 %d  p99 %d  max %d", 
+					_rallyHits.getCount(), _rallyHits.getMean(), _rallyHits.getPercentile(0.5), 
+					_rallyHits.getPercentile(0.99), _rallyHits.getMax()));
+			System.out.println(String.format("Rally length (game time): mean %.1fs  p50 %.1fs  p99 %.1fs  max %.1fs", 
+					_rallyTicks.getMean() * secondsPerTick, _rallyTicks.getPercentile(0.5) * secondsPerTick, 
+					_rallyTicks.getPercentile(0.99) * secondsPerTick, _rallyTicks.getMax() * secondsPerTick));
+			final StringBuilder sb = new StringBuilder("Score distribution:");
+			for (int i = 0; i < _loserPoints.length; i++) {
+				if (_loserPoints[i] > 0) sb.append(String.format("  %d:%d %d", _loserPoints.length, i, _loserPoints[i]));
+			}
+			System.out.println(sb);
+			sb.setLength(0);
+			sb.append("Ball speed after paddle hit n (px/s):");
+			for (int i = 0; i < MAX_HITS && _speedCount[i] > 0; i++) {
+				sb.append(String.format("  %d:%.0f", i + 1, getMeanSpeedAfterHit(i)));
+			}
+			System.out.println(sb);
+		}
+	}
+
+	/**
+	 * Prints the command line options.
+	 */
+	private static void usage() {
+		System.err.println("Usage: java fko.pong.Tournament [options]");
+		System.err.println("  -matches <n>         number of matches (default "+DEFAULT_MATCHES+")");
+		System.err.println("  -points <n>          points to win a match (default "+DEFAULT_POINTS+")");
+		System.err.println("  -maxMinutes <n>      maximum game time of a match (default "+DEFAULT_MAX_MINUTES+")");
+		System.err.println("  -threads <n>         number of threads (default all cores)");
+		System.err.println("  -seed <n>            seed of the tournament (default 0)");
+		System.err.println("  -ballSpeed <v>       initial ball speed in px/s (default "+PongEngine.INITIAL_BALL_SPEED+")");
+		System.err.println("  -acceleration <f>    speed factor per paddle hit (default "+PongEngine.ACCELARATION+")");
+		System.err.println("  -angle <on|off>      angling paddle (default on)");
+		System.err.println("  -deflection <w,a,c>  model of the angling paddle: hit weight, max angle, speed conservation (default "+DeflectionModel.DEFAULT+")");
+		System.err.println("  -table <hxa>         look up the deflection in tables with the resolution (default exact)");
+		System.err.println("  -left <ai>           AI of the left paddle: follow, easy, normal, expert, perfect, hard (default "+DEFAULT_AI+")");
+		System.err.println("  -right <ai>          AI of the right paddle: follow, easy, normal, expert, perfect, hard (default "+DEFAULT_AI+")");
+		System.err.println("  -scaling             run with 1, 2, 4, ... threads up to all cores and print the speedup");
+		System.exit(1);
+	}
+
+	/**
+	 * @param args see <code>usage()</code>
+	 */
+	public static void main(String[] args) {
+		final Tournament tournament = new Tournament();
+		final int cores = Runtime.getRuntime().availableProcessors();
+		int threads = cores;
+		boolean scaling = false;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-matches": 		tournament._matches = Integer.parseInt(args[++i]); break;
+				case "-points": 		tournament._points = Integer.parseInt(args[++i]); break;
+				case "-maxMinutes": 	tournament._maxTicks = Long.parseLong(args[++i]) * 60L * PongEngine.TICKS_PER_SECOND; break;
+				case "-threads": 		threads = Integer.parseInt(args[++i]); break;
+				case "-seed": 			tournament._seed = Long.parseLong(args[++i]); break;
+				case "-ballSpeed": 		tournament._ballSpeed = Double.parseDouble(args[++i]); break;
+				case "-acceleration": 	tournament._acceleration = Double.parseDouble(args[++i]); break;
+				case "-angle": 			tournament._anglePaddle = "on".equals(args[++i]); break;
+				case "-deflection": 	tournament._deflection = DeflectionModel.parse(args[++i]); break;
+				case "-table": 			tournament._table = args[++i]; break;
+				case "-left": 			tournament._leftAI = args[++i]; break;
+				case "-right": 			tournament._rightAI = args[++i]; break;
+				case "-scaling": 		scaling = true; break;
+				default: 				usage();
+				}
+			}
+			tournament._deflectionStrategy = tournament._table == null 
+					? tournament._deflection : TableDeflection.parse(tournament._deflection, tournament._table);
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			usage();
+		}
+		if (tournament._matches < 1 || tournament._points < 1 || threads < 1
+				|| createAI(tournament._leftAI, true, 0) == null || createAI(tournament._rightAI, false, 0) == null) {
+			usage();
+		}
+
+		System.out.println(String.format("Tournament: %d matches to %d points  %s vs %s  ball speed %.1f  acceleration %.3f  angling paddle %s %s%s",
+				tournament._matches, tournament._points, tournament._leftAI, tournament._rightAI, 
+				tournament._ballSpeed, tournament._acceleration, tournament._anglePaddle ? "on" : "off", tournament._deflection,
+				tournament._table == null ? "" : " table " + tournament._table));
+
+		if (scaling) {
+			double single = 0;
+			for (int t = 1; t <= cores; t = t < cores && t * 2 > cores ? cores : t * 2) {
+				final long start = System.nanoTime();
+				final Results results = tournament.run(t);
+				final double seconds = (System.nanoTime() - start) / 1e9;
+				final double matchesPerSecond = results.getMatches() / seconds;
+				if (t == 1) single = matchesPerSecond;
+				System.out.println(String.format("%3d threads: %8.1f matches/s  %,14.0f ticks/s  speedup %.2f", 
+						t, matchesPerSecond, results.getTicks() / seconds, matchesPerSecond / single));
+			}
+			return;
+		}
+
+		final long start = System.nanoTime();
+		final Results results = tournament.run(threads);
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		results.print();
+		System.out.println(String.format("Time: %.3fs with %d threads  %.1f matches/s  %,.0f ticks/s", 
+				seconds, threads, results.getMatches() / seconds, results.getTicks() / seconds));
+	}
+
+}
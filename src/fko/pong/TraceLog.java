@@ -0,0 +1,201 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A structured trace of the physics written as fixed layout binary records.<br>
+ * The simulation writes records into a preallocated ring buffer without locks and without
+ * allocation. A background drainer thread writes the records to a file. If the drainer falls
+ * behind records are dropped and counted - tracing never blocks the game.<br>
+ * There is one producer (the simulation thread) and one consumer (the drainer).<br>
+ * Use <code>TraceReader</code> to dump a trace file as text.
+ * <pre>
+ * File:   MAGIC (8 bytes) | RECORD_SIZE (int) | records...
+ * Record: tick (long) | type (int) | paddle (int) | hitPos | oldAngle | newAngle | oldSpeed | newSpeed (doubles)
+ * </pre>
+ * Angles are in radians, speeds in pixels per second, all values little endian.
+ * @author Frank Kopp
+ */
+public class TraceLog {
+
+	// system property with the file to trace to
+	public static final String TRACE_PROPERTY = "pong.trace";
+
+	public static final long MAGIC = 0x31435254474E4F50L; // "PONGTRC1" little endian
+	public static final int HEADER_SIZE = 12;
+	public static final int RECORD_SIZE = 56;
+
+	// record types
+	public static final int TYPE_PADDLE_HIT = 1;
+
+	// number of records in the ring buffer - must be a power of 2
+	private static final int CAPACITY = 4096;
+	private static final int MASK = CAPACITY - 1;
+
+	// time the drainer sleeps when there is nothing to write
+	private static final long DRAIN_IDLE_NANOS = 1_000_000L;
+
+	private final ByteBuffer _ring = ByteBuffer.allocateDirect(CAPACITY * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	// view of the ring used by the drainer for writing to the file
+	private final ByteBuffer _drainView = _ring.duplicate();
+
+	// head is written by the producer only, tail by the drainer only
+	private volatile long _head = 0;
+	private volatile long _tail = 0;
+	private volatile long _dropped = 0;
+
+	private final FileChannel _channel;
+	private final Thread _drainer;
+	private volatile boolean _running = true;
+
+	/**
+	 * Creates the trace file and starts the drainer.
+	 * @param file
+	 * @throws IOException
+	 */
+	public TraceLog(Path file) throws IOException {
+		_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(MAGIC).putInt(RECORD_SIZE).flip();
+		while (header.hasRemaining()) _channel.write(header);
+
+		_drainer = new Thread(this::drain, "Pong Trace Drainer");
+		_drainer.setDaemon(true);
+		_drainer.start();
+		// write what is left when the game exits
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+	}
+
+	/**
+	 * Creates a trace log for the file in the system property <code>pong.trace</code>.
+	 * @return the trace log or null if tracing is not turned on or the file can't be created
+	 */
+	public static TraceLog fromSystemProperty() {
+		final String file = System.getProperty(TRACE_PROPERTY);
+		if (file == null || file.isEmpty()) return null;
+		try {
+			return new TraceLog(Paths.get(file));
+		} catch (IOException e) {
+			Pong.criticalError("Trace file "+file+" cannot be created: "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Adds a paddle hit record. Does not block or allocate.
+	 * @param tick
+	 * @param rightPaddle
+	 * @param hitPos
+	 * @param oldAngle
+	 * @param newAngle
+	 * @param oldSpeed
+	 * @param newSpeed
+	 */
+	public void paddleHit(long tick, boolean rightPaddle, double hitPos, 
+			double oldAngle, double newAngle, double oldSpeed, double newSpeed) {
+		final long head = _head;
+		if (head - _tail >= CAPACITY) {
+			_dropped++;
+			return;
+		}
+		int i = (int) (head & MASK) * RECORD_SIZE;
+		_ring.putLong(i, tick);
+		_ring.putInt(i += 8, TYPE_PADDLE_HIT);
+		_ring.putInt(i += 4, rightPaddle ? 1 : 0);
+		_ring.putDouble(i += 4, hitPos);
+		_ring.putDouble(i += 8, oldAngle);
+		_ring.putDouble(i += 8, newAngle);
+		_ring.putDouble(i += 8, oldSpeed);
+		_ring.putDouble(i += 8, newSpeed);
+		// volatile write publishes the record to the drainer
+		_head = head + 1;
+	}
+
+	/**
+	 * @return number of records dropped because the drainer was behind
+	 */
+	public long getDropped() {
+		return _dropped;
+	}
+
+	/**
+	 * Drainer loop - writes all published records to the file.
+	 */
+	private void drain() {
+		while (_running) {
+			try {
+				if (!drainOnce()) LockSupport.parkNanos(DRAIN_IDLE_NANOS);
+			} catch (IOException e) {
+				Pong.criticalError("Trace file cannot be written: "+e.getMessage());
+				_running = false;
+			}
+		}
+	}
+
+	/**
+	 * Writes the records between tail and head to the file.
+	 * @return true if records were written
+	 * @throws IOException
+	 */
+	private synchronized boolean drainOnce() throws IOException {
+		final long tail = _tail;
+		final long head = _head;
+		if (tail == head) return false;
+		// write up to the end of the ring - the rest follows with the next call
+		final int from = (int) (tail & MASK);
+		final int to = (int) Math.min(CAPACITY, from + (head - tail));
+		_drainView.limit(to * RECORD_SIZE).position(from * RECORD_SIZE);
+		while (_drainView.hasRemaining()) _channel.write(_drainView);
+		_tail = tail + (to - from);
+		return true;
+	}
+
+	/**
+	 * Stops the drainer, writes the remaining records and closes the file.
+	 */
+	public void close() {
+		if (!_channel.isOpen()) return;
+		_running = false;
+		try {
+			_drainer.join(1000);
+			while (drainOnce()) { /* empty */ }
+			_channel.close();
+		} catch (IOException e) {
+			Pong.criticalError("Trace file cannot be closed: "+e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Command line tool which dumps a trace file written by <code>TraceLog</code> as text.<br>
+ * Usage: <code>java fko.pong.TraceReader &lt;trace file&gt;</code>
+ * @author Frank Kopp
+ */
+public class TraceReader {
+
+	/**
+	 * @param args the trace file
+	 */
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: java fko.pong.TraceReader <trace file>");
+			System.exit(1);
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(TraceLog.RECORD_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.limit(TraceLog.HEADER_SIZE);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) { /* empty */ }
+			buffer.flip();
+			if (buffer.remaining() < TraceLog.HEADER_SIZE || buffer.getLong() != TraceLog.MAGIC) {
+				Pong.fatalError("Not a pong trace file: "+args[0]);
+			}
+			final int recordSize = buffer.getInt();
+			buffer.clear();
+
+			System.out.println("tick\ttype\tpaddle\thitPos\toldAngle\tnewAngle\toldSpeed\tnewSpeed");
+			boolean eof = false;
+			while (!eof) {
+				eof = channel.read(buffer) < 0;
+				buffer.flip();
+				while (buffer.remaining() >= recordSize) {
+					final int start = buffer.position();
+					print(buffer);
+					buffer.position(start + recordSize);
+				}
+				buffer.compact();
+			}
+		} catch (IOException e) {
+			Pong.fatalError("Trace file "+args[0]+" cannot be read: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Prints one record.
+	 */
+	private static void print(ByteBuffer buffer) {
+		final long tick = buffer.getLong();
+		final int type = buffer.getInt();
+		final int paddle = buffer.getInt();
+		if (type != TraceLog.TYPE_PADDLE_HIT) {
+			System.out.println(tick + "\tunknown type " + type);
+			return;
+		}
+		System.out.println(String.format("%d\tPADDLE_HIT\t%s\t%.3f\t%.2f\t%.2f\t%.1f\t%.1f",
+				tick, paddle == 0 ? "LEFT" : "RIGHT", buffer.getDouble(),
+				Math.toDegrees(buffer.getDouble()), Math.toDegrees(buffer.getDouble()),
+				buffer.getDouble(), buffer.getDouble()));
+	}
+
+}
@@ -0,0 +1,103 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Matches must be stored with two distinct players - also two computers of the same difficulty.
+ * @author Frank Kopp
+ */
+public class HistoryRecorderTest {
+
+	@TempDir
+	Path _folder;
+
+	private final GameEvent _event = new GameEvent();
+
+	@Test
+	public void computerAgainstComputer() throws IOException {
+		try (MatchHistory history = new MatchHistory(_folder)) {
+			final Ratings ratings = new Ratings();
+			final HistoryRecorder recorder = new HistoryRecorder(history, ratings);
+			final String left = HistoryRecorder.computerName(PredictingAI.NORMAL, true);
+			final String right = HistoryRecorder.computerName(PredictingAI.NORMAL, false);
+			recorder.setPlayers(left, right);
+			playMatch(recorder, 11, 4);
+
+			assertEquals(1, history.getMatchCount());
+			assertEquals(2, history.getPlayerCount());
+			assertNotEquals(history.getLeftPlayer(0), history.getRightPlayer(0));
+			assertEquals(left, history.getPlayerName(history.getLeftPlayer(0)));
+			assertEquals(right, history.getPlayerName(history.getRightPlayer(0)));
+			assertEquals(1, history.getStats(left).getWins());
+			assertEquals(0, history.getStats(right).getWins());
+			assertEquals(1, ratings.getRank(left));
+			assertEquals(2, ratings.getRank(right));
+		}
+	}
+
+	@Test
+	public void samePlayerIsNotRecorded() throws IOException {
+		try (MatchHistory history = new MatchHistory(_folder)) {
+			final HistoryRecorder recorder = new HistoryRecorder(history, new Ratings());
+			recorder.setPlayers("Left", "Left");
+			playMatch(recorder, 11, 4);
+			assertEquals(0, history.getMatchCount());
+			assertThrows(IllegalArgumentException.class, () -> history.addMatch("Left", "Left", 0, 1, 11, 4));
+		}
+	}
+
+	/**
+	 * Sends the events of a match with the final score to the recorder.
+	 */
+	private void playMatch(HistoryRecorder recorder, int leftPoints, int rightPoints) {
+		long tick = 0;
+		send(recorder, GameEvent.START, tick, false, 0, 0);
+		int left = 0, right = 0;
+		while (left < leftPoints || right < rightPoints) {
+			send(recorder, GameEvent.SERVE, tick += 120, false, left, right);
+			send(recorder, GameEvent.PADDLE_HIT, tick += 100, true, left, right);
+			final boolean leftScores = left < leftPoints;
+			if (leftScores) left++;
+			else right++;
+			send(recorder, GameEvent.GOAL, tick += 100, leftScores, left, right);
+		}
+		send(recorder, GameEvent.STOP, tick, false, left, right);
+	}
+
+	private void send(HistoryRecorder recorder, int type, long tick, boolean left, int leftPoints, int rightPoints) {
+		_event.set(type, tick, left, 0, 0, 0, 1.0, leftPoints, rightPoints);
+		recorder.onEvent(_event, true);
+	}
+
+}
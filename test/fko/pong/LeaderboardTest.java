@@ -0,0 +1,119 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The treap of the leaderboard must always order the players like a sorted list.
+ * @author Frank Kopp
+ */
+public class LeaderboardTest {
+
+	private static final int PLAYERS = 500;
+
+	@Test
+	public void randomUpdates() {
+		// few distinct ratings so ties are ordered by id a lot
+		check(new Random(1), 300);
+	}
+
+	@Test
+	public void randomUpdatesDistinctRatings() {
+		check(new Random(2), Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void empty() {
+		final Leaderboard leaderboard = new Leaderboard();
+		assertEquals(0, leaderboard.size());
+		assertEquals(0, leaderboard.getRank(7));
+		assertEquals(-1, leaderboard.getPlayer(1));
+		assertEquals(0, leaderboard.getTop(10).length);
+		leaderboard.remove(7);
+		assertEquals(0, leaderboard.size());
+	}
+
+	/**
+	 * Adds, re-rates and removes random players and compares the leaderboard with a 
+	 * sorted list after every change.
+	 */
+	private static void check(Random random, int ratings) {
+		final Leaderboard leaderboard = new Leaderboard(16); // has to grow
+		final double[] rating = new double[PLAYERS];
+		final boolean[] rated = new boolean[PLAYERS];
+		for (int i = 0; i < 20_000; i++) {
+			final int id = random.nextInt(PLAYERS);
+			if (random.nextInt(5) == 0) {
+				leaderboard.remove(id);
+				rated[id] = false;
+				assertFalse(leaderboard.contains(id));
+				assertEquals(0, leaderboard.getRank(id));
+			} else {
+				rating[id] = random.nextInt(ratings);
+				rated[id] = true;
+				leaderboard.update(id, rating[id]);
+				assertEquals(rating[id], leaderboard.getRating(id));
+			}
+			if (i % 50 == 0) compare(leaderboard, sorted(rating, rated));
+		}
+		compare(leaderboard, sorted(rating, rated));
+	}
+
+	/**
+	 * @return ids of the rated players - higher ratings first, equal ratings by lower id
+	 */
+	private static List<Integer> sorted(double[] rating, boolean[] rated) {
+		final List<Integer> ids = new ArrayList<>();
+		for (int id = 0; id < rating.length; id++) {
+			if (rated[id]) ids.add(id);
+		}
+		ids.sort((a, b) -> rating[a] != rating[b] ? Double.compare(rating[b], rating[a]) : Integer.compare(a, b));
+		return ids;
+	}
+
+	private static void compare(Leaderboard leaderboard, List<Integer> expected) {
+		assertEquals(expected.size(), leaderboard.size());
+		for (int rank = 1; rank <= expected.size(); rank++) {
+			final int id = expected.get(rank - 1);
+			assertEquals(id, leaderboard.getPlayer(rank), "player at rank " + rank);
+			assertEquals(rank, leaderboard.getRank(id), "rank of player " + id);
+		}
+		assertEquals(-1, leaderboard.getPlayer(expected.size() + 1));
+		for (int k : new int[] { 0, 1, 10, expected.size(), expected.size() + 5 }) {
+			final int[] top = new int[Math.min(k, expected.size())];
+			for (int i = 0; i < top.length; i++) top[i] = expected.get(i);
+			assertArrayEquals(top, leaderboard.getTop(k), "top " + k);
+		}
+	}
+
+}
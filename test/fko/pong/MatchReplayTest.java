@@ -0,0 +1,143 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A recorded match must replay bit-exact - with all kinds of log entries.
+ * @author Frank Kopp
+ */
+public class MatchReplayTest {
+
+	@TempDir
+	Path _folder;
+
+	/**
+	 * Records a seeded match with partly held inputs, paddles set directly, option changes
+	 * and a pause.
+	 * @return the engine after the match
+	 */
+	private PongEngine record(Path file, int ticks) throws IOException {
+		final PongEngine engine = new PongEngine(780, 520);
+		final MatchRecorder recorder = new MatchRecorder(file);
+		engine.setRecorder(recorder);
+		engine.startGame(42);
+		final Random random = new Random(1);
+		for (int i = 0; i < ticks; i++) {
+			int inputs = 0;
+			// left follows the ball, right is random
+			if (engine.getBallCenterY() < engine.getLeftPaddleY() + 20) inputs |= PongEngine.INPUT_LEFT_UP;
+			else if (engine.getBallCenterY() > engine.getLeftPaddleY() + 40) inputs |= PongEngine.INPUT_LEFT_DOWN;
+			inputs |= random.nextInt(3) << 2;
+			if (random.nextInt(4) == 0) {
+				inputs |= (1 + random.nextInt(PongEngine.INPUT_HELD_MASK)) << PongEngine.INPUT_LEFT_HELD_SHIFT;
+			}
+			if (i == ticks / 4) engine.setAnglePaddle(false);
+			if (i == ticks / 3) engine.setRightPaddleY(100);
+			if (i == ticks / 2) engine.pauseGame();
+			if (i == ticks / 2 + 100) engine.resumeGame();
+			if (i == 3 * ticks / 4) engine.setAnglePaddle(true);
+			engine.step(inputs);
+		}
+		engine.stopGame();
+		recorder.close();
+		return engine;
+	}
+
+	@Test
+	public void replayIsBitExact() throws IOException {
+		final Path file = _folder.resolve("match" + MatchRecorder.FILE_EXTENSION);
+		final PongEngine recorded = record(file, 200_000);
+		assertTrue(recorded.getLeftPoints() + recorded.getRightPoints() > 0, "match without goals");
+
+		final MatchReplay replay = new MatchReplay(file);
+		final PongEngine replayed = replay.replay();
+		assertTrue(replay.isFinished());
+		assertEquals(recorded.getStateChecksum(), replayed.getStateChecksum());
+		assertEquals(recorded.getLeftPoints(), replayed.getLeftPoints());
+		assertEquals(recorded.getRightPoints(), replayed.getRightPoints());
+		assertTrue(replay.verify(replayed));
+	}
+
+	@Test
+	public void diverged() throws IOException {
+		final Path file = _folder.resolve("match" + MatchRecorder.FILE_EXTENSION);
+		record(file, 20_000);
+
+		final MatchReplay replay = new MatchReplay(file);
+		final PongEngine replayed = replay.replay();
+		// any change of the state must be detected
+		replayed.setLeftPaddleY(replayed.getLeftPaddleY() + 1);
+		assertFalse(replay.verify(replayed));
+	}
+
+	@Test
+	public void cutOff() throws IOException {
+		final Path file = _folder.resolve("match" + MatchRecorder.FILE_EXTENSION);
+		record(file, 20_000);
+		final MatchReplay complete = new MatchReplay(file);
+		final PongEngine expected = complete.replay();
+		// without the end and its checksum
+		final byte[] log = Files.readAllBytes(file);
+		final byte[] entries = Arrays.copyOf(log, log.length - 1 - Long.BYTES);
+
+		// zero padding after the last entry as left by a crash
+		assertCutOff(entries, new byte[100_000], complete.getTicks(), expected);
+		// entries cut off within their values
+		assertCutOff(entries, new byte[] { MatchRecorder.TICK_HELD, 1, 2 }, complete.getTicks(), expected);
+		assertCutOff(entries, new byte[] { MatchRecorder.LEFT_PADDLE, 1, 2, 3 }, complete.getTicks(), expected);
+		assertCutOff(entries, new byte[] { MatchRecorder.END, 1 }, complete.getTicks(), expected);
+	}
+
+	/**
+	 * Replays the entries followed by the tail - it must end without an exception after the ticks of the entries.
+	 */
+	private void assertCutOff(byte[] entries, byte[] tail, long ticks, PongEngine expected) throws IOException {
+		final Path file = _folder.resolve("cut" + MatchRecorder.FILE_EXTENSION);
+		final byte[] log = Arrays.copyOf(entries, entries.length + tail.length);
+		System.arraycopy(tail, 0, log, entries.length, tail.length);
+		Files.write(file, log);
+
+		final MatchReplay replay = new MatchReplay(file);
+		final PongEngine replayed = replay.replay();
+		assertTrue(replay.isFinished());
+		assertEquals(ticks, replay.getTicks());
+		assertEquals(expected.getStateChecksum(), replayed.getStateChecksum());
+		assertFalse(replay.verify(replayed));
+		assertEquals(MatchReplay.END_OF_LOG, replay.step(replayed));
+	}
+
+}
@@ -0,0 +1,57 @@
+/**
+MIT License
+
+Copyright (c) 2017 Frank Kopp
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package fko.pong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The tables must stay within the documented error bound of the exact model.
+ * @author Frank Kopp
+ */
+public class TableDeflectionTest {
+
+	private static final int SAMPLES = 1_000_000;
+
+	@Test
+	public void defaultResolution() {
+		final TableDeflection table = new TableDeflection(DeflectionModel.DEFAULT);
+		// small enough to stay in the L2 cache
+		assertTrue(table.getTableSize() <= 128 * 1024, "table size " + table.getTableSize());
+		for (long seed = 0; seed < 5; seed++) {
+			final double[] error = table.measureError(SAMPLES, seed);
+			assertTrue(error[0] < 0.011, "max angle error " + error[0]);
+			assertTrue(error[2] < 0.0017, "max speed error " + error[2]);
+		}
+	}
+
+	@Test
+	public void finerIsMoreExact() {
+		final double coarse = new TableDeflection(DeflectionModel.DEFAULT, 8, 64).measureError(SAMPLES, 42)[0];
+		final double fine = new TableDeflection(DeflectionModel.DEFAULT, 64, 512).measureError(SAMPLES, 42)[0];
+		assertTrue(fine < coarse, fine + " >= " + coarse);
+	}
+
+}